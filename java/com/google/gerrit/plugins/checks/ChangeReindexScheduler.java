@@ -0,0 +1,232 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.index.change.ChangeIndexer;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reindexes changes after their combined check state was updated.
+ *
+ * <p>While many checks of a change finish, the combined check state of the change can flip several
+ * times within seconds, and every flip would cost a full reindex of the change. If {@code
+ * plugin.checks.reindexDelay} is set to a positive duration, reindexes of a change are debounced:
+ * the reindex is deferred until no further reindex request for the change arrived for this delay.
+ * So that changes whose checks are updated continuously are still reindexed, the reindex is not
+ * deferred beyond {@code plugin.checks.reindexMaxDelay} after the first request. Since the change
+ * is only indexed when the delay is over, the index always reflects the latest combined check
+ * state. Reindexes that are still deferred when the plugin is stopped are executed on stop, so that
+ * the index doesn't keep outdated combined check states after plugin reloads and server shutdowns.
+ */
+@Singleton
+class ChangeReindexScheduler implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** A deferred reindex of a change. */
+  private static class PendingReindex {
+    final Project.NameKey project;
+
+    /** Time in milliseconds when the first of the coalesced reindex requests arrived. */
+    final long firstRequested;
+
+    ScheduledFuture<?> task;
+
+    PendingReindex(Project.NameKey project, long firstRequested) {
+      this.project = project;
+      this.firstRequested = firstRequested;
+    }
+  }
+
+  private final Duration delay;
+  private final Duration maxDelay;
+  private final ScheduledExecutorService executor;
+  private final ChangeIndexer changeIndexer;
+  private final Counter0 coalesced;
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final Counter0 executed;
+  private final AtomicLong executedCount = new AtomicLong();
+
+  // Guarded by this.
+  private final Map<Change.Id, PendingReindex> pending = new HashMap<>();
+
+  // Guarded by this.
+  private boolean stopped;
+
+  @Inject
+  ChangeReindexScheduler(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginConfigFactory,
+      WorkQueue workQueue,
+      ChangeIndexer changeIndexer,
+      MetricMaker metricMaker) {
+    this(
+        getDelay(pluginConfigFactory.getFromGerritConfig(pluginName), "reindexDelay", 0),
+        getDelay(pluginConfigFactory.getFromGerritConfig(pluginName), "reindexMaxDelay", -1),
+        workQueue.getDefaultQueue(),
+        changeIndexer,
+        metricMaker);
+  }
+
+  @VisibleForTesting
+  ChangeReindexScheduler(
+      Duration delay,
+      Duration maxDelay,
+      ScheduledExecutorService executor,
+      ChangeIndexer changeIndexer,
+      MetricMaker metricMaker) {
+    this.delay = delay;
+    // Unless configured, the reindex may be deferred by up to 5 times the delay.
+    this.maxDelay = maxDelay.isNegative() ? delay.multipliedBy(5) : maxDelay;
+    this.executor = executor;
+    this.changeIndexer = changeIndexer;
+    this.coalesced =
+        metricMaker.newCounter(
+            "checks/reindex/coalesced",
+            new Description(
+                    "Number of reindex requests after check updates that were coalesced into a"
+                        + " pending reindex")
+                .setRate()
+                .setUnit("requests"));
+    this.executed =
+        metricMaker.newCounter(
+            "checks/reindex/executed",
+            new Description("Number of changes that were reindexed after check updates")
+                .setRate()
+                .setUnit("reindexes"));
+  }
+
+  private static Duration getDelay(PluginConfig pluginConfig, String name, long defaultValue) {
+    String value = pluginConfig.getString(name);
+    if (value == null) {
+      return Duration.ofMillis(defaultValue);
+    }
+    return Duration.ofMillis(ConfigUtil.getTimeUnit(value, defaultValue, MILLISECONDS));
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    ImmutableMap<Change.Id, PendingReindex> reindexes;
+    synchronized (this) {
+      // Reindexes that are requested after this point are executed right away.
+      stopped = true;
+      reindexes = ImmutableMap.copyOf(pending);
+      pending.clear();
+    }
+    reindexes.forEach(
+        (changeId, reindex) -> {
+          reindex.task.cancel(false);
+          index(reindex.project, changeId);
+        });
+  }
+
+  /**
+   * Reindexes a change, possibly deferred and coalesced with other reindex requests for the same
+   * change.
+   *
+   * @param project project containing the change.
+   * @param changeId the change that should be reindexed.
+   * @param immediately whether the change must be reindexed before this method returns.
+   */
+  void reindex(Project.NameKey project, Change.Id changeId, boolean immediately) {
+    if (immediately || delay.isZero() || delay.isNegative()) {
+      index(project, changeId);
+      return;
+    }
+
+    synchronized (this) {
+      if (!stopped) {
+        long now = TimeUtil.nowMs();
+        PendingReindex previous = pending.get(changeId);
+        PendingReindex reindex;
+        if (previous != null) {
+          // If the previous task already started and waits for the lock, it notices that it was
+          // replaced and doesn't index the change.
+          previous.task.cancel(false);
+          coalesced.increment();
+          coalescedCount.incrementAndGet();
+          reindex = new PendingReindex(project, previous.firstRequested);
+        } else {
+          reindex = new PendingReindex(project, now);
+        }
+        long remaining = maxDelay.toMillis() - (now - reindex.firstRequested);
+        long delayMillis = Math.max(0, Math.min(delay.toMillis(), remaining));
+        pending.put(changeId, reindex);
+        reindex.task =
+            executor.schedule(() -> run(project, changeId, reindex), delayMillis, MILLISECONDS);
+        return;
+      }
+    }
+    index(project, changeId);
+  }
+
+  private void run(Project.NameKey project, Change.Id changeId, PendingReindex reindex) {
+    // Removed before indexing so that updates that happen while indexing trigger another reindex.
+    synchronized (this) {
+      if (!pending.remove(changeId, reindex)) {
+        return;
+      }
+    }
+    index(project, changeId);
+  }
+
+  private void index(Project.NameKey project, Change.Id changeId) {
+    try {
+      changeIndexer.index(project, changeId);
+      executed.increment();
+      executedCount.incrementAndGet();
+    } catch (RuntimeException e) {
+      logger.atSevere().withCause(e).log("Cannot index change: %s after check update.", changeId);
+    }
+  }
+
+  /** Returns the number of reindex requests that were coalesced into a pending reindex. */
+  @VisibleForTesting
+  long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /** Returns the number of changes that were reindexed. */
+  @VisibleForTesting
+  long getExecutedCount() {
+    return executedCount.get();
+  }
+}
@@ -17,12 +17,16 @@ package com.google.gerrit.plugins.checks;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
 import com.google.gerrit.plugins.checks.api.CheckInfo;
 import com.google.gerrit.plugins.checks.api.CheckSubmitImpactInfo;
+import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 
 /** Formats a {@link Check} as JSON. */
@@ -53,12 +57,24 @@ public class CheckJson {
 
   private final Checkers checkers;
   private final Checks checks;
+  private final ChangeData.Factory changeDataFactory;
   private final ImmutableSet<ListChecksOption> options;
 
+  /**
+   * Changes for which checks were formatted, so that all checks of a change share a single {@link
+   * ChangeData} when evaluating whether their checkers are required for submit.
+   */
+  private final Map<Change.Id, ChangeData> changeDataById = new HashMap<>();
+
   @Inject
-  CheckJson(Checkers checkers, Checks checks, @Assisted Iterable<ListChecksOption> options) {
+  CheckJson(
+      Checkers checkers,
+      Checks checks,
+      ChangeData.Factory changeDataFactory,
+      @Assisted Iterable<ListChecksOption> options) {
     this.checkers = checkers;
     this.checks = checks;
+    this.changeDataFactory = changeDataFactory;
     this.options = ImmutableSet.copyOf(options);
   }
 
@@ -79,12 +95,15 @@ public class CheckJson {
     info.updated = check.updated();
 
     if (options.contains(ListChecksOption.CHECKER)) {
-      populateCheckerFields(check.key().checkerUuid(), info, check.key().patchSet().changeId());
+      populateCheckerFields(
+          check.key().checkerUuid(),
+          info,
+          getChangeData(check.key().repository(), check.key().patchSet().changeId()));
     }
     return info;
   }
 
-  private void populateCheckerFields(CheckerUuid checkerUuid, CheckInfo info, Change.Id changeId)
+  private void populateCheckerFields(CheckerUuid checkerUuid, CheckInfo info, ChangeData changeData)
       throws IOException {
 
     try {
@@ -97,11 +116,15 @@ public class CheckJson {
                 info.blocking = checker.getBlockingConditions();
                 info.submitImpact = new CheckSubmitImpactInfo();
                 info.submitImpact.required =
-                    checks.isRequiredForSubmit(checker, changeId) ? true : null;
+                    checks.isRequiredForSubmit(checker, changeData) ? true : null;
                 info.checkerDescription = checker.getDescription().orElse(null);
               });
     } catch (ConfigInvalidException e) {
       logger.atWarning().withCause(e).log("skipping invalid checker %s", checkerUuid);
     }
   }
+
+  private ChangeData getChangeData(Project.NameKey project, Change.Id changeId) {
+    return changeDataById.computeIfAbsent(changeId, id -> changeDataFactory.create(project, id));
+  }
 }
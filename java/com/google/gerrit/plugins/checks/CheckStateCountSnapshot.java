@@ -0,0 +1,108 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import com.google.auto.value.AutoValue;
+import com.google.gerrit.plugins.checks.api.CombinedCheckState;
+import com.google.gerrit.plugins.checks.api.CombinedCheckState.CheckStateCount;
+import com.google.gerrit.plugins.checks.cache.proto.Cache.CheckStateCountProto;
+import com.google.gerrit.proto.Protos;
+import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import com.google.gerrit.server.cache.serialize.ObjectIdConverter;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Counts of the check states of a patch set, together with the state from which they were
+ * computed.
+ *
+ * <p>The state allows to update the counts incrementally when individual checks are updated: the
+ * counts can only be updated if they were computed from the checks ref that the update is based
+ * on, and if neither the change nor the checkers of the repository changed since.
+ *
+ * <p>If the relevance of a checker of the repository depends on {@link
+ * CheckerQuery#EXTERNAL_STATE_OPERATORS external state}, the counts are never considered up to date
+ * and are always recomputed, see {@link #dependsOnExternalState()}.
+ */
+@AutoValue
+public abstract class CheckStateCountSnapshot {
+  public abstract CheckStateCount checkStateCount();
+
+  /** SHA-1 of the checks ref of the change from which the counts were computed. */
+  public abstract ObjectId checksRefState();
+
+  /**
+   * SHA-1 over the change meta ref and the ref states of the checkers of the repository from which
+   * the counts were computed. The required bit of the counted checks depends on both.
+   *
+   * <p>Zero if the counts also depend on external state.
+   */
+  public abstract ObjectId inputsId();
+
+  /** Returns whether the counts can't be validated by comparing the {@link #inputsId()}. */
+  public boolean dependsOnExternalState() {
+    return inputsId().equals(ObjectId.zeroId());
+  }
+
+  public CombinedCheckState combinedCheckState() {
+    return CombinedCheckState.combine(checkStateCount());
+  }
+
+  /** Returns the same counts for a state of the checks ref which doesn't affect the counts. */
+  public CheckStateCountSnapshot withChecksRefState(ObjectId checksRefState) {
+    return create(checkStateCount(), checksRefState, inputsId());
+  }
+
+  public static CheckStateCountSnapshot create(
+      CheckStateCount checkStateCount, ObjectId checksRefState, ObjectId inputsId) {
+    return new AutoValue_CheckStateCountSnapshot(
+        checkStateCount, checksRefState.copy(), inputsId.copy());
+  }
+
+  enum Serializer implements CacheSerializer<CheckStateCountSnapshot> {
+    INSTANCE;
+
+    @Override
+    public byte[] serialize(CheckStateCountSnapshot object) {
+      ObjectIdConverter idConverter = ObjectIdConverter.create();
+      CheckStateCount count = object.checkStateCount();
+      return Protos.toByteArray(
+          CheckStateCountProto.newBuilder()
+              .setFailedRequiredCount(count.failedRequiredCount())
+              .setFailedOptionalCount(count.failedOptionalCount())
+              .setInProgressRequiredCount(count.inProgressRequiredCount())
+              .setInProgressOptionalCount(count.inProgressOptionalCount())
+              .setSuccessfulCount(count.successfulCount())
+              .setChecksRefState(idConverter.toByteString(object.checksRefState()))
+              .setInputsId(idConverter.toByteString(object.inputsId()))
+              .build());
+    }
+
+    @Override
+    public CheckStateCountSnapshot deserialize(byte[] in) {
+      ObjectIdConverter idConverter = ObjectIdConverter.create();
+      CheckStateCountProto proto = Protos.parseUnchecked(CheckStateCountProto.parser(), in);
+      return create(
+          CheckStateCount.builder()
+              .failedRequiredCount(proto.getFailedRequiredCount())
+              .failedOptionalCount(proto.getFailedOptionalCount())
+              .inProgressRequiredCount(proto.getInProgressRequiredCount())
+              .inProgressOptionalCount(proto.getInProgressOptionalCount())
+              .successfulCount(proto.getSuccessfulCount())
+              .build(),
+          idConverter.fromByteString(proto.getChecksRefState()),
+          idConverter.fromByteString(proto.getInputsId()));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import com.google.auto.value.AutoValue;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.api.CombinedCheckState.CheckStateCount;
+import java.util.Optional;
+
+/** Change of the state of a single check by a write. */
+@AutoValue
+public abstract class CheckStateTransition {
+  public abstract CheckerUuid checkerUuid();
+
+  /** State of the check before the write, empty if the check didn't exist. */
+  public abstract Optional<CheckState> oldState();
+
+  /** State of the check after the write. */
+  public abstract CheckState newState();
+
+  /**
+   * Returns whether the transition may change the {@link CheckStateCount} of the patch set.
+   *
+   * <p>All in-progress states are counted in the same bucket, all other states have a bucket of
+   * their own. Whether a check is counted as required doesn't depend on its state. A newly created
+   * check may or may not replace a backfilled check, hence it is always assumed to change the
+   * counts.
+   */
+  public boolean changesCheckStateCount() {
+    if (!oldState().isPresent()) {
+      return true;
+    }
+    CheckState oldState = oldState().get();
+    if (oldState.isInProgress()) {
+      return !newState().isInProgress();
+    }
+    return oldState != newState();
+  }
+
+  public static CheckStateTransition create(
+      CheckerUuid checkerUuid, Optional<CheckState> oldState, CheckState newState) {
+    return new AutoValue_CheckStateTransition(checkerUuid, oldState, newState);
+  }
+}
@@ -0,0 +1,245 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.query.AndPredicate;
+import com.google.gerrit.index.query.NotPredicate;
+import com.google.gerrit.index.query.OrPredicate;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan for matching the queries of several checkers against a change.
+ *
+ * <p>Checkers of the same repository often share parts of their queries, e.g. {@code
+ * branch:master}, the implicit {@code status:open} or file filters. The plan represents the
+ * predicates of all checkers as a single graph in which equal sub-predicates are the same node.
+ * Matching the plan against a change matches each node at most once, no matter how many checkers
+ * share it.
+ *
+ * <p>Plans are immutable and can be shared across threads. The per-change state is kept in {@link
+ * Evaluation}, which is not threadsafe.
+ */
+public class CheckerEvaluationPlan {
+  private enum Kind {
+    AND,
+    OR,
+    NOT,
+    LEAF,
+    CHANGE_IS_NEW,
+    NEVER
+  }
+
+  private static class Node {
+    private final Kind kind;
+    private final int[] children;
+    @Nullable private final Predicate<ChangeData> leaf;
+
+    Node(Kind kind, int[] children, @Nullable Predicate<ChangeData> leaf) {
+      this.kind = kind;
+      this.children = children;
+      this.leaf = leaf;
+    }
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  static class Builder {
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Predicate<ChangeData>, Integer> predicateNodes = new HashMap<>();
+    private final Map<Kind, Integer> constantNodes = new HashMap<>();
+    private final Map<CheckerUuid, Integer> roots = new LinkedHashMap<>();
+
+    private Builder() {}
+
+    /** Adds a checker that has no query, which is relevant for all open changes. */
+    Builder addCheckerWithoutQuery(CheckerUuid checkerUuid) {
+      roots.put(checkerUuid, constantNode(Kind.CHANGE_IS_NEW));
+      return this;
+    }
+
+    /** Adds a checker that has an invalid query, which is never relevant. */
+    Builder addCheckerWithInvalidQuery(CheckerUuid checkerUuid) {
+      roots.put(checkerUuid, constantNode(Kind.NEVER));
+      return this;
+    }
+
+    /** Adds a checker that is relevant for the changes that match the given predicate. */
+    Builder addChecker(CheckerUuid checkerUuid, Predicate<ChangeData> predicate) {
+      roots.put(checkerUuid, predicateNode(predicate));
+      return this;
+    }
+
+    CheckerEvaluationPlan build() {
+      return new CheckerEvaluationPlan(ImmutableList.copyOf(nodes), ImmutableMap.copyOf(roots));
+    }
+
+    private int constantNode(Kind kind) {
+      return constantNodes.computeIfAbsent(kind, k -> addNode(new Node(k, new int[0], null)));
+    }
+
+    private int predicateNode(Predicate<ChangeData> predicate) {
+      Integer id = predicateNodes.get(predicate);
+      if (id != null) {
+        return id;
+      }
+
+      // Only the plain boolean operators are decomposed. Subclasses of them may match differently,
+      // e.g. by checking visibility, hence they are matched as a whole.
+      Node node;
+      Class<?> clazz = predicate.getClass();
+      if (clazz == AndPredicate.class) {
+        node = new Node(Kind.AND, childNodes(predicate), null);
+      } else if (clazz == OrPredicate.class) {
+        node = new Node(Kind.OR, childNodes(predicate), null);
+      } else if (clazz == NotPredicate.class) {
+        node = new Node(Kind.NOT, childNodes(predicate), null);
+      } else {
+        checkArgument(predicate.isMatchable(), "predicate is not matchable: %s", predicate);
+        node = new Node(Kind.LEAF, new int[0], predicate);
+      }
+      id = addNode(node);
+      predicateNodes.put(predicate, id);
+      return id;
+    }
+
+    private int[] childNodes(Predicate<ChangeData> predicate) {
+      List<Predicate<ChangeData>> children = predicate.getChildren();
+      int[] childNodes = new int[children.size()];
+      for (int i = 0; i < children.size(); i++) {
+        childNodes[i] = predicateNode(children.get(i));
+      }
+      return childNodes;
+    }
+
+    private int addNode(Node node) {
+      nodes.add(node);
+      return nodes.size() - 1;
+    }
+  }
+
+  private final ImmutableList<Node> nodes;
+  private final ImmutableMap<CheckerUuid, Integer> roots;
+
+  private CheckerEvaluationPlan(
+      ImmutableList<Node> nodes, ImmutableMap<CheckerUuid, Integer> roots) {
+    this.nodes = nodes;
+    this.roots = roots;
+  }
+
+  /** Returns the number of distinct predicates in this plan. */
+  @VisibleForTesting
+  public int getNodeCount() {
+    return nodes.size();
+  }
+
+  /**
+   * Starts the evaluation of this plan against a change.
+   *
+   * @param cd the change.
+   * @return evaluation that matches the predicates of this plan lazily against the change.
+   */
+  public Evaluation evaluate(ChangeData cd) {
+    return new Evaluation(cd);
+  }
+
+  /** Evaluation of the plan against a single change. */
+  public class Evaluation {
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+
+    private final ChangeData cd;
+    private final byte[] results;
+    private int matchedLeafCount;
+
+    private Evaluation(ChangeData cd) {
+      this.cd = cd;
+      this.results = new byte[nodes.size()];
+    }
+
+    /**
+     * Returns whether a checker is relevant for the change.
+     *
+     * <p>The status of the checker is not taken into account.
+     *
+     * @param checkerUuid the UUID of the checker, must be part of the plan.
+     * @return whether the checker is relevant for the change.
+     */
+    public boolean isRelevant(CheckerUuid checkerUuid) throws StorageException {
+      Integer root = roots.get(checkerUuid);
+      checkArgument(root != null, "checker %s is not part of the plan", checkerUuid);
+      return match(root);
+    }
+
+    /** Returns the number of predicates that were matched against the change so far. */
+    @VisibleForTesting
+    public int getMatchedLeafCount() {
+      return matchedLeafCount;
+    }
+
+    private boolean match(int id) throws StorageException {
+      if (results[id] != UNKNOWN) {
+        return results[id] == MATCH;
+      }
+      boolean match = computeMatch(nodes.get(id));
+      results[id] = match ? MATCH : NO_MATCH;
+      return match;
+    }
+
+    private boolean computeMatch(Node node) throws StorageException {
+      switch (node.kind) {
+        case AND:
+          for (int child : node.children) {
+            if (!match(child)) {
+              return false;
+            }
+          }
+          return true;
+        case OR:
+          for (int child : node.children) {
+            if (match(child)) {
+              return true;
+            }
+          }
+          return false;
+        case NOT:
+          return !match(node.children[0]);
+        case LEAF:
+          matchedLeafCount++;
+          return node.leaf.asMatchable().match(cd);
+        case CHANGE_IS_NEW:
+          return cd.change().isNew();
+        case NEVER:
+          return false;
+      }
+      throw new IllegalStateException("unexpected node kind: " + node.kind);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.plugins.checks.api.CheckerStatus;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Evaluates which checkers of a repository are relevant for a change and which of them are
+ * required for submitting the change.
+ *
+ * <p>One {@link CheckerEvaluationPlan} is kept per repository, so that sub-predicates which are
+ * shared between the queries of the checkers of the repository are matched only once per change.
+ * The plan is rebuilt when the set of checkers or any of the checkers changes. Plans that contain
+ * predicates which capture state at the time their query is parsed, e.g. the cutoff of {@code
+ * age:}, are not kept, see {@link CheckerPredicateCache}.
+ *
+ * <p>The relevance of each checker is still stored in the {@link CheckerRelevanceCache}, unless it
+ * depends on {@link CheckerQuery#EXTERNAL_STATE_OPERATORS external state}. The plan is only
+ * evaluated if the relevance of at least one checker is not cached.
+ */
+@Singleton
+public class CheckerEvaluator {
+  @AutoValue
+  public abstract static class Result {
+    /** Returns the checkers that are relevant for the change, regardless of their status. */
+    public abstract ImmutableSet<CheckerUuid> relevantCheckers();
+
+    /** Returns the enabled checkers that are relevant for the change and required for submit. */
+    public abstract ImmutableSet<CheckerUuid> requiredCheckers();
+  }
+
+  private static class PlanEntry {
+    private final ImmutableMap<CheckerUuid, ObjectId> checkerRefStates;
+    private final CheckerEvaluationPlan plan;
+
+    PlanEntry(ImmutableMap<CheckerUuid, ObjectId> checkerRefStates, CheckerEvaluationPlan plan) {
+      this.checkerRefStates = checkerRefStates;
+      this.plan = plan;
+    }
+  }
+
+  private final Provider<CheckerQuery> checkerQueryProvider;
+  private final CheckerRelevanceCache checkerRelevanceCache;
+  private final CheckerPredicateCache checkerPredicateCache;
+  private final ConcurrentMap<Project.NameKey, PlanEntry> plans = new ConcurrentHashMap<>();
+
+  @Inject
+  CheckerEvaluator(
+      Provider<CheckerQuery> checkerQueryProvider,
+      CheckerRelevanceCache checkerRelevanceCache,
+      CheckerPredicateCache checkerPredicateCache) {
+    this.checkerQueryProvider = checkerQueryProvider;
+    this.checkerRelevanceCache = checkerRelevanceCache;
+    this.checkerPredicateCache = checkerPredicateCache;
+  }
+
+  /**
+   * Evaluates the relevance of checkers for the current state of a change.
+   *
+   * @param checkers the checkers of the repository of the change, as returned by {@link
+   *     Checkers#checkersOf(Project.NameKey)}.
+   * @param cd the change.
+   * @return the relevant and the required checkers.
+   */
+  public Result evaluate(Collection<Checker> checkers, ChangeData cd) throws StorageException {
+    Supplier<CheckerEvaluationPlan.Evaluation> evaluation =
+        Suppliers.memoize(() -> getPlan(cd.project(), checkers).evaluate(cd));
+
+    ImmutableSet.Builder<CheckerUuid> relevantCheckers = ImmutableSet.builder();
+    ImmutableSet.Builder<CheckerUuid> requiredCheckers = ImmutableSet.builder();
+    for (Checker checker : checkers) {
+      if (!checkerRelevanceCache.isRelevant(
+          checker, cd, () -> evaluation.get().isRelevant(checker.getUuid()))) {
+        continue;
+      }
+      relevantCheckers.add(checker.getUuid());
+      if (checker.getStatus() == CheckerStatus.ENABLED && checker.isRequired()) {
+        requiredCheckers.add(checker.getUuid());
+      }
+    }
+    return new AutoValue_CheckerEvaluator_Result(
+        relevantCheckers.build(), requiredCheckers.build());
+  }
+
+  /**
+   * Returns whether the relevance of any of the given checkers depends on {@link
+   * CheckerQuery#EXTERNAL_STATE_OPERATORS external state}.
+   */
+  public boolean dependsOnExternalState(Collection<Checker> checkers) {
+    return checkers.stream().anyMatch(checkerPredicateCache::dependsOnExternalState);
+  }
+
+  private CheckerEvaluationPlan getPlan(Project.NameKey project, Collection<Checker> checkers) {
+    ImmutableMap<CheckerUuid, ObjectId> checkerRefStates =
+        checkers.stream().collect(toImmutableMap(Checker::getUuid, c -> c.getRefState().copy()));
+    PlanEntry entry = plans.get(project);
+    if (entry != null && entry.checkerRefStates.equals(checkerRefStates)) {
+      return entry.plan;
+    }
+
+    CheckerEvaluationPlan plan = checkerQueryProvider.get().createEvaluationPlan(checkers);
+    if (checkers.stream().anyMatch(checkerPredicateCache::dependsOnParseTimeState)) {
+      plans.remove(project);
+    } else {
+      plans.put(project, new PlanEntry(checkerRefStates, plan));
+    }
+    return plan;
+  }
+}
@@ -0,0 +1,182 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * In-memory cache of the predicates that are compiled from the queries of checkers.
+ *
+ * <p>Whether a checker is relevant for a change is evaluated for every checker of a repository and
+ * every change when checks are listed, backfilled and when the submit rule is evaluated. Parsing
+ * the query of the checker each time is wasteful, since the query only changes when the checker
+ * is updated. The cache key contains the SHA-1 of the checker ref from which the checker was
+ * loaded, so that updates of the checker result in a new key.
+ *
+ * <p>Predicates of some operators capture state when the query is parsed, e.g. {@code age:}
+ * computes its cutoff from the current time and {@code reviewer:} resolves accounts by name (see
+ * {@link CheckerQuery#PARSE_TIME_STATE_OPERATORS}). Such predicates would become stale without an
+ * update of the checker, hence queries that use these operators are parsed each time they are
+ * needed. The cache still remembers which operators the query of a checker uses, so that this
+ * decision doesn't require parsing the query.
+ *
+ * <p>The cached predicates are parsed for the anonymous user, so they don't depend on the calling
+ * user and can be shared across requests.
+ */
+@Singleton
+class CheckerPredicateCache {
+  private static final String NAME = "checker_predicates";
+
+  static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(NAME, Key.class, Entry.class).maximumWeight(10000);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    abstract CheckerUuid checkerUuid();
+
+    /** SHA-1 of the checker ref from which the checker was loaded. */
+    abstract ObjectId checkerRefState();
+
+    static Key create(Checker checker) {
+      return new AutoValue_CheckerPredicateCache_Key(
+          checker.getUuid(), checker.getRefState().copy());
+    }
+  }
+
+  /** Operators of the query of a checker and, if it may be reused, the compiled predicate. */
+  static class Entry {
+    private final boolean dependsOnParseTimeState;
+    private final boolean dependsOnExternalState;
+
+    // Guarded by this. Only set if the predicate doesn't depend on state at parse time.
+    private Optional<Predicate<ChangeData>> predicate;
+
+    Entry(ImmutableSet<String> operators) {
+      this.dependsOnParseTimeState =
+          !Collections.disjoint(operators, CheckerQuery.PARSE_TIME_STATE_OPERATORS);
+      this.dependsOnExternalState =
+          !Collections.disjoint(operators, CheckerQuery.EXTERNAL_STATE_OPERATORS);
+    }
+  }
+
+  private final Cache<Key, Entry> cache;
+  private final Counter0 parseCount;
+  private final AtomicLong parseCountValue = new AtomicLong();
+
+  @Inject
+  CheckerPredicateCache(@Named(NAME) Cache<Key, Entry> cache, MetricMaker metricMaker) {
+    this.cache = cache;
+    this.parseCount =
+        metricMaker.newCounter(
+            "checks/checker_query/parse_count",
+            new Description("Number of checker queries that were parsed into predicates")
+                .setRate()
+                .setUnit("queries"));
+  }
+
+  /**
+   * Returns the predicate for the query of a checker.
+   *
+   * @param checker the checker.
+   * @param loader compiles the predicate if it is not cached, returns an empty {@code Optional} if
+   *     the query of the checker is invalid.
+   * @return the compiled predicate, empty if the query of the checker is invalid.
+   */
+  Optional<Predicate<ChangeData>> get(
+      Checker checker, Callable<Optional<Predicate<ChangeData>>> loader) {
+    Entry entry = getEntry(checker);
+    if (entry.dependsOnParseTimeState) {
+      return parse(loader);
+    }
+    synchronized (entry) {
+      if (entry.predicate == null) {
+        entry.predicate = parse(loader);
+      }
+      return entry.predicate;
+    }
+  }
+
+  /**
+   * Returns whether the predicate of a checker captures state at the time its query is parsed, in
+   * which case the predicate must not be reused after it was matched.
+   */
+  boolean dependsOnParseTimeState(Checker checker) {
+    return checker.getQuery().isPresent() && getEntry(checker).dependsOnParseTimeState;
+  }
+
+  /**
+   * Returns whether the relevance of a checker depends on {@link
+   * CheckerQuery#EXTERNAL_STATE_OPERATORS external state}.
+   */
+  boolean dependsOnExternalState(Checker checker) {
+    return checker.getQuery().isPresent() && getEntry(checker).dependsOnExternalState;
+  }
+
+  /** Returns the number of checker queries that were parsed into predicates. */
+  @VisibleForTesting
+  long getParseCount() {
+    return parseCountValue.get();
+  }
+
+  private Entry getEntry(Checker checker) {
+    try {
+      return cache.get(
+          Key.create(checker),
+          () -> new Entry(CheckerQuery.getOperators(checker.getQuery().orElse(""))));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new StorageException(e.getCause());
+    }
+  }
+
+  private Optional<Predicate<ChangeData>> parse(Callable<Optional<Predicate<ChangeData>>> loader) {
+    parseCount.increment();
+    parseCountValue.incrementAndGet();
+    try {
+      return loader.call();
+    } catch (Exception e) {
+      Throwables.throwIfUnchecked(e);
+      throw new StorageException(e);
+    }
+  }
+}
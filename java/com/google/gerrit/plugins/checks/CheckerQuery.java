@@ -27,6 +27,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
@@ -48,6 +49,7 @@ import com.google.gerrit.server.update.RetryableAction.ActionType;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -58,7 +60,8 @@ import org.eclipse.jgit.errors.ConfigInvalidException;
  * Utility for validating and executing relevancy queries for checkers.
  *
  * <p>Instances are not threadsafe and should not be reused across requests. However, they may be
- * reused within a single request.
+ * reused within a single request. The predicates that are used to check the relevance of checkers
+ * are cached across requests by {@link CheckerPredicateCache}.
  */
 public class CheckerQuery {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -122,6 +125,29 @@ public class CheckerQuery {
           "unresolved",
           "wip");
 
+  // Operators whose predicates capture state at the time the query is parsed, i.e. the current
+  // time for "age:", and accounts and groups that are resolved by name. Predicates of queries that
+  // use these operators must not be reused after they were matched.
+  static final ImmutableSortedSet<String> PARSE_TIME_STATE_OPERATORS =
+      ImmutableSortedSet.of("age", "assignee", "label", "ownerin", "r", "reviewer", "reviewerin");
+
+  /**
+   * Operators whose predicates depend on external state, i.e. state that is neither stored in the
+   * change nor in the checker: the state that is captured at parse time, such as the current time
+   * for {@code age:}, group memberships for {@code ownerin:} and {@code reviewerin:}, the label
+   * configuration of the project for {@code label:} and the submit records of the change for
+   * {@code submittable:}.
+   *
+   * <p>Whether queries that use these operators match a change can change without an update of the
+   * change or the checker. Hence nothing that is derived from the relevance of such checkers may be
+   * cached by the SHA-1s of the change meta ref and the checker refs.
+   */
+  static final ImmutableSortedSet<String> EXTERNAL_STATE_OPERATORS =
+      ImmutableSortedSet.<String>naturalOrder()
+          .addAll(PARSE_TIME_STATE_OPERATORS)
+          .add("submittable")
+          .build();
+
   @VisibleForTesting
   public static String clean(String query) throws ConfigInvalidException {
     String trimmed = requireNonNull(query).trim();
@@ -137,6 +163,35 @@ public class CheckerQuery {
     return trimmed;
   }
 
+  /**
+   * Returns the operators that are used in a query.
+   *
+   * @param query the query.
+   * @return the operators of the query, empty if the query is empty or cannot be parsed.
+   */
+  static ImmutableSet<String> getOperators(String query) {
+    if (query.trim().isEmpty()) {
+      return ImmutableSet.of();
+    }
+    ImmutableSet.Builder<String> operators = ImmutableSet.builder();
+    try {
+      collectOperators(QueryParser.parse(query), operators);
+    } catch (QueryParseException e) {
+      return ImmutableSet.of();
+    }
+    return operators.build();
+  }
+
+  private static void collectOperators(Tree node, ImmutableSet.Builder<String> operators) {
+    if (node.getType() == FIELD_NAME) {
+      operators.add(node.getText());
+      return;
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      collectOperators(node.getChild(i), operators);
+    }
+  }
+
   private static void checkOperators(Tree node) throws ConfigInvalidException {
     switch (node.getType()) {
       case AND:
@@ -168,23 +223,38 @@ public class CheckerQuery {
   }
 
   private final RetryHelper retryHelper;
+  private final Provider<AnonymousUser> anonymousUserProvider;
+  private final Provider<ChangeQueryBuilder> queryBuilderProvider;
   private final Provider<ChangeQueryProcessor> changeQueryProcessorProvider;
-  private final ChangeQueryBuilder queryBuilder;
+  private final CheckerPredicateCache checkerPredicateCache;
+
+  // Created lazily, since it's not needed if all predicates are cached.
+  private ChangeQueryBuilder queryBuilder;
 
   @Inject
   CheckerQuery(
       RetryHelper retryHelper,
       Provider<AnonymousUser> anonymousUserProvider,
       Provider<ChangeQueryBuilder> queryBuilderProvider,
-      Provider<ChangeQueryProcessor> changeQueryProcessorProvider) {
+      Provider<ChangeQueryProcessor> changeQueryProcessorProvider,
+      CheckerPredicateCache checkerPredicateCache) {
     this.retryHelper = retryHelper;
+    this.anonymousUserProvider = anonymousUserProvider;
+    this.queryBuilderProvider = queryBuilderProvider;
     this.changeQueryProcessorProvider = changeQueryProcessorProvider;
-    // The user passed to the ChangeQueryBuilder just controls how it parses "self". Anonymous means
-    // "self" is disallowed, which is correct for checker queries, since the results should not
-    // depend on the calling user. However, note that results are still filtered by visibility, but
-    // visibility is controlled by ChangeQueryProcessor, which always uses the current user and
-    // can't be overridden.
-    this.queryBuilder = queryBuilderProvider.get().asUser(anonymousUserProvider.get());
+    this.checkerPredicateCache = checkerPredicateCache;
+  }
+
+  private ChangeQueryBuilder queryBuilder() {
+    if (queryBuilder == null) {
+      // The user passed to the ChangeQueryBuilder just controls how it parses "self". Anonymous
+      // means "self" is disallowed, which is correct for checker queries, since the results should
+      // not depend on the calling user. However, note that results are still filtered by
+      // visibility, but visibility is controlled by ChangeQueryProcessor, which always uses the
+      // current user and can't be overridden.
+      queryBuilder = queryBuilderProvider.get().asUser(anonymousUserProvider.get());
+    }
+    return queryBuilder;
   }
 
   public boolean isCheckerRelevant(Checker checker, ChangeData cd) throws StorageException {
@@ -192,17 +262,51 @@ public class CheckerQuery {
       return cd.change().isNew();
     }
 
-    Predicate<ChangeData> predicate;
-    try {
-      predicate =
-          createQueryPredicate(checker.getUuid(), checker.getRepository(), checker.getQuery());
-    } catch (ConfigInvalidException e) {
-      logger.atWarning().withCause(e).log(
-          "skipping invalid query for checker %s", checker.getUuid());
-      return false;
+    Optional<Predicate<ChangeData>> predicate = getPredicate(checker);
+    return predicate.isPresent() && predicate.get().asMatchable().match(cd);
+  }
+
+  /**
+   * Creates a plan for matching the queries of several checkers against changes.
+   *
+   * <p>Sub-predicates that are shared between the queries of the checkers are matched only once
+   * per change when the plan is evaluated.
+   *
+   * @param checkers the checkers, usually all checkers of a repository.
+   * @return the evaluation plan.
+   */
+  public CheckerEvaluationPlan createEvaluationPlan(Collection<Checker> checkers)
+      throws StorageException {
+    CheckerEvaluationPlan.Builder plan = CheckerEvaluationPlan.builder();
+    for (Checker checker : checkers) {
+      if (!checker.getQuery().isPresent()) {
+        plan.addCheckerWithoutQuery(checker.getUuid());
+        continue;
+      }
+      Optional<Predicate<ChangeData>> predicate = getPredicate(checker);
+      if (predicate.isPresent()) {
+        plan.addChecker(checker.getUuid(), predicate.get());
+      } else {
+        plan.addCheckerWithInvalidQuery(checker.getUuid());
+      }
     }
+    return plan.build();
+  }
 
-    return predicate.asMatchable().match(cd);
+  private Optional<Predicate<ChangeData>> getPredicate(Checker checker) throws StorageException {
+    return checkerPredicateCache.get(
+        checker,
+        () -> {
+          try {
+            return Optional.of(
+                createQueryPredicate(
+                    checker.getUuid(), checker.getRepository(), checker.getQuery()));
+          } catch (ConfigInvalidException e) {
+            logger.atWarning().withCause(e).log(
+                "skipping invalid query for checker %s", checker.getUuid());
+            return Optional.empty();
+          }
+        });
   }
 
   /**
@@ -286,7 +390,7 @@ public class CheckerQuery {
       String query = optionalQuery.get();
       Predicate<ChangeData> predicateForQuery;
       try {
-        predicateForQuery = queryBuilder.parse(query);
+        predicateForQuery = queryBuilder().parse(query);
       } catch (QueryParseException e) {
         throw invalidQueryException(checkerUuid, optionalQuery, e);
       }
@@ -17,7 +17,9 @@ package com.google.gerrit.plugins.checks;
 import static com.google.gerrit.entities.RefNames.REFS_CHANGES;
 import static com.google.gerrit.entities.RefNames.shard;
 
+import com.google.common.primitives.Ints;
 import com.google.gerrit.entities.Change;
+import java.util.Optional;
 
 public class CheckerRef {
   /** Ref namespace for checkers. */
@@ -33,6 +35,25 @@ public class CheckerRef {
     return REFS_CHANGES + shard(changeId.get()) + CHECKS_SUFFIX;
   }
 
+  /**
+   * Parses the change ID from a checks ref.
+   *
+   * @param ref the name of the ref
+   * @return the ID of the change to which the checks ref belongs, {@link Optional#empty()} if the
+   *     ref is not a checks ref
+   */
+  public static Optional<Change.Id> parseChangeIdFromChecksRef(String ref) {
+    if (!ref.startsWith(REFS_CHANGES) || !ref.endsWith(CHECKS_SUFFIX)) {
+      return Optional.empty();
+    }
+    String shardedId = ref.substring(REFS_CHANGES.length(), ref.length() - CHECKS_SUFFIX.length());
+    Integer id = Ints.tryParse(shardedId.substring(shardedId.indexOf('/') + 1));
+    if (id == null || id <= 0 || !checksRef(Change.id(id)).equals(ref)) {
+      return Optional.empty();
+    }
+    return Optional.of(Change.id(id));
+  }
+
   /**
    * Whether the ref is a checker branch that stores NoteDb data of a checker. Returns {@code true}
    * for all refs that start with {@code refs/checkers/}.
@@ -0,0 +1,164 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * In-memory cache of whether checkers are relevant for changes.
+ *
+ * <p>Whether a checker is relevant for a change is needed to backfill checks and to decide whether
+ * a checker is required for submit, and it is asked for the same checkers and changes over and
+ * over again. The cache key contains the SHA-1 of the change meta ref and the SHA-1 of the checker
+ * ref, so that any update of the change or the checker results in a new key.
+ *
+ * <p>The relevance of checkers whose queries depend on {@link
+ * CheckerQuery#EXTERNAL_STATE_OPERATORS external state} is not cached, since it can change without
+ * a new key.
+ *
+ * <p>The cache is only populated lazily, on the first lookup of a checker for a state of a change.
+ * Since nearly every update of a change results in a new key, computing the relevance eagerly on
+ * updates would mostly compute entries for changes that nobody looks at before their next update.
+ */
+@Singleton
+public class CheckerRelevanceCache {
+  private static final String NAME = "checker_relevance";
+
+  static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(NAME, Key.class, Boolean.class).maximumWeight(100000);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    abstract Project.NameKey project();
+
+    abstract Change.Id changeId();
+
+    /** SHA-1 of the change meta ref, since relevance depends on the current state of the change. */
+    abstract ObjectId changeMetaId();
+
+    abstract CheckerUuid checkerUuid();
+
+    /** SHA-1 of the checker ref, since relevance depends on the query of the checker. */
+    abstract ObjectId checkerRefState();
+
+    static Key create(Checker checker, ChangeData cd) {
+      return new AutoValue_CheckerRelevanceCache_Key(
+          cd.project(),
+          cd.getId(),
+          cd.notes().getMetaId().copy(),
+          checker.getUuid(),
+          checker.getRefState().copy());
+    }
+  }
+
+  private final Cache<Key, Boolean> cache;
+  private final Provider<CheckerQuery> checkerQueryProvider;
+  private final CheckerPredicateCache checkerPredicateCache;
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong uncachedCount = new AtomicLong();
+
+  @Inject
+  CheckerRelevanceCache(
+      @Named(NAME) Cache<Key, Boolean> cache,
+      Provider<CheckerQuery> checkerQueryProvider,
+      CheckerPredicateCache checkerPredicateCache) {
+    this.cache = cache;
+    this.checkerQueryProvider = checkerQueryProvider;
+    this.checkerPredicateCache = checkerPredicateCache;
+  }
+
+  /**
+   * Returns whether a checker is relevant for the current state of a change.
+   *
+   * <p>The status of the checker is not taken into account.
+   *
+   * @param checker the checker.
+   * @param cd the change.
+   * @return whether the checker is relevant for the change.
+   * @see CheckerQuery#isCheckerRelevant(Checker, ChangeData)
+   */
+  public boolean isRelevant(Checker checker, ChangeData cd) throws StorageException {
+    return isRelevant(checker, cd, () -> checkerQueryProvider.get().isCheckerRelevant(checker, cd));
+  }
+
+  /**
+   * Returns whether a checker is relevant for the current state of a change.
+   *
+   * @param checker the checker.
+   * @param cd the change.
+   * @param loader computes the relevance if it is not cached.
+   * @return whether the checker is relevant for the change.
+   */
+  boolean isRelevant(Checker checker, ChangeData cd, Callable<Boolean> loader)
+      throws StorageException {
+    if (checkerPredicateCache.dependsOnExternalState(checker)) {
+      uncachedCount.incrementAndGet();
+      try {
+        return loader.call();
+      } catch (Exception e) {
+        Throwables.throwIfUnchecked(e);
+        throw new StorageException(e);
+      }
+    }
+
+    try {
+      return cache.get(
+          Key.create(checker, cd),
+          () -> {
+            loadCount.incrementAndGet();
+            return loader.call();
+          });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new StorageException(e.getCause());
+    }
+  }
+
+  /** Returns the number of times the relevance of a checker was computed and cached. */
+  @VisibleForTesting
+  public long getLoadCount() {
+    return loadCount.get();
+  }
+
+  /** Returns the number of times the relevance of a checker was computed without caching it. */
+  @VisibleForTesting
+  public long getUncachedCount() {
+    return uncachedCount.get();
+  }
+}
@@ -16,14 +16,18 @@ package com.google.gerrit.plugins.checks;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.plugins.checks.api.CombinedCheckState;
+import com.google.gerrit.server.query.change.ChangeData;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.eclipse.jgit.lib.ObjectId;
 
 /**
  * A database accessor for read calls related to checks.
@@ -49,6 +53,22 @@ public interface Checks {
       Project.NameKey projectName, PatchSet.Id patchSetId, GetCheckOptions options)
       throws StorageException, IOException;
 
+  /**
+   * Returns a {@link List} of {@link Check}s for the given change and patchset.
+   *
+   * <p>Same as {@link #getChecks(Project.NameKey, PatchSet.Id, GetCheckOptions)}, but reuses a
+   * {@link ChangeData} that the caller already holds.
+   *
+   * @param changeData the change
+   * @param patchSetId the ID of the patch set
+   * @param options options for getting checks.
+   * @return the checks
+   * @throws StorageException if the checks couldn't be retrieved from the storage
+   */
+  ImmutableList<Check> getChecks(
+      ChangeData changeData, PatchSet.Id patchSetId, GetCheckOptions options)
+      throws StorageException, IOException;
+
   /**
    * Returns a {@link Optional} holding a single check. {@code Optional.empty()} if the check does
    * not exist.
@@ -67,8 +87,8 @@ public interface Checks {
    * Returns the combined check state of a given patch set.
    *
    * <p>Most callers should prefer {@link
-   * com.google.gerrit.plugins.checks.CombinedCheckStateCache#reload} to automatically fix up the
-   * cache in case primary storage differs from the cached value.
+   * com.google.gerrit.plugins.checks.CombinedCheckStateCache#getValidated} to automatically fix up
+   * the cache in case primary storage differs from the cached value.
    *
    * @param projectName the name of the project.
    * @param patchSetId the ID of the patch set
@@ -79,6 +99,91 @@ public interface Checks {
   CombinedCheckState getCombinedCheckState(Project.NameKey projectName, PatchSet.Id patchSetId)
       throws IOException, StorageException;
 
+  /**
+   * Returns the combined check state of a given patch set.
+   *
+   * <p>Same as {@link #getCombinedCheckState(Project.NameKey, PatchSet.Id)}, but reuses a {@link
+   * ChangeData} that the caller already holds for evaluating the queries of all checkers.
+   *
+   * @param changeData the change.
+   * @param patchSetId the ID of the patch set
+   * @return the {@link CombinedCheckState} of the current patch set.
+   * @throws IOException if failed to get the {@link CombinedCheckState}.
+   * @throws StorageException if failed to get the {@link CombinedCheckState}.
+   */
+  CombinedCheckState getCombinedCheckState(ChangeData changeData, PatchSet.Id patchSetId)
+      throws IOException, StorageException;
+
+  /**
+   * Returns the counts of the check states of a given patch set, from which the combined check
+   * state is computed.
+   *
+   * @param changeData the change.
+   * @param patchSetId the ID of the patch set
+   * @return the counts of the check states, together with the state they were computed from.
+   * @throws IOException if failed to get the counts.
+   * @throws StorageException if failed to get the counts.
+   */
+  CheckStateCountSnapshot getCheckStateCount(ChangeData changeData, PatchSet.Id patchSetId)
+      throws IOException, StorageException;
+
+  /**
+   * Returns whether previously computed counts of check states are still up to date.
+   *
+   * <p>The counts are up to date if they were computed from the current state of the checks ref and
+   * if neither the change nor any checker of the repository was updated since. This is much cheaper
+   * than computing the counts again, as it only requires reading refs.
+   *
+   * @param changeData the change.
+   * @param snapshot the previously computed counts.
+   * @return whether the counts are up to date.
+   * @throws IOException if failed to validate the counts.
+   * @throws StorageException if failed to validate the counts.
+   */
+  boolean isCheckStateCountUpToDate(ChangeData changeData, CheckStateCountSnapshot snapshot)
+      throws IOException, StorageException;
+
+  /**
+   * Returns the counts of the check states of the current patch sets of several changes.
+   *
+   * <p>Compared to calling {@link #getCheckStateCount(ChangeData, PatchSet.Id)} for each change,
+   * the storage of each repository is accessed only once and the checkers of each repository are
+   * loaded only once.
+   *
+   * @param changes the changes, may belong to different repositories.
+   * @return the counts of the check states per current patch set.
+   * @throws IOException if failed to get the counts.
+   * @throws StorageException if failed to get the counts.
+   */
+  ImmutableMap<PatchSet.Id, CheckStateCountSnapshot> getCheckStateCounts(
+      Collection<ChangeData> changes) throws IOException, StorageException;
+
+  /**
+   * Updates previously computed counts of check states after individual checks were written.
+   *
+   * <p>The counts can only be updated incrementally if they were computed from the checks ref that
+   * the write was based on and if neither the change nor any checker of the repository was updated
+   * since, as that may change which checks are backfilled or required.
+   *
+   * @param changeData the change.
+   * @param patchSetId the ID of the patch set
+   * @param snapshot the previously computed counts.
+   * @param oldChecksRefState the SHA-1 of the checks ref before the write.
+   * @param newChecksRefState the SHA-1 of the checks ref after the write.
+   * @param transitions the state transitions of the written checks.
+   * @return the updated counts, empty if the counts cannot be updated incrementally.
+   * @throws IOException if failed to update the counts.
+   * @throws StorageException if failed to update the counts.
+   */
+  Optional<CheckStateCountSnapshot> updateCheckStateCount(
+      ChangeData changeData,
+      PatchSet.Id patchSetId,
+      CheckStateCountSnapshot snapshot,
+      ObjectId oldChecksRefState,
+      ObjectId newChecksRefState,
+      Collection<CheckStateTransition> transitions)
+      throws IOException, StorageException;
+
   /**
    * Returns whether all required checks have passed.
    *
@@ -91,6 +196,21 @@ public interface Checks {
   boolean areAllRequiredCheckersPassing(Project.NameKey projectName, PatchSet.Id patchSetId)
       throws IOException, StorageException;
 
+  /**
+   * Returns whether all required checks have passed.
+   *
+   * <p>Same as {@link #areAllRequiredCheckersPassing(Project.NameKey, PatchSet.Id)}, but reuses a
+   * {@link ChangeData} that the caller already holds for evaluating the queries of all checkers.
+   *
+   * @param changeData the change.
+   * @param patchSetId the ID of the patch set
+   * @return true if all required checks have passed.
+   * @throws IOException if failed to check if all required checks have passed.
+   * @throws StorageException if failed to check if all required checks have passed.
+   */
+  boolean areAllRequiredCheckersPassing(ChangeData changeData, PatchSet.Id patchSetId)
+      throws IOException, StorageException;
+
   /**
    * Computes an ETag for the checks of the given change.
    *
@@ -110,6 +230,18 @@ public interface Checks {
    */
   boolean isRequiredForSubmit(Checker checker, Change.Id changeId);
 
+  /**
+   * Returns whether the checker is required for submission for this change.
+   *
+   * <p>Callers that evaluate several checkers for the same change should use this method with a
+   * single {@link ChangeData}, so that the change is loaded only once.
+   *
+   * @param checker The checker that is being checked whether it's required for submission.
+   * @param changeData The change which submission requirement is in question.
+   * @return True if the checker is required for submit, false otherwise.
+   */
+  boolean isRequiredForSubmit(Checker checker, ChangeData changeData);
+
   @AutoValue
   abstract class GetCheckOptions {
     public static GetCheckOptions defaults() {
@@ -14,8 +14,12 @@
 
 package com.google.gerrit.plugins.checks;
 
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.DuplicateKeyException;
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * API for updating checks in the storage backend.
@@ -44,4 +48,23 @@ public interface ChecksStorageUpdate {
    * @throws IOException thrown in case of an I/O error
    */
   public Check updateCheck(CheckKey key, CheckUpdate checkUpdate) throws IOException;
+
+  /**
+   * Creates or updates multiple checks of a patch set in the storage backend.
+   *
+   * <p>All updates are applied atomically, i.e. either all checks are written or none. Checks that
+   * don't exist yet are created, existing checks are updated.
+   *
+   * @param repository the repository that contains the change
+   * @param patchSetId the ID of the patch set to which the checks belong
+   * @param checkUpdates the updates describing the check properties that should be set, keyed by
+   *     the UUID of the checker
+   * @return the created or updated checks, in the iteration order of {@code checkUpdates}
+   * @throws IOException thrown in case of an I/O error
+   */
+  public ImmutableList<Check> upsertChecks(
+      Project.NameKey repository,
+      PatchSet.Id patchSetId,
+      Map<CheckerUuid, CheckUpdate> checkUpdates)
+      throws IOException;
 }
@@ -14,34 +14,27 @@
 
 package com.google.gerrit.plugins.checks;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.flogger.FluentLogger;
+import com.google.common.collect.ImmutableList;
 import com.google.gerrit.common.Nullable;
-import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.DuplicateKeyException;
-import com.google.gerrit.extensions.api.changes.Changes;
 import com.google.gerrit.extensions.api.changes.NotifyHandling;
 import com.google.gerrit.extensions.api.changes.NotifyInfo;
 import com.google.gerrit.extensions.api.changes.RecipientType;
 import com.google.gerrit.extensions.restapi.BadRequestException;
-import com.google.gerrit.extensions.restapi.RestApiException;
-import com.google.gerrit.plugins.checks.Checks.GetCheckOptions;
+import com.google.gerrit.plugins.checks.api.CheckState;
 import com.google.gerrit.plugins.checks.api.CombinedCheckState;
-import com.google.gerrit.plugins.checks.email.CombinedCheckStateUpdatedSender;
 import com.google.gerrit.server.IdentifiedUser;
-import com.google.gerrit.server.PatchSetUtil;
 import com.google.gerrit.server.ServerInitiated;
 import com.google.gerrit.server.UserInitiated;
 import com.google.gerrit.server.change.NotifyResolver;
-import com.google.gerrit.server.mail.send.MessageIdGenerator;
-import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 
 /**
@@ -51,10 +44,14 @@ import org.eclipse.jgit.errors.ConfigInvalidException;
  *
  * <p>This class contains additional business logic for updating checks which is independent of the
  * used storage layer (e.g. sending email notifications).
+ *
+ * <p>Reindexing the change and sending email notifications are executed by the {@link
+ * PostUpdateExecutor}, which may execute them asynchronously. Reindexing may additionally be
+ * deferred by the {@link ChangeReindexScheduler} and emails may be held back by the {@link
+ * CombinedCheckStateNotifier}. Callers that need to observe these side effects (e.g. query the
+ * change index for the new combined check state) can ask to wait for them.
  */
 public class ChecksUpdate {
-  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-
   interface Factory {
     ChecksUpdate create(IdentifiedUser currentUser);
 
@@ -63,39 +60,27 @@ public class ChecksUpdate {
 
   private final ChecksStorageUpdate checksStorageUpdate;
   private final CombinedCheckStateCache combinedCheckStateCache;
-  private final CombinedCheckStateUpdatedSender.Factory combinedCheckStateUpdatedSenderFactory;
-  private final ChangeNotes.Factory notesFactory;
-  private final PatchSetUtil psUtil;
-  private final Checks checks;
-  private final Checkers checkers;
   private final NotifyResolver notifyResolver;
-  private final MessageIdGenerator messageIdGenerator;
-  private final Changes changes;
+  private final ChangeReindexScheduler changeReindexScheduler;
+  private final CombinedCheckStateNotifier combinedCheckStateNotifier;
+  private final PostUpdateExecutor postUpdateExecutor;
   private final Optional<IdentifiedUser> currentUser;
 
   @AssistedInject
   ChecksUpdate(
       @UserInitiated ChecksStorageUpdate checksStorageUpdate,
       CombinedCheckStateCache combinedCheckStateCache,
-      CombinedCheckStateUpdatedSender.Factory combinedCheckStateUpdatedSenderFactory,
-      ChangeNotes.Factory notesFactory,
-      PatchSetUtil psUtil,
-      Checks checks,
-      Checkers checkers,
       NotifyResolver notifyResolver,
-      MessageIdGenerator messageIdGenerator,
-      Changes changes,
+      ChangeReindexScheduler changeReindexScheduler,
+      CombinedCheckStateNotifier combinedCheckStateNotifier,
+      PostUpdateExecutor postUpdateExecutor,
       @Assisted IdentifiedUser currentUser) {
     this.checksStorageUpdate = checksStorageUpdate;
     this.combinedCheckStateCache = combinedCheckStateCache;
-    this.combinedCheckStateUpdatedSenderFactory = combinedCheckStateUpdatedSenderFactory;
-    this.notesFactory = notesFactory;
-    this.psUtil = psUtil;
-    this.checks = checks;
-    this.checkers = checkers;
     this.notifyResolver = notifyResolver;
-    this.messageIdGenerator = messageIdGenerator;
-    this.changes = changes;
+    this.changeReindexScheduler = changeReindexScheduler;
+    this.combinedCheckStateNotifier = combinedCheckStateNotifier;
+    this.postUpdateExecutor = postUpdateExecutor;
     this.currentUser = Optional.of(currentUser);
   }
 
@@ -103,24 +88,16 @@ public class ChecksUpdate {
   ChecksUpdate(
       @ServerInitiated ChecksStorageUpdate checksStorageUpdate,
       CombinedCheckStateCache combinedCheckStateCache,
-      CombinedCheckStateUpdatedSender.Factory combinedCheckStateUpdatedSenderFactory,
-      ChangeNotes.Factory notesFactory,
-      PatchSetUtil psUtil,
-      Checks checks,
-      Checkers checkers,
       NotifyResolver notifyResolver,
-      MessageIdGenerator messageIdGenerator,
-      Changes changes) {
+      ChangeReindexScheduler changeReindexScheduler,
+      CombinedCheckStateNotifier combinedCheckStateNotifier,
+      PostUpdateExecutor postUpdateExecutor) {
     this.checksStorageUpdate = checksStorageUpdate;
     this.combinedCheckStateCache = combinedCheckStateCache;
-    this.combinedCheckStateUpdatedSenderFactory = combinedCheckStateUpdatedSenderFactory;
-    this.notesFactory = notesFactory;
-    this.psUtil = psUtil;
-    this.checks = checks;
-    this.checkers = checkers;
     this.notifyResolver = notifyResolver;
-    this.messageIdGenerator = messageIdGenerator;
-    this.changes = changes;
+    this.changeReindexScheduler = changeReindexScheduler;
+    this.combinedCheckStateNotifier = combinedCheckStateNotifier;
+    this.postUpdateExecutor = postUpdateExecutor;
     this.currentUser = Optional.empty();
   }
 
@@ -128,7 +105,8 @@ public class ChecksUpdate {
       CheckKey key,
       CheckUpdate checkUpdate,
       @Nullable NotifyHandling notifyHandling,
-      @Nullable Map<RecipientType, NotifyInfo> notifyDetails)
+      @Nullable Map<RecipientType, NotifyInfo> notifyDetails,
+      boolean waitForSideEffects)
       throws DuplicateKeyException, BadRequestException, IOException, ConfigInvalidException {
     CombinedCheckState oldCombinedCheckState =
         combinedCheckStateCache.get(key.repository(), key.patchSet());
@@ -137,10 +115,13 @@ public class ChecksUpdate {
 
     CombinedCheckState newCombinedCheckState =
         combinedCheckStateCache.get(key.repository(), key.patchSet());
-    maybeIndexChange(
-        oldCombinedCheckState, newCombinedCheckState, key.repository(), key.patchSet().changeId());
-    maybeSendEmail(
-        notifyHandling, notifyDetails, check, oldCombinedCheckState, newCombinedCheckState);
+    postUpdate(
+        notifyHandling,
+        notifyDetails,
+        check,
+        oldCombinedCheckState,
+        newCombinedCheckState,
+        waitForSideEffects);
 
     return check;
   }
@@ -149,7 +130,8 @@ public class ChecksUpdate {
       CheckKey key,
       CheckUpdate checkUpdate,
       @Nullable NotifyHandling notifyHandling,
-      @Nullable Map<RecipientType, NotifyInfo> notifyDetails)
+      @Nullable Map<RecipientType, NotifyInfo> notifyDetails,
+      boolean waitForSideEffects)
       throws BadRequestException, IOException, ConfigInvalidException {
     CombinedCheckState oldCombinedCheckState =
         combinedCheckStateCache.get(key.repository(), key.patchSet());
@@ -158,45 +140,74 @@ public class ChecksUpdate {
 
     CombinedCheckState newCombinedCheckState =
         combinedCheckStateCache.get(key.repository(), key.patchSet());
-    maybeIndexChange(
-        oldCombinedCheckState, newCombinedCheckState, key.repository(), key.patchSet().changeId());
-    maybeSendEmail(
-        notifyHandling, notifyDetails, check, oldCombinedCheckState, newCombinedCheckState);
+    postUpdate(
+        notifyHandling,
+        notifyDetails,
+        check,
+        oldCombinedCheckState,
+        newCombinedCheckState,
+        waitForSideEffects);
 
     return check;
   }
 
-  private void maybeIndexChange(
-      CombinedCheckState oldState,
-      CombinedCheckState newState,
-      Project.NameKey project,
-      Change.Id changeId) {
-    if (oldState != newState) {
-      try {
-        changes.id(project.get(), changeId.get()).index();
-      } catch (RestApiException e) {
-        logger.atSevere().withCause(e).log("Cannot index change: %s after check update.", changeId);
-      }
+  /**
+   * Creates or updates multiple checks of a patch set at once.
+   *
+   * <p>The checks are written by a single storage update. The change is reindexed and an email is
+   * sent at most once for the whole batch, based on the combined check state before and after the
+   * update.
+   */
+  public ImmutableList<Check> upsertChecks(
+      Project.NameKey repository,
+      PatchSet.Id patchSetId,
+      Map<CheckerUuid, CheckUpdate> checkUpdates,
+      @Nullable NotifyHandling notifyHandling,
+      @Nullable Map<RecipientType, NotifyInfo> notifyDetails,
+      boolean waitForSideEffects)
+      throws BadRequestException, IOException, ConfigInvalidException {
+    CombinedCheckState oldCombinedCheckState = combinedCheckStateCache.get(repository, patchSetId);
+
+    ImmutableList<Check> updatedChecks =
+        checksStorageUpdate.upsertChecks(repository, patchSetId, checkUpdates);
+
+    CombinedCheckState newCombinedCheckState = combinedCheckStateCache.get(repository, patchSetId);
+    if (!updatedChecks.isEmpty()) {
+      // The email only reports a single check, prefer a failed one since it's most likely the
+      // reason for the change of the combined check state.
+      Check reportedCheck =
+          updatedChecks.stream()
+              .filter(c -> c.state() == CheckState.FAILED)
+              .findFirst()
+              .orElse(updatedChecks.get(updatedChecks.size() - 1));
+      postUpdate(
+          notifyHandling,
+          notifyDetails,
+          reportedCheck,
+          oldCombinedCheckState,
+          newCombinedCheckState,
+          waitForSideEffects);
     }
+
+    return updatedChecks;
   }
 
-  private void maybeSendEmail(
+  /**
+   * Reindexes the change and sends an email if the combined check state was updated.
+   *
+   * <p>The notify settings are resolved before the side effects are submitted to the {@link
+   * PostUpdateExecutor}, so that invalid notify settings are still rejected.
+   */
+  private void postUpdate(
       @Nullable NotifyHandling notifyHandling,
       @Nullable Map<RecipientType, NotifyInfo> notifyDetails,
       Check updatedCheck,
       CombinedCheckState oldCombinedCheckState,
-      CombinedCheckState newCombinedCheckState)
+      CombinedCheckState newCombinedCheckState,
+      boolean waitForSideEffects)
       throws BadRequestException, IOException, ConfigInvalidException {
     if (oldCombinedCheckState == newCombinedCheckState) {
-      // do not send an email if the combined check state was not updated
-      return;
-    }
-
-    CheckKey checkKey = updatedCheck.key();
-    ChangeNotes changeNotes =
-        notesFactory.create(checkKey.repository(), checkKey.patchSet().changeId());
-    if (!checkKey.patchSet().equals(changeNotes.getCurrentPatchSet().id())) {
-      // do not send an email for non-current patch sets
+      // neither reindex nor send an email if the combined check state was not updated
       return;
     }
 
@@ -209,56 +220,23 @@ public class ChecksUpdate {
                 : NotifyHandling.OWNER;
     NotifyResolver.Result notify = notifyResolver.resolve(notifyHandling, notifyDetails);
 
-    try {
-      CombinedCheckStateUpdatedSender sender =
-          combinedCheckStateUpdatedSenderFactory.create(
-              checkKey.repository(), checkKey.patchSet().changeId());
-
-      if (currentUser.isPresent()) {
-        sender.setFrom(currentUser.get().getAccountId());
-      }
-
-      PatchSet patchSet = psUtil.get(changeNotes, checkKey.patchSet());
-      sender.setPatchSet(patchSet);
-      sender.setCombinedCheckState(oldCombinedCheckState, newCombinedCheckState);
-      sender.setCheck(
-          checkers
-              .getChecker(checkKey.checkerUuid())
-              .orElseThrow(
-                  () ->
-                      new IllegalStateException(
-                          String.format(
-                              "checker %s of check %s not found",
-                              checkKey.checkerUuid(), checkKey))),
-          updatedCheck);
-      sender.setNotify(notify);
-      sender.setChecksByChecker(getAllChecksByChecker(checkKey));
-      sender.setMessageId(
-          messageIdGenerator.fromChangeUpdate(checkKey.repository(), checkKey.patchSet()));
-      sender.send();
-    } catch (Exception e) {
-      logger.atSevere().withCause(e).log(
-          "Cannot email update for change %s", checkKey.patchSet().changeId());
-    }
-  }
-
-  private ImmutableMap<Checker, Check> getAllChecksByChecker(CheckKey checkKey)
-      throws IllegalStateException, IOException, ConfigInvalidException {
-    ImmutableMap.Builder<Checker, Check> checksByChecker = ImmutableMap.builder();
-    for (Check check :
-        checks.getChecks(
-            checkKey.repository(), checkKey.patchSet(), GetCheckOptions.withBackfilling())) {
-      Checker checker =
-          checkers
-              .getChecker(check.key().checkerUuid())
-              .orElseThrow(
-                  () ->
-                      new IllegalStateException(
-                          String.format(
-                              "checker %s of check %s not found",
-                              checkKey.checkerUuid(), check.key())));
-      checksByChecker.put(checker, check);
+    CheckKey checkKey = updatedCheck.key();
+    CompletableFuture<Void> sideEffects =
+        postUpdateExecutor.submit(
+            checkKey.patchSet().changeId(),
+            () -> {
+              changeReindexScheduler.reindex(
+                  checkKey.repository(), checkKey.patchSet().changeId(), waitForSideEffects);
+              combinedCheckStateNotifier.notify(
+                  notify,
+                  currentUser.map(IdentifiedUser::getAccountId),
+                  updatedCheck,
+                  oldCombinedCheckState,
+                  newCombinedCheckState,
+                  waitForSideEffects);
+            });
+    if (waitForSideEffects) {
+      sideEffects.join();
     }
-    return checksByChecker.build();
   }
 }
@@ -14,6 +14,8 @@
 
 package com.google.gerrit.plugins.checks;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -21,37 +23,58 @@ import com.google.common.base.Stopwatch;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Description.Units;
 import com.google.gerrit.metrics.Field;
 import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.plugins.checks.api.CombinedCheckState;
+import com.google.gerrit.plugins.checks.api.CombinedCheckState.CheckStateCount;
 import com.google.gerrit.plugins.checks.cache.proto.Cache.CombinedCheckStateCacheKeyProto;
 import com.google.gerrit.server.cache.CacheModule;
-import com.google.gerrit.server.cache.serialize.EnumCacheSerializer;
 import com.google.gerrit.server.cache.serialize.ProtobufSerializer;
 import com.google.gerrit.server.logging.PluginMetadata;
+import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.Inject;
 import com.google.inject.Module;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.eclipse.jgit.lib.ObjectId;
 
 /**
  * Cache of {@link CombinedCheckState} per change.
  *
+ * <p>The cache stores the counts of the check states from which the combined check state is
+ * computed, see {@link CheckStateCountSnapshot}. This allows writes of individual checks to update
+ * the cached value incrementally, instead of reading all checks of the change again.
+ *
  * <p>In the absence of plugin-defined index fields, this cache is used to performantly populate the
- * {@code combinedState} field in {@code ChangeCheckInfo} in the query path.
+ * {@code combinedState} field in {@code ChangeCheckInfo} in the query path, and to match the {@code
+ * combinedstate_checks} change query operator.
  */
 @Singleton
 public class CombinedCheckStateCache {
@@ -63,12 +86,12 @@ public class CombinedCheckStateCache {
     return new CacheModule() {
       @Override
       public void configure() {
-        persist(NAME, CombinedCheckStateCacheKeyProto.class, CombinedCheckState.class)
-            .version(1)
+        persist(NAME, CombinedCheckStateCacheKeyProto.class, CheckStateCountSnapshot.class)
+            .version(2)
             .maximumWeight(10000)
             .diskLimit(-1)
             .keySerializer(new ProtobufSerializer<>(CombinedCheckStateCacheKeyProto.parser()))
-            .valueSerializer(new EnumCacheSerializer<>(CombinedCheckState.class))
+            .valueSerializer(CheckStateCountSnapshot.Serializer.INSTANCE)
             .loader(Loader.class);
       }
     };
@@ -80,6 +103,12 @@ public class CombinedCheckStateCache {
     // getters.
     private final Timer1<Boolean> reloadLatency;
     private final AtomicLongMap<Boolean> reloadCount;
+    private final Counter1<Boolean> transitionsApplied;
+    private final AtomicLongMap<Boolean> transitionsAppliedCount;
+    private final Counter0 skippedReloads;
+    private final AtomicLong skippedReloadCount;
+    private final Counter1<Boolean> validations;
+    private final AtomicLongMap<Boolean> validationCount;
 
     @Inject
     Metrics(@PluginName String pluginName, MetricMaker metricMaker) {
@@ -99,6 +128,46 @@ public class CombinedCheckStateCache {
                   .description("whether reloading resulted in updating the cached value")
                   .build());
       reloadCount = AtomicLongMap.create();
+      transitionsApplied =
+          metricMaker.newCounter(
+              "checks/apply_check_state_transitions",
+              new Description("Number of writes of checks applied to the combined check state")
+                  .setRate(),
+              Field.ofBoolean(
+                      "incremental",
+                      (metadataBuilder, fieldValue) ->
+                          metadataBuilder
+                              .pluginName(pluginName)
+                              .addPluginMetadata(
+                                  PluginMetadata.create(
+                                      "incremental", Boolean.toString(fieldValue))))
+                  .description(
+                      "whether the cached counts were updated incrementally, rather than"
+                          + " recomputed from all checks")
+                  .build());
+      transitionsAppliedCount = AtomicLongMap.create();
+      skippedReloads =
+          metricMaker.newCounter(
+              "checks/skipped_combined_check_state_reloads",
+              new Description(
+                      "Number of writes of checks that could not change the combined check state")
+                  .setRate());
+      skippedReloadCount = new AtomicLong();
+      validations =
+          metricMaker.newCounter(
+              "checks/validate_combined_check_state",
+              new Description("Number of validations of cached combined check states").setRate(),
+              Field.ofBoolean(
+                      "up_to_date",
+                      (metadataBuilder, fieldValue) ->
+                          metadataBuilder
+                              .pluginName(pluginName)
+                              .addPluginMetadata(
+                                  PluginMetadata.create(
+                                      "up_to_date", Boolean.toString(fieldValue))))
+                  .description("whether the cached value was up to date")
+                  .build());
+      validationCount = AtomicLongMap.create();
     }
 
     void recordReload(boolean updated, Duration elapsed) {
@@ -109,20 +178,53 @@ public class CombinedCheckStateCache {
     long getReloadCount(boolean updated) {
       return reloadCount.get(updated);
     }
+
+    void recordTransitionsApplied(boolean incremental) {
+      transitionsApplied.increment(incremental);
+      transitionsAppliedCount.incrementAndGet(incremental);
+    }
+
+    long getTransitionsAppliedCount(boolean incremental) {
+      return transitionsAppliedCount.get(incremental);
+    }
+
+    void recordSkippedReload() {
+      skippedReloads.increment();
+      skippedReloadCount.incrementAndGet();
+    }
+
+    long getSkippedReloadCount() {
+      return skippedReloadCount.get();
+    }
+
+    void recordValidation(boolean upToDate) {
+      validations.increment(upToDate);
+      validationCount.incrementAndGet(upToDate);
+    }
+
+    long getValidationCount(boolean upToDate) {
+      return validationCount.get(upToDate);
+    }
   }
 
-  private final LoadingCache<CombinedCheckStateCacheKeyProto, CombinedCheckState> cache;
+  private final LoadingCache<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> cache;
   private final Loader loader;
   private final Metrics metrics;
+  private final ChangeData.Factory changeDataFactory;
+  private final CombinedCheckStateLoadExecutor loadExecutor;
 
   @Inject
   CombinedCheckStateCache(
-      @Named(NAME) LoadingCache<CombinedCheckStateCacheKeyProto, CombinedCheckState> cache,
+      @Named(NAME) LoadingCache<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> cache,
       Loader loader,
-      Metrics metrics) {
+      Metrics metrics,
+      ChangeData.Factory changeDataFactory,
+      CombinedCheckStateLoadExecutor loadExecutor) {
     this.cache = cache;
     this.loader = loader;
     this.metrics = metrics;
+    this.changeDataFactory = changeDataFactory;
+    this.loadExecutor = loadExecutor;
   }
 
   /**
@@ -134,12 +236,59 @@ public class CombinedCheckStateCache {
    */
   public CombinedCheckState get(Project.NameKey project, PatchSet.Id psId) {
     try {
-      return cache.get(key(project, psId));
+      return cache.get(key(project, psId)).combinedCheckState();
     } catch (ExecutionException e) {
       throw new StorageException(e);
     }
   }
 
+  /**
+   * Get the states of the current patch sets of several changes from the cache, computing missing
+   * states in one batch.
+   *
+   * <p>Missing states are loaded through {@link CacheLoader#loadAll(Iterable)}, which reads the
+   * checks of all changes of a project from one repository and loads the checkers of each project
+   * only once. The batches may be loaded in parallel by the {@link CombinedCheckStateLoadExecutor}.
+   *
+   * @param cds changes to which the states correspond.
+   * @return combined check state per change, without the states that were not loaded within the
+   *     configured time budget.
+   */
+  public ImmutableMap<Change.Id, CombinedCheckState> getAll(Collection<ChangeData> cds) {
+    Map<CombinedCheckStateCacheKeyProto, ChangeData> changesByKey = new LinkedHashMap<>();
+    for (ChangeData cd : cds) {
+      changesByKey.put(key(cd.project(), cd.change().currentPatchSetId()), cd);
+    }
+
+    Map<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> snapshots =
+        new HashMap<>(cache.getAllPresent(changesByKey.keySet()));
+    ImmutableList<ChangeData> missing =
+        changesByKey.entrySet().stream()
+            .filter(e -> !snapshots.containsKey(e.getKey()))
+            .map(Map.Entry::getValue)
+            .collect(toImmutableList());
+    if (!missing.isEmpty()) {
+      snapshots.putAll(
+          loadExecutor.loadAll(
+              missing,
+              batch -> {
+                // Cache the states in the batch, so that batches which complete after the deadline
+                // still populate the cache.
+                Map<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> loaded =
+                    loader.loadAll(batch);
+                cache.putAll(loaded);
+                return loaded;
+              }));
+    }
+
+    return changesByKey.entrySet().stream()
+        .filter(e -> snapshots.containsKey(e.getKey()))
+        .collect(
+            toImmutableMap(
+                e -> e.getValue().getId(),
+                e -> snapshots.get(e.getKey()).combinedCheckState()));
+  }
+
   /**
    * Load the state from primary storage, and update the state in the cache only if it changed.
    *
@@ -153,26 +302,128 @@ public class CombinedCheckStateCache {
    * @return combined check state.
    */
   public CombinedCheckState reload(Project.NameKey project, PatchSet.Id psId) {
-    // Possible future optimization: short-circuit before calling this method, if an individual
-    // check transitioned between two CheckStates which would result in the same CombinedCheckState.
+    CombinedCheckStateCacheKeyProto key = key(project, psId);
+    return reload(key, cache.getIfPresent(key), () -> loader.load(key));
+  }
+
+  /**
+   * Same as {@link #reload(Project.NameKey, PatchSet.Id)}, but reuses a {@link ChangeData} that the
+   * caller already holds, so that the change is not loaded again.
+   *
+   * @param cd change to which the state corresponds.
+   * @param psId patch set to which the state corresponds.
+   * @return combined check state.
+   */
+  public CombinedCheckState reload(ChangeData cd, PatchSet.Id psId) {
+    CombinedCheckStateCacheKeyProto key = key(cd.project(), psId);
+    return reload(key, cache.getIfPresent(key), () -> loader.load(cd, psId));
+  }
+
+  /**
+   * Get the state from the cache, recomputing it only if it is outdated.
+   *
+   * <p>The cached value records the state of the checks ref, the change and the checkers from which
+   * it was computed. These are compared against their current state, which only requires reading
+   * refs, and the state is only recomputed from primary storage if any of them differ. States that
+   * depend on {@link CheckerQuery#EXTERNAL_STATE_OPERATORS external state} are recomputed on every
+   * call, see {@link CheckStateCountSnapshot#dependsOnExternalState()}. Like {@link
+   * #reload(ChangeData, PatchSet.Id)}, this fixes up inconsistencies between the cache and the
+   * actual state, but without recomputing the state on every call.
+   *
+   * @param cd change to which the state corresponds.
+   * @param psId patch set to which the state corresponds.
+   * @return combined check state.
+   */
+  public CombinedCheckState getValidated(ChangeData cd, PatchSet.Id psId) {
+    CombinedCheckStateCacheKeyProto key = key(cd.project(), psId);
+    CheckStateCountSnapshot snapshot = cache.getIfPresent(key);
+    if (snapshot != null) {
+      boolean upToDate = loader.isUpToDate(cd, snapshot);
+      metrics.recordValidation(upToDate);
+      if (upToDate) {
+        return snapshot.combinedCheckState();
+      }
+    }
+    return reload(key, snapshot, () -> loader.load(cd, psId));
+  }
+
+  private CombinedCheckState reload(
+      CombinedCheckStateCacheKeyProto key,
+      @Nullable CheckStateCountSnapshot oldSnapshot,
+      Supplier<CheckStateCountSnapshot> snapshotLoader) {
     Stopwatch sw = Stopwatch.createStarted();
     // Arbitrarily assume that the cache was updated unless we can conclusively prove it wasn't.
     boolean updated = true;
     try {
-      CombinedCheckStateCacheKeyProto key = key(project, psId);
-      CombinedCheckState newState = loader.load(key);
-      CombinedCheckState oldState = cache.getIfPresent(key);
-      if (newState != oldState) {
-        cache.put(key, newState);
+      CheckStateCountSnapshot newSnapshot = snapshotLoader.get();
+      if (!newSnapshot.equals(oldSnapshot)) {
+        cache.put(key, newSnapshot);
       } else {
         updated = false;
       }
-      return newState;
+      return newSnapshot.combinedCheckState();
     } finally {
       metrics.recordReload(updated, sw.elapsed());
     }
   }
 
+  /**
+   * Update the state in the cache after checks of a patch set were written.
+   *
+   * <p>If the cached counts were computed from the state of the checks ref that the write was based
+   * on, the state transitions of the written checks are applied to the cached counts, without
+   * reading the checks of the change again. If none of the transitions moves a check to a different
+   * bucket of the counts, e.g. {@code SCHEDULED} to {@code RUNNING}, the counts are kept as they
+   * are, without loading the change or evaluating the checkers. Otherwise, e.g. if the counts are
+   * not cached, if there were concurrent writes or if the change or the checkers were updated since
+   * the counts were computed, the counts are recomputed from all checks.
+   *
+   * <p>Like {@link #updateIfNecessary(Project.NameKey, PatchSet.Id)}, this method is racy and never
+   * fails.
+   *
+   * @param project project containing the change.
+   * @param psId patch set to which the state corresponds.
+   * @param oldChecksRefState SHA-1 of the checks ref before the write.
+   * @param newChecksRefState SHA-1 of the checks ref after the write.
+   * @param transitions state transitions of the written checks.
+   */
+  public void applyTransitions(
+      Project.NameKey project,
+      PatchSet.Id psId,
+      ObjectId oldChecksRefState,
+      ObjectId newChecksRefState,
+      Collection<CheckStateTransition> transitions) {
+    try {
+      CombinedCheckStateCacheKeyProto key = key(project, psId);
+      CheckStateCountSnapshot oldSnapshot = cache.getIfPresent(key);
+      if (oldSnapshot != null
+          && !oldSnapshot.dependsOnExternalState()
+          && oldSnapshot.checksRefState().equals(oldChecksRefState)
+          && transitions.stream().noneMatch(CheckStateTransition::changesCheckStateCount)) {
+        cache.put(key, oldSnapshot.withChecksRefState(newChecksRefState));
+        metrics.recordSkippedReload();
+        return;
+      }
+
+      reload(
+          key,
+          oldSnapshot,
+          () -> {
+            ChangeData cd = changeDataFactory.create(project, psId.changeId());
+            Optional<CheckStateCountSnapshot> newSnapshot =
+                oldSnapshot != null
+                    ? loader.update(
+                        cd, psId, oldSnapshot, oldChecksRefState, newChecksRefState, transitions)
+                    : Optional.empty();
+            metrics.recordTransitionsApplied(newSnapshot.isPresent());
+            return newSnapshot.orElseGet(() -> loader.load(cd, psId));
+          });
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log(
+          "failed to update CombinedCheckState for %s in %s", psId, project);
+    }
+  }
+
   /**
    * Update the state in the cache only if it changed.
    *
@@ -207,7 +458,38 @@ public class CombinedCheckStateCache {
    */
   @VisibleForTesting
   public void putForTest(Project.NameKey project, PatchSet.Id psId, CombinedCheckState state) {
-    cache.put(key(project, psId), state);
+    CheckStateCount.Builder count = CheckStateCount.builder();
+    switch (state) {
+      case FAILED:
+        count.failedRequiredCount(1);
+        break;
+      case WARNING:
+        count.failedOptionalCount(1);
+        break;
+      case IN_PROGRESS:
+        count.inProgressOptionalCount(1);
+        break;
+      case SUCCESSFUL:
+        count.successfulCount(1);
+        break;
+      case NOT_RELEVANT:
+        break;
+    }
+    // The snapshot doesn't match any actual state, hence it is never updated incrementally.
+    cache.put(
+        key(project, psId),
+        CheckStateCountSnapshot.create(count.build(), ObjectId.zeroId(), ObjectId.zeroId()));
+  }
+
+  /**
+   * Removes the state of a patch set from the cache, so that it is loaded on the next lookup.
+   *
+   * @param project project containing the change.
+   * @param psId patch set whose state should be removed.
+   */
+  @VisibleForTesting
+  public void invalidateForTest(Project.NameKey project, PatchSet.Id psId) {
+    cache.invalidate(key(project, psId));
   }
 
   @VisibleForTesting
@@ -215,6 +497,21 @@ public class CombinedCheckStateCache {
     return metrics.getReloadCount(updated);
   }
 
+  @VisibleForTesting
+  public long getTransitionsAppliedCount(boolean incremental) {
+    return metrics.getTransitionsAppliedCount(incremental);
+  }
+
+  @VisibleForTesting
+  public long getSkippedReloadCount() {
+    return metrics.getSkippedReloadCount();
+  }
+
+  @VisibleForTesting
+  public long getValidationCount(boolean upToDate) {
+    return metrics.getValidationCount(upToDate);
+  }
+
   @VisibleForTesting
   public CacheStats getStats() {
     return cache.stats();
@@ -230,20 +527,90 @@ public class CombinedCheckStateCache {
 
   @Singleton
   private static class Loader
-      extends CacheLoader<CombinedCheckStateCacheKeyProto, CombinedCheckState> {
+      extends CacheLoader<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> {
+    private final ChangeData.Factory changeDataFactory;
     private final Checks checks;
 
     @Inject
-    Loader(Checks checks) {
+    Loader(ChangeData.Factory changeDataFactory, Checks checks) {
+      this.changeDataFactory = changeDataFactory;
       this.checks = checks;
     }
 
     @Override
-    public CombinedCheckState load(CombinedCheckStateCacheKeyProto key) {
+    public CheckStateCountSnapshot load(CombinedCheckStateCacheKeyProto key) {
+      Change.Id changeId = Change.id(key.getChangeId());
+      return load(
+          changeDataFactory.create(Project.nameKey(key.getProject()), changeId),
+          PatchSet.id(changeId, key.getPatchSetId()));
+    }
+
+    @Override
+    public Map<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> loadAll(
+        Iterable<? extends CombinedCheckStateCacheKeyProto> keys) {
+      Map<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> result = new HashMap<>();
+      List<ChangeData> currentPatchSets = new ArrayList<>();
+      for (CombinedCheckStateCacheKeyProto key : keys) {
+        Change.Id changeId = Change.id(key.getChangeId());
+        ChangeData cd = changeDataFactory.create(Project.nameKey(key.getProject()), changeId);
+        PatchSet.Id psId = PatchSet.id(changeId, key.getPatchSetId());
+        if (psId.equals(cd.change().currentPatchSetId())) {
+          currentPatchSets.add(cd);
+        } else {
+          // Only current patch sets are loaded in batches, which are the ones requested by
+          // queries.
+          result.put(key, load(cd, psId));
+        }
+      }
+      result.putAll(loadAll(currentPatchSets));
+      return result;
+    }
+
+    Map<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> loadAll(
+        Collection<ChangeData> cds) {
+      if (cds.isEmpty()) {
+        return ImmutableMap.of();
+      }
+      ImmutableMap<PatchSet.Id, CheckStateCountSnapshot> counts;
+      try {
+        counts = checks.getCheckStateCounts(cds);
+      } catch (IOException e) {
+        throw new StorageException(e);
+      }
+      Map<CombinedCheckStateCacheKeyProto, CheckStateCountSnapshot> result = new HashMap<>();
+      for (ChangeData cd : cds) {
+        PatchSet.Id psId = cd.change().currentPatchSetId();
+        result.put(key(cd.project(), psId), counts.get(psId));
+      }
+      return result;
+    }
+
+    CheckStateCountSnapshot load(ChangeData cd, PatchSet.Id psId) {
+      try {
+        return checks.getCheckStateCount(cd, psId);
+      } catch (IOException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    boolean isUpToDate(ChangeData cd, CheckStateCountSnapshot snapshot) {
+      try {
+        return checks.isCheckStateCountUpToDate(cd, snapshot);
+      } catch (IOException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    Optional<CheckStateCountSnapshot> update(
+        ChangeData cd,
+        PatchSet.Id psId,
+        CheckStateCountSnapshot snapshot,
+        ObjectId oldChecksRefState,
+        ObjectId newChecksRefState,
+        Collection<CheckStateTransition> transitions) {
       try {
-        return checks.getCombinedCheckState(
-            Project.nameKey(key.getProject()),
-            PatchSet.id(Change.id(key.getChangeId()), key.getPatchSetId()));
+        return checks.updateCheckStateCount(
+            cd, psId, snapshot, oldChecksRefState, newChecksRefState, transitions);
       } catch (IOException e) {
         throw new StorageException(e);
       }
@@ -0,0 +1,243 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimaps;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Histogram0;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Loads the combined check states of query results that are missing from the {@link
+ * CombinedCheckStateCache}.
+ *
+ * <p>By default the missing states are loaded in one batch on the thread that serves the request.
+ * If {@code plugin.checks.combinedStateLoadThreads} is set to a positive number, the missing states
+ * are split into batches per project that are loaded in parallel on a bounded thread pool. If
+ * {@code plugin.checks.combinedStateLoadTimeout} is set, states that are not loaded within that
+ * time are left out of the response instead of blocking it. Their batches keep running, so that
+ * the states are cached for later requests. The timeout only applies to the thread pool; if no
+ * threads are configured it is ignored, since the request thread can't abandon its own batch.
+ *
+ * <p>Batches that are loaded on the thread pool run in the request context of the calling thread,
+ * so that they see the same user as the request. This singleton lives in the plugin's sys
+ * injector, in which no {@code RequestScopePropagator} is bound, hence the {@link
+ * ThreadLocalRequestContext} is propagated directly.
+ */
+@Singleton
+class CombinedCheckStateLoadExecutor implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final int QUEUE_SIZE = 1000;
+
+  private final ChangeData.Factory changeDataFactory;
+  private final ThreadLocalRequestContext requestContext;
+  private final int threads;
+  private final Duration timeout;
+  private final Histogram0 fanOutWidth;
+  private final Counter0 deadlineMisses;
+  private final AtomicLong deadlineMissCount = new AtomicLong();
+
+  private volatile ThreadPoolExecutor executor;
+
+  @Inject
+  CombinedCheckStateLoadExecutor(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginConfigFactory,
+      MetricMaker metricMaker,
+      ChangeData.Factory changeDataFactory,
+      ThreadLocalRequestContext requestContext) {
+    this(
+        pluginConfigFactory.getFromGerritConfig(pluginName).getInt("combinedStateLoadThreads", 0),
+        getTimeout(pluginConfigFactory.getFromGerritConfig(pluginName)),
+        metricMaker,
+        changeDataFactory,
+        requestContext);
+  }
+
+  @VisibleForTesting
+  CombinedCheckStateLoadExecutor(
+      int threads,
+      Duration timeout,
+      MetricMaker metricMaker,
+      ChangeData.Factory changeDataFactory,
+      ThreadLocalRequestContext requestContext) {
+    this.changeDataFactory = changeDataFactory;
+    this.requestContext = requestContext;
+    this.threads = threads;
+    this.timeout = timeout;
+    if (threads <= 0 && !timeout.isZero()) {
+      logger.atWarning().log(
+          "plugin.checks.combinedStateLoadTimeout is ignored since"
+              + " plugin.checks.combinedStateLoadThreads is not set");
+    }
+    this.fanOutWidth =
+        metricMaker.newHistogram(
+            "checks/combined_state_load/fan_out_width",
+            new Description("Number of batches in which missing combined check states are loaded")
+                .setCumulative()
+                .setUnit("batches"));
+    this.deadlineMisses =
+        metricMaker.newCounter(
+            "checks/combined_state_load/deadline_misses",
+            new Description(
+                    "Number of combined check states that were left out of a response because they"
+                        + " were not loaded in time")
+                .setRate()
+                .setUnit("changes"));
+  }
+
+  private static Duration getTimeout(PluginConfig pluginConfig) {
+    return Duration.ofMillis(
+        ConfigUtil.getTimeUnit(
+            pluginConfig.getString("combinedStateLoadTimeout", "0"), 0, MILLISECONDS));
+  }
+
+  @Override
+  public synchronized void start() {
+    if (threads <= 0) {
+      return;
+    }
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            new ThreadFactoryBuilder()
+                .setNameFormat("checks-combined-state-load-%d")
+                .setDaemon(true)
+                .build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Loads values for the given changes.
+   *
+   * @param cds the changes.
+   * @param batchLoader loads the values for one batch of changes.
+   * @return the loaded values, without the values of batches that were not loaded in time.
+   */
+  <K, V> Map<K, V> loadAll(
+      Collection<ChangeData> cds, Function<Collection<ChangeData>, Map<K, V>> batchLoader) {
+    ThreadPoolExecutor e = executor;
+    if (e == null) {
+      return batchLoader.apply(cds);
+    }
+
+    // The ChangeData instances of the request are not thread-safe and are still used by the request
+    // thread if a batch misses the deadline, hence the batches get their own instances.
+    List<List<ChangeData>> batches = new ArrayList<>();
+    int batchSize = Math.max(1, (cds.size() + threads - 1) / threads);
+    for (Collection<ChangeData> cdsOfProject :
+        Multimaps.index(cds, ChangeData::project).asMap().values()) {
+      for (List<ChangeData> batch : Iterables.partition(cdsOfProject, batchSize)) {
+        List<ChangeData> copies = new ArrayList<>(batch.size());
+        batch.forEach(cd -> copies.add(changeDataFactory.create(cd.change())));
+        batches.add(copies);
+      }
+    }
+    fanOutWidth.record(batches.size());
+
+    RequestContext callerContext = requestContext.getContext();
+    List<Future<Map<K, V>>> futures = new ArrayList<>(batches.size());
+    for (List<ChangeData> batch : batches) {
+      futures.add(
+          e.submit(
+              () -> {
+                RequestContext old = requestContext.setContext(callerContext);
+                try {
+                  return batchLoader.apply(batch);
+                } finally {
+                  requestContext.setContext(old);
+                }
+              }));
+    }
+
+    long deadline = System.nanoTime() + timeout.toNanos();
+    Map<K, V> result = new HashMap<>();
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        result.putAll(
+            timeout.isZero()
+                ? futures.get(i).get()
+                : futures.get(i).get(Math.max(0, deadline - System.nanoTime()), NANOSECONDS));
+      } catch (TimeoutException ex) {
+        Project.NameKey project = batches.get(i).get(0).project();
+        logger.atFine().log(
+            "Loading %d combined check states in %s missed the deadline",
+            batches.get(i).size(), project);
+        deadlineMisses.incrementBy(batches.get(i).size());
+        deadlineMissCount.addAndGet(batches.get(i).size());
+      } catch (ExecutionException ex) {
+        Throwables.throwIfUnchecked(ex.getCause());
+        throw new StorageException(ex.getCause());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new StorageException(ex);
+      }
+    }
+    return result;
+  }
+
+  @VisibleForTesting
+  long getDeadlineMissCount() {
+    return deadlineMissCount.get();
+  }
+}
@@ -0,0 +1,273 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.plugins.checks.Checks.GetCheckOptions;
+import com.google.gerrit.plugins.checks.api.CombinedCheckState;
+import com.google.gerrit.plugins.checks.email.CombinedCheckStateUpdatedSender;
+import com.google.gerrit.server.PatchSetUtil;
+import com.google.gerrit.server.change.NotifyResolver;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.mail.send.MessageIdGenerator;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+
+/**
+ * Sends email notifications about updates of the combined check state of changes.
+ *
+ * <p>If checks of a change flap, the combined check state of the change can be updated several
+ * times within seconds, and every update would send an email. If {@code
+ * plugin.checks.notificationQuietPeriod} is set to a positive duration, a notification is held back
+ * until no further update of the combined check state of the same patch set happened for the quiet
+ * period. Held back notifications are merged into one notification that describes the transition
+ * from the combined check state before the first update to the one after the last update. Settings
+ * of the last update, such as whom to notify, win. No email is sent if the combined check state
+ * ended up where it started. Notifications that are still held back when the plugin is stopped are
+ * sent on stop, so that they are not lost on plugin reloads and server shutdowns.
+ */
+@Singleton
+class CombinedCheckStateNotifier implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Notification that is held back for the quiet period. */
+  private static class PendingNotification {
+    private final CombinedCheckState oldCombinedCheckState;
+    private CombinedCheckState newCombinedCheckState;
+    private Check updatedCheck;
+    private NotifyResolver.Result notify;
+    private Optional<Account.Id> from;
+    private ScheduledFuture<?> scheduled;
+
+    PendingNotification(CombinedCheckState oldCombinedCheckState) {
+      this.oldCombinedCheckState = oldCombinedCheckState;
+    }
+  }
+
+  private final Duration quietPeriod;
+  private final WorkQueue workQueue;
+  private final CombinedCheckStateUpdatedSender.Factory combinedCheckStateUpdatedSenderFactory;
+  private final ChangeNotes.Factory notesFactory;
+  private final PatchSetUtil psUtil;
+  private final Checks checks;
+  private final Checkers checkers;
+  private final MessageIdGenerator messageIdGenerator;
+  private final Counter0 coalesced;
+
+  // Guarded by this.
+  private final Map<PatchSet.Id, PendingNotification> pending = new HashMap<>();
+
+  // Guarded by this.
+  private boolean stopped;
+
+  @Inject
+  CombinedCheckStateNotifier(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginConfigFactory,
+      WorkQueue workQueue,
+      CombinedCheckStateUpdatedSender.Factory combinedCheckStateUpdatedSenderFactory,
+      ChangeNotes.Factory notesFactory,
+      PatchSetUtil psUtil,
+      Checks checks,
+      Checkers checkers,
+      MessageIdGenerator messageIdGenerator,
+      MetricMaker metricMaker) {
+    String quietPeriodString =
+        pluginConfigFactory
+            .getFromGerritConfig(pluginName)
+            .getString("notificationQuietPeriod", "0");
+    this.quietPeriod =
+        Duration.ofMillis(ConfigUtil.getTimeUnit(quietPeriodString, 0, MILLISECONDS));
+    this.workQueue = workQueue;
+    this.combinedCheckStateUpdatedSenderFactory = combinedCheckStateUpdatedSenderFactory;
+    this.notesFactory = notesFactory;
+    this.psUtil = psUtil;
+    this.checks = checks;
+    this.checkers = checkers;
+    this.messageIdGenerator = messageIdGenerator;
+    this.coalesced =
+        metricMaker.newCounter(
+            "checks/email/coalesced",
+            new Description(
+                    "Number of combined check state notifications that were merged into a held"
+                        + " back notification")
+                .setRate()
+                .setUnit("notifications"));
+  }
+
+  @Override
+  public void start() {}
+
+  @Override
+  public void stop() {
+    ImmutableList<PendingNotification> notifications;
+    synchronized (this) {
+      // Side effects that are still executed after this point send their notifications right away.
+      stopped = true;
+      notifications = ImmutableList.copyOf(pending.values());
+      pending.clear();
+    }
+    for (PendingNotification notification : notifications) {
+      notification.scheduled.cancel(false);
+      send(notification);
+    }
+  }
+
+  /**
+   * Notifies about an update of the combined check state of a patch set.
+   *
+   * @param notify whom to notify.
+   * @param from the account that updated the check, empty if the check was updated by the server.
+   * @param updatedCheck the check that was updated, reported in the email.
+   * @param oldCombinedCheckState the combined check state before the update.
+   * @param newCombinedCheckState the combined check state after the update.
+   * @param immediately whether the email must be sent before this method returns, together with a
+   *     notification that is held back for the same patch set.
+   */
+  void notify(
+      NotifyResolver.Result notify,
+      Optional<Account.Id> from,
+      Check updatedCheck,
+      CombinedCheckState oldCombinedCheckState,
+      CombinedCheckState newCombinedCheckState,
+      boolean immediately) {
+    boolean holdBack = !quietPeriod.isZero() && !quietPeriod.isNegative();
+    PatchSet.Id patchSetId = updatedCheck.key().patchSet();
+    PendingNotification notification;
+    synchronized (this) {
+      notification = pending.get(patchSetId);
+      if (notification != null) {
+        coalesced.increment();
+        notification.scheduled.cancel(false);
+      } else {
+        notification = new PendingNotification(oldCombinedCheckState);
+      }
+      notification.newCombinedCheckState = newCombinedCheckState;
+      notification.updatedCheck = updatedCheck;
+      notification.notify = notify;
+      notification.from = from;
+
+      if (holdBack && !immediately && !stopped) {
+        pending.put(patchSetId, notification);
+        notification.scheduled =
+            workQueue
+                .getDefaultQueue()
+                .schedule(() -> sendPending(patchSetId), quietPeriod.toMillis(), MILLISECONDS);
+        return;
+      }
+      pending.remove(patchSetId);
+    }
+    send(notification);
+  }
+
+  private void sendPending(PatchSet.Id patchSetId) {
+    PendingNotification notification;
+    synchronized (this) {
+      notification = pending.remove(patchSetId);
+    }
+    if (notification != null) {
+      send(notification);
+    }
+  }
+
+  private void send(PendingNotification notification) {
+    if (notification.oldCombinedCheckState == notification.newCombinedCheckState) {
+      // do not send an email if the combined check state flipped back
+      return;
+    }
+
+    CheckKey checkKey = notification.updatedCheck.key();
+    try {
+      ChangeNotes changeNotes =
+          notesFactory.create(checkKey.repository(), checkKey.patchSet().changeId());
+      if (!checkKey.patchSet().equals(changeNotes.getCurrentPatchSet().id())) {
+        // do not send an email for non-current patch sets
+        return;
+      }
+
+      CombinedCheckStateUpdatedSender sender =
+          combinedCheckStateUpdatedSenderFactory.create(
+              checkKey.repository(), checkKey.patchSet().changeId());
+
+      if (notification.from.isPresent()) {
+        sender.setFrom(notification.from.get());
+      }
+
+      PatchSet patchSet = psUtil.get(changeNotes, checkKey.patchSet());
+      sender.setPatchSet(patchSet);
+      sender.setCombinedCheckState(
+          notification.oldCombinedCheckState, notification.newCombinedCheckState);
+      sender.setCheck(
+          checkers
+              .getChecker(checkKey.checkerUuid())
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException(
+                          String.format(
+                              "checker %s of check %s not found",
+                              checkKey.checkerUuid(), checkKey))),
+          notification.updatedCheck);
+      sender.setNotify(notification.notify);
+      sender.setChecksByChecker(getAllChecksByChecker(checkKey));
+      sender.setMessageId(
+          messageIdGenerator.fromChangeUpdate(checkKey.repository(), checkKey.patchSet()));
+      sender.send();
+    } catch (Exception e) {
+      logger.atSevere().withCause(e).log(
+          "Cannot email update for change %s", checkKey.patchSet().changeId());
+    }
+  }
+
+  private ImmutableMap<Checker, Check> getAllChecksByChecker(CheckKey checkKey)
+      throws IllegalStateException, IOException, ConfigInvalidException {
+    ImmutableMap.Builder<Checker, Check> checksByChecker = ImmutableMap.builder();
+    for (Check check :
+        checks.getChecks(
+            checkKey.repository(), checkKey.patchSet(), GetCheckOptions.withBackfilling())) {
+      Checker checker =
+          checkers
+              .getChecker(check.key().checkerUuid())
+              .orElseThrow(
+                  () ->
+                      new IllegalStateException(
+                          String.format(
+                              "checker %s of check %s not found",
+                              checkKey.checkerUuid(), check.key())));
+      checksByChecker.put(checker, check);
+    }
+    return checksByChecker.build();
+  }
+}
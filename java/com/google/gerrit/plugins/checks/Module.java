@@ -19,6 +19,7 @@ import static com.google.inject.Scopes.SINGLETON;
 import com.google.gerrit.extensions.annotations.Exports;
 import com.google.gerrit.extensions.config.CapabilityDefinition;
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.extensions.events.LifecycleListener;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.plugins.checks.api.ApiModule;
 import com.google.gerrit.plugins.checks.api.ChangeCheckAttributeFactory;
@@ -26,6 +27,7 @@ import com.google.gerrit.plugins.checks.api.ChangeCheckAttributeFactory.GetChang
 import com.google.gerrit.plugins.checks.api.ChangeCheckAttributeFactory.QueryChangesOptions;
 import com.google.gerrit.plugins.checks.db.NoteDbCheckersModule;
 import com.google.gerrit.plugins.checks.email.ChecksEmailModule;
+import com.google.gerrit.plugins.checks.index.CombinedCheckStateOperator;
 import com.google.gerrit.plugins.checks.rules.ChecksSubmitRule;
 import com.google.gerrit.server.DynamicOptions;
 import com.google.gerrit.server.IdentifiedUser;
@@ -36,10 +38,12 @@ import com.google.gerrit.server.change.ChangePluginDefinedInfoFactory;
 import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.MergeValidationListener;
 import com.google.gerrit.server.git.validators.RefOperationValidationListener;
+import com.google.gerrit.server.query.change.ChangeQueryBuilder.ChangeOperatorFactory;
 import com.google.gerrit.server.restapi.change.GetChange;
 import com.google.gerrit.server.restapi.change.QueryChanges;
 import com.google.gerrit.sshd.commands.Query;
 import com.google.inject.Provides;
+import com.google.inject.internal.UniqueAnnotations;
 
 public class Module extends FactoryModule {
   @Override
@@ -48,6 +52,20 @@ public class Module extends FactoryModule {
     factory(ChecksUpdate.Factory.class);
     install(new NoteDbCheckersModule());
     install(CombinedCheckStateCache.module());
+    install(CheckerPredicateCache.module());
+    install(CheckerRelevanceCache.module());
+    bind(LifecycleListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(PostUpdateExecutor.class);
+    bind(LifecycleListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(CombinedCheckStateLoadExecutor.class);
+    bind(LifecycleListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(CombinedCheckStateNotifier.class);
+    bind(LifecycleListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(ChangeReindexScheduler.class);
 
     bind(CapabilityDefinition.class)
         .annotatedWith(Exports.named(AdministrateCheckersCapability.NAME))
@@ -79,6 +97,10 @@ public class Module extends FactoryModule {
         .annotatedWith(Exports.named(Query.class))
         .to(QueryChangesOptions.class);
 
+    bind(ChangeOperatorFactory.class)
+        .annotatedWith(Exports.named(CombinedCheckStateOperator.NAME))
+        .to(CombinedCheckStateOperator.class);
+
     install(new ApiModule());
     install(new ChecksSubmitRule.Module());
     install(new ChecksEmailModule());
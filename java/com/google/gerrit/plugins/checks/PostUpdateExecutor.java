@@ -0,0 +1,209 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the side effects of check updates, i.e. reindexing the change and sending emails.
+ *
+ * <p>By default the side effects are executed synchronously on the thread that updated the checks.
+ * If {@code plugin.checks.postUpdateThreads} is set to a positive number, they are executed on a
+ * bounded thread pool instead, so that check updates return as soon as the checks are written.
+ * Side effects for the same change are executed in the order in which they were submitted. If the
+ * queue of the thread pool is full, side effects are executed on the submitting thread, which
+ * slows down callers rather than dropping side effects.
+ */
+@Singleton
+class PostUpdateExecutor implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+  private final int threads;
+  private final int queueSize;
+  private final Counter0 callerRuns;
+  private final AtomicLong callerRunCount = new AtomicLong();
+  private final Timer0 queueLatency;
+
+  /** Last submitted side effects per change, to order side effects for the same change. */
+  private final Map<Change.Id, CompletableFuture<Void>> lastSubmitted = new HashMap<>();
+
+  private volatile ThreadPoolExecutor executor;
+
+  @Inject
+  PostUpdateExecutor(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginConfigFactory,
+      MetricMaker metricMaker) {
+    this(
+        pluginConfigFactory.getFromGerritConfig(pluginName).getInt("postUpdateThreads", 0),
+        pluginConfigFactory.getFromGerritConfig(pluginName).getInt("postUpdateQueueSize", 1000),
+        metricMaker);
+  }
+
+  @VisibleForTesting
+  PostUpdateExecutor(int threads, int queueSize, MetricMaker metricMaker) {
+    this.threads = threads;
+    this.queueSize = queueSize;
+    this.callerRuns =
+        metricMaker.newCounter(
+            "checks/post_update/caller_runs",
+            new Description(
+                    "Number of check update side effects that were executed on the calling thread"
+                        + " because the queue was full")
+                .setRate()
+                .setUnit("side effects"));
+    this.queueLatency =
+        metricMaker.newTimer(
+            "checks/post_update/queue_latency",
+            new Description("Time that side effects of check updates wait before being executed")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    metricMaker.newCallbackMetric(
+        "checks/post_update/queue_size",
+        Integer.class,
+        new Description("Number of check update side effects waiting to be executed")
+            .setGauge()
+            .setUnit("side effects"),
+        () -> {
+          ThreadPoolExecutor e = executor;
+          return e != null ? e.getQueue().size() : 0;
+        });
+  }
+
+  @Override
+  public synchronized void start() {
+    if (threads <= 0) {
+      return;
+    }
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(queueSize, 1)),
+            new ThreadFactoryBuilder()
+                .setNameFormat("checks-post-update-%d")
+                .setDaemon(true)
+                .build(),
+            (r, e) -> {
+              callerRuns.increment();
+              callerRunCount.incrementAndGet();
+              r.run();
+            });
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+          logger.atWarning().log("Side effects of check updates did not complete on shutdown");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      executor = null;
+    }
+  }
+
+  /**
+   * Submits the side effects of a check update.
+   *
+   * @param changeId the change on which checks were updated.
+   * @param sideEffects the side effects, exceptions thrown by it are logged.
+   * @return future that completes when the side effects were executed, or exceptionally if
+   *     executing them failed with an error.
+   */
+  CompletableFuture<Void> submit(Change.Id changeId, Runnable sideEffects) {
+    ThreadPoolExecutor e = executor;
+    if (e == null) {
+      run(changeId, sideEffects);
+      return DONE;
+    }
+
+    Stopwatch submitted = Stopwatch.createStarted();
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    CompletableFuture<Void> previous;
+    synchronized (lastSubmitted) {
+      previous = lastSubmitted.getOrDefault(changeId, DONE);
+      lastSubmitted.put(changeId, future);
+    }
+    // Not done while holding the lock, since the side effects are executed on this thread if the
+    // queue is full.
+    previous.whenComplete(
+        (v, t) ->
+            e.execute(
+                () -> {
+                  try {
+                    queueLatency.record(submitted.elapsed(NANOSECONDS), NANOSECONDS);
+                    run(changeId, sideEffects);
+                  } catch (RuntimeException | Error err) {
+                    // Complete the future in any case, since otherwise the side effects that are
+                    // submitted later for the same change and callers that wait for the side
+                    // effects would hang forever.
+                    future.completeExceptionally(err);
+                    throw err;
+                  } finally {
+                    synchronized (lastSubmitted) {
+                      lastSubmitted.remove(changeId, future);
+                    }
+                    future.complete(null);
+                  }
+                }));
+    return future;
+  }
+
+  /** Returns the number of side effects that were executed on the submitting thread. */
+  @VisibleForTesting
+  long getCallerRunCount() {
+    return callerRunCount.get();
+  }
+
+  private static void run(Change.Id changeId, Runnable sideEffects) {
+    try {
+      sideEffects.run();
+    } catch (RuntimeException e) {
+      logger.atSevere().withCause(e).log(
+          "Cannot execute side effects of check update on change %s", changeId);
+    }
+  }
+}
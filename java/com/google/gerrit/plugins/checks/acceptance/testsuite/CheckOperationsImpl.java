@@ -68,7 +68,10 @@ public final class CheckOperationsImpl implements CheckOperations {
   public TestCheckUpdate.Builder newCheck(CheckKey key) {
     return TestCheckUpdate.builder(key)
         .checkUpdater(
-            u -> checksUpdate.get().createCheck(key, toCheckUpdate(u), NotifyHandling.NONE, null));
+            u ->
+                checksUpdate
+                    .get()
+                    .createCheck(key, toCheckUpdate(u), NotifyHandling.NONE, null, true));
   }
 
   final class PerCheckOperationsImpl implements PerCheckOperations {
@@ -122,7 +125,8 @@ public final class CheckOperationsImpl implements CheckOperations {
               testUpdate ->
                   checksUpdate
                       .get()
-                      .updateCheck(key, toCheckUpdate(testUpdate), NotifyHandling.NONE, null));
+                      .updateCheck(
+                          key, toCheckUpdate(testUpdate), NotifyHandling.NONE, null, true));
     }
   }
 
@@ -18,6 +18,7 @@ import static com.google.gerrit.plugins.checks.api.CheckResource.CHECK_KIND;
 import static com.google.gerrit.plugins.checks.api.CheckerResource.CHECKER_KIND;
 import static com.google.gerrit.plugins.checks.api.PendingCheckResource.PENDING_CHECK_KIND;
 import static com.google.gerrit.server.change.RevisionResource.REVISION_KIND;
+import static com.google.gerrit.server.project.ProjectResource.PROJECT_KIND;
 
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.gerrit.extensions.registration.DynamicMap;
@@ -51,7 +52,10 @@ public class ApiModule extends AbstractModule {
             get(CHECK_KIND).to(GetCheck.class);
             post(CHECK_KIND).to(UpdateCheck.class);
             post(CHECK_KIND, "rerun").to(RerunCheck.class);
+            post(REVISION_KIND, "batch").to(BatchUpsertChecks.class);
             DynamicMap.mapOf(binder(), PENDING_CHECK_KIND);
+
+            post(PROJECT_KIND, "compact-checks").to(CompactChecks.class);
           }
         });
 
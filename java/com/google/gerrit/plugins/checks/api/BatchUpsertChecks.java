@@ -0,0 +1,148 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.extensions.restapi.Response;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
+import com.google.gerrit.plugins.checks.AdministrateCheckersPermission;
+import com.google.gerrit.plugins.checks.Check;
+import com.google.gerrit.plugins.checks.CheckJson;
+import com.google.gerrit.plugins.checks.CheckUpdate;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.plugins.checks.Checkers;
+import com.google.gerrit.plugins.checks.ChecksUpdate;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.UserInitiated;
+import com.google.gerrit.server.change.RevisionResource;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+
+/**
+ * Creates or updates multiple checks of a revision at once.
+ *
+ * <p>All checks are written in a single update of the checks ref of the change.
+ */
+@Singleton
+public class BatchUpsertChecks implements RestModifyView<RevisionResource, BatchCheckInput> {
+  private final Provider<CurrentUser> self;
+  private final PermissionBackend permissionBackend;
+  private final AdministrateCheckersPermission permission;
+  private final Checkers checkers;
+  private final Provider<ChecksUpdate> checksUpdate;
+  private final CheckJson.Factory checkJsonFactory;
+  private final PostCheck postCheck;
+
+  @Inject
+  BatchUpsertChecks(
+      Provider<CurrentUser> self,
+      PermissionBackend permissionBackend,
+      AdministrateCheckersPermission permission,
+      Checkers checkers,
+      @UserInitiated Provider<ChecksUpdate> checksUpdate,
+      CheckJson.Factory checkJsonFactory,
+      PostCheck postCheck) {
+    this.self = self;
+    this.permissionBackend = permissionBackend;
+    this.permission = permission;
+    this.checkers = checkers;
+    this.checksUpdate = checksUpdate;
+    this.checkJsonFactory = checkJsonFactory;
+    this.postCheck = postCheck;
+  }
+
+  @Override
+  public Response<ImmutableList<CheckInfo>> apply(RevisionResource rsrc, BatchCheckInput input)
+      throws StorageException, IOException, RestApiException, PermissionBackendException,
+          ConfigInvalidException {
+    if (!self.get().isIdentifiedUser()) {
+      throw new AuthException("Authentication required");
+    }
+    permissionBackend.currentUser().check(permission);
+
+    if (rsrc.getEdit().isPresent()) {
+      throw new ResourceConflictException("checks are not supported on a change edit");
+    }
+
+    if (input == null || input.checks == null || input.checks.isEmpty()) {
+      throw new BadRequestException("checks are required");
+    }
+
+    Map<CheckerUuid, CheckUpdate> checkUpdates = new LinkedHashMap<>();
+    for (CheckInput checkInput : input.checks) {
+      if (checkInput == null || checkInput.checkerUuid == null) {
+        throw new BadRequestException("checker UUID is required");
+      }
+      if (!CheckerUuid.isUuid(checkInput.checkerUuid)) {
+        throw new BadRequestException(
+            String.format("invalid checker UUID: %s", checkInput.checkerUuid));
+      }
+      if (checkInput.notify != null || checkInput.notifyDetails != null) {
+        throw new BadRequestException(
+            String.format(
+                "notify settings for check of checker %s must be set on the batch input",
+                checkInput.checkerUuid));
+      }
+      if (checkInput.waitForSideEffects != null) {
+        throw new BadRequestException(
+            String.format(
+                "waitForSideEffects for check of checker %s must be set on the batch input",
+                checkInput.checkerUuid));
+      }
+
+      CheckerUuid checkerUuid = CheckerUuid.parse(checkInput.checkerUuid);
+      if (checkUpdates.containsKey(checkerUuid)) {
+        throw new BadRequestException(String.format("duplicate check for checker %s", checkerUuid));
+      }
+      checkers
+          .getChecker(checkerUuid)
+          .orElseThrow(
+              () ->
+                  new UnprocessableEntityException(
+                      String.format("checker %s not found", checkerUuid)));
+      checkUpdates.put(checkerUuid, postCheck.toCheckUpdate(checkInput));
+    }
+
+    ImmutableList<Check> updatedChecks =
+        checksUpdate
+            .get()
+            .upsertChecks(
+                rsrc.getProject(),
+                rsrc.getPatchSet().id(),
+                checkUpdates,
+                input.notify,
+                input.notifyDetails,
+                Boolean.TRUE.equals(input.waitForSideEffects));
+    CheckJson checkJson = checkJsonFactory.noOptions();
+    ImmutableList.Builder<CheckInfo> result = ImmutableList.builder();
+    for (Check check : updatedChecks) {
+      result.add(checkJson.format(check));
+    }
+    return Response.ok(result.build());
+  }
+}
@@ -14,6 +14,8 @@
 
 package com.google.gerrit.plugins.checks.api;
 
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
 import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.extensions.common.PluginDefinedInfo;
@@ -72,11 +74,7 @@ public class ChangeCheckAttributeFactory implements ChangePluginDefinedInfoFacto
               new AbstractMap.SimpleImmutableEntry<>(
                   cd.getId(), forGetChange(cd, (GetChangeOptions) opts)));
     } else if (opts instanceof QueryChangesOptions) {
-      return evalAndCollect(
-          cds,
-          cd ->
-              new AbstractMap.SimpleImmutableEntry<>(
-                  cd.getId(), forQueryChanges(cd, (QueryChangesOptions) opts)));
+      return forQueryChanges(cds, (QueryChangesOptions) opts);
     }
     throw new IllegalStateException("unexpected options type: " + opts);
   }
@@ -94,16 +92,19 @@ public class ChangeCheckAttributeFactory implements ChangePluginDefinedInfoFacto
     if (opts == null || !opts.combined) {
       return null;
     }
-    // Reload value in cache to fix up inconsistencies between cache and actual state.
+    // Validate the cached value to fix up inconsistencies between cache and actual state.
     return new ChangeCheckInfo(
-        combinedCheckStateCache.reload(cd.project(), cd.change().currentPatchSetId()));
+        combinedCheckStateCache.getValidated(cd, cd.change().currentPatchSetId()));
   }
 
-  private ChangeCheckInfo forQueryChanges(ChangeData cd, QueryChangesOptions opts) {
+  private Map<Change.Id, PluginDefinedInfo> forQueryChanges(
+      Collection<ChangeData> cds, QueryChangesOptions opts) {
     if (!opts.combined) {
-      return null;
+      return ImmutableMap.of();
     }
-    return new ChangeCheckInfo(
-        combinedCheckStateCache.get(cd.project(), cd.change().currentPatchSetId()));
+    // Get the states of all changes at once, so that states which are not cached yet are loaded in
+    // one batch.
+    return combinedCheckStateCache.getAll(cds).entrySet().stream()
+        .collect(toImmutableMap(Map.Entry::getKey, e -> new ChangeCheckInfo(e.getValue())));
   }
 }
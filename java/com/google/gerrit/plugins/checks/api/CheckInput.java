@@ -44,6 +44,11 @@ public class CheckInput {
   @Nullable public NotifyHandling notify;
   /** Additional information about whom to notify regardless of the {@link #notify} setting. */
   @Nullable public Map<RecipientType, NotifyInfo> notifyDetails;
+  /**
+   * Whether the response should only be sent after the change was reindexed and email
+   * notifications were sent, if the combined check state changes due to posting this check.
+   */
+  @Nullable public Boolean waitForSideEffects;
 
   @Override
   public boolean equals(Object o) {
@@ -58,12 +63,22 @@ public class CheckInput {
         && Objects.equals(other.started, started)
         && Objects.equals(other.finished, finished)
         && Objects.equals(other.notify, notify)
-        && Objects.equals(other.notifyDetails, notifyDetails);
+        && Objects.equals(other.notifyDetails, notifyDetails)
+        && Objects.equals(other.waitForSideEffects, waitForSideEffects);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(checkerUuid, state, message, url, started, finished, notify, notifyDetails);
+    return Objects.hash(
+        checkerUuid,
+        state,
+        message,
+        url,
+        started,
+        finished,
+        notify,
+        notifyDetails,
+        waitForSideEffects);
   }
 
   @Override
@@ -77,6 +92,7 @@ public class CheckInput {
         .add("finished", finished)
         .add("notify", notify)
         .add("notifyDetails", notifyDetails)
+        .add("waitForSideEffects", waitForSideEffects)
         .toString();
   }
 }
@@ -38,6 +38,9 @@ public interface Checks {
 
   ImmutableList<CheckInfo> list(ListChecksOption... options) throws RestApiException;
 
+  /** Creates or updates multiple checks at once. */
+  ImmutableList<CheckInfo> upsert(BatchCheckInput input) throws RestApiException;
+
   /**
    * A default implementation which allows source compatibility when adding new methods to the
    * interface.
@@ -57,5 +60,10 @@ public interface Checks {
     public ImmutableList<CheckInfo> list(ListChecksOption... options) throws RestApiException {
       throw new NotImplementedException();
     }
+
+    @Override
+    public ImmutableList<CheckInfo> upsert(BatchCheckInput input) throws RestApiException {
+      throw new NotImplementedException();
+    }
   }
 }
@@ -32,6 +32,7 @@ class ChecksImpl implements com.google.gerrit.plugins.checks.api.Checks {
     ChecksImpl create(RevisionResource revisionResource);
   }
 
+  private final BatchUpsertChecks batchUpsertChecks;
   private final CheckApiImpl.Factory checkApiImplFactory;
   private final ChecksCollection checksCollection;
   private final ListChecks listChecks;
@@ -40,11 +41,13 @@ class ChecksImpl implements com.google.gerrit.plugins.checks.api.Checks {
 
   @Inject
   ChecksImpl(
+      BatchUpsertChecks batchUpsertChecks,
       CheckApiImpl.Factory checkApiImplFactory,
       ChecksCollection checksCollection,
       ListChecks listChecks,
       PostCheck postCheck,
       @Assisted RevisionResource revisionResource) {
+    this.batchUpsertChecks = batchUpsertChecks;
     this.checkApiImplFactory = checkApiImplFactory;
     this.checksCollection = checksCollection;
     this.listChecks = listChecks;
@@ -81,4 +84,13 @@ class ChecksImpl implements com.google.gerrit.plugins.checks.api.Checks {
       throw asRestApiException("Cannot list checks", e);
     }
   }
+
+  @Override
+  public ImmutableList<CheckInfo> upsert(BatchCheckInput input) throws RestApiException {
+    try {
+      return batchUpsertChecks.apply(revisionResource, input).value();
+    } catch (Exception e) {
+      throw asRestApiException("Cannot upsert checks", e);
+    }
+  }
 }
@@ -74,7 +74,7 @@ public enum CombinedCheckState {
    * @param checkStateCount count of check states.
    * @return combined state.
    */
-  private static CombinedCheckState combine(CheckStateCount checkStateCount) {
+  public static CombinedCheckState combine(CheckStateCount checkStateCount) {
     if (checkStateCount.failedRequiredCount() > 0) {
       return FAILED;
     }
@@ -134,7 +134,7 @@ public enum CombinedCheckState {
         }
       }
 
-      return new AutoValue_CombinedCheckState_CheckStateCount.Builder()
+      return builder()
           .failedRequiredCount(failedRequiredCount)
           .failedOptionalCount(failedOptionalCount)
           .inProgressRequiredCount(inProgressRequiredCount)
@@ -143,6 +143,50 @@ public enum CombinedCheckState {
           .build();
     }
 
+    /**
+     * Returns the counts after adding a check.
+     *
+     * @param state the state of the added check.
+     * @param required whether the check is required for submission.
+     * @return the updated counts.
+     */
+    public CheckStateCount add(CheckState state, boolean required) {
+      return adjust(state, required, 1);
+    }
+
+    /**
+     * Returns the counts after removing a check.
+     *
+     * @param state the state of the removed check.
+     * @param required whether the check is required for submission.
+     * @return the updated counts.
+     */
+    public CheckStateCount remove(CheckState state, boolean required) {
+      return adjust(state, required, -1);
+    }
+
+    private CheckStateCount adjust(CheckState state, boolean required, int delta) {
+      Builder builder = toBuilder();
+      if (state.isInProgress()) {
+        if (required) {
+          builder.inProgressRequiredCount(inProgressRequiredCount() + delta);
+        } else {
+          builder.inProgressOptionalCount(inProgressOptionalCount() + delta);
+        }
+      } else if (state == CheckState.FAILED) {
+        if (required) {
+          builder.failedRequiredCount(failedRequiredCount() + delta);
+        } else {
+          builder.failedOptionalCount(failedOptionalCount() + delta);
+        }
+      } else if (state == CheckState.SUCCESSFUL) {
+        builder.successfulCount(successfulCount() + delta);
+      } else if (state != CheckState.NOT_RELEVANT) {
+        throw new IllegalStateException("invalid state: " + state);
+      }
+      return builder.build();
+    }
+
     /** Count of the failed check states which are required for submission. */
     public abstract int failedRequiredCount();
 
@@ -160,6 +204,15 @@ public enum CombinedCheckState {
 
     public abstract Builder toBuilder();
 
+    public static Builder builder() {
+      return new AutoValue_CombinedCheckState_CheckStateCount.Builder()
+          .failedRequiredCount(0)
+          .failedOptionalCount(0)
+          .inProgressRequiredCount(0)
+          .inProgressOptionalCount(0)
+          .successfulCount(0);
+    }
+
     @AutoValue.Builder
     public abstract static class Builder {
       public abstract Builder inProgressRequiredCount(int inProgressRequiredCount);
@@ -0,0 +1,43 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.api;
+
+import com.google.common.base.MoreObjects;
+import java.util.Objects;
+
+/** Result of compacting the checks refs of a project. */
+public class CompactChecksInfo {
+  /** Number of checks refs whose history was squashed into a single commit. */
+  public Integer compacted;
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof CompactChecksInfo)) {
+      return false;
+    }
+    CompactChecksInfo other = (CompactChecksInfo) o;
+    return Objects.equals(other.compacted, compacted);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(compacted);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("compacted", compacted).toString();
+  }
+}
@@ -115,15 +115,29 @@ public class PostCheck
                   new UnprocessableEntityException(
                       String.format("checker %s not found", checkerUuid)));
       updatedCheck =
-          checksUpdate.get().createCheck(key, checkUpdate, input.notify, input.notifyDetails);
+          checksUpdate
+              .get()
+              .createCheck(
+                  key,
+                  checkUpdate,
+                  input.notify,
+                  input.notifyDetails,
+                  Boolean.TRUE.equals(input.waitForSideEffects));
     } else {
       updatedCheck =
-          checksUpdate.get().updateCheck(key, checkUpdate, input.notify, input.notifyDetails);
+          checksUpdate
+              .get()
+              .updateCheck(
+                  key,
+                  checkUpdate,
+                  input.notify,
+                  input.notifyDetails,
+                  Boolean.TRUE.equals(input.waitForSideEffects));
     }
     return Response.ok(checkJsonFactory.noOptions().format(updatedCheck));
   }
 
-  private CheckUpdate toCheckUpdate(CheckInput input) throws BadRequestException {
+  CheckUpdate toCheckUpdate(CheckInput input) throws BadRequestException {
     CheckUpdate.Builder checkUpdateBuilder = CheckUpdate.builder();
 
     if (input.state != null) {
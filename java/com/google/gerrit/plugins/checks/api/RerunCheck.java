@@ -106,7 +106,14 @@ public class RerunCheck implements RestModifyView<CheckResource, RerunInput> {
           .setMessage("")
           .setUrl("");
       updatedCheck =
-          checksUpdate.get().updateCheck(key, builder.build(), input.notify, input.notifyDetails);
+          checksUpdate
+              .get()
+              .updateCheck(
+                  key,
+                  builder.build(),
+                  input.notify,
+                  input.notifyDetails,
+                  Boolean.TRUE.equals(input.waitForSideEffects));
     }
     return Response.ok(checkJsonFactory.noOptions().format(updatedCheck));
   }
@@ -30,6 +30,11 @@ public class RerunInput {
   @Nullable public NotifyHandling notify;
   /** Additional information about whom to notify regardless of the {@link #notify} setting. */
   @Nullable public Map<RecipientType, NotifyInfo> notifyDetails;
+  /**
+   * Whether the response should only be sent after the change was reindexed and email
+   * notifications were sent, if the combined check state changes due to rerunning this check.
+   */
+  @Nullable public Boolean waitForSideEffects;
 
   @Override
   public boolean equals(Object o) {
@@ -38,12 +43,13 @@ public class RerunInput {
     }
     RerunInput other = (RerunInput) o;
     return Objects.equals(other.notify, notify)
-        && Objects.equals(other.notifyDetails, notifyDetails);
+        && Objects.equals(other.notifyDetails, notifyDetails)
+        && Objects.equals(other.waitForSideEffects, waitForSideEffects);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(notify, notifyDetails);
+    return Objects.hash(notify, notifyDetails, waitForSideEffects);
   }
 
   @Override
@@ -51,6 +57,7 @@ public class RerunInput {
     return MoreObjects.toStringHelper(this)
         .add("notify", notify)
         .add("notifyDetails", notifyDetails)
+        .add("waitForSideEffects", waitForSideEffects)
         .toString();
   }
 }
@@ -15,17 +15,17 @@
 package com.google.gerrit.plugins.checks.db;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.plugins.checks.Check;
 import com.google.gerrit.plugins.checks.Checker;
-import com.google.gerrit.plugins.checks.CheckerQuery;
+import com.google.gerrit.plugins.checks.CheckerRelevanceCache;
 import com.google.gerrit.plugins.checks.CheckerUuid;
 import com.google.gerrit.plugins.checks.Checkers;
 import com.google.gerrit.plugins.checks.api.CheckerStatus;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.Inject;
-import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import java.io.IOException;
 import java.util.Collection;
@@ -35,16 +35,19 @@ import org.eclipse.jgit.errors.ConfigInvalidException;
 @Singleton
 class CheckBackfiller {
   private final Checkers checkers;
-  private final Provider<CheckerQuery> checkerQueryProvider;
+  private final CheckerRelevanceCache checkerRelevanceCache;
 
   @Inject
-  CheckBackfiller(Checkers checkers, Provider<CheckerQuery> checkerQueryProvider) {
+  CheckBackfiller(Checkers checkers, CheckerRelevanceCache checkerRelevanceCache) {
     this.checkers = checkers;
-    this.checkerQueryProvider = checkerQueryProvider;
+    this.checkerRelevanceCache = checkerRelevanceCache;
   }
 
   ImmutableList<Check> getBackfilledChecksForRelevantCheckers(
-      Collection<Checker> candidates, ChangeData cd, PatchSet.Id psId) throws StorageException {
+      Collection<Checker> candidates,
+      ImmutableSet<CheckerUuid> relevantCheckers,
+      ChangeData cd,
+      PatchSet.Id psId) {
     if (candidates.isEmpty()) {
       return ImmutableList.of();
     }
@@ -53,13 +56,12 @@ class CheckBackfiller {
       // backfill checkers for old patch sets.
       return ImmutableList.of();
     }
-    // All candidates need to be checked for relevance. Any relevant checkers are reported as
-    // NOT_STARTED, with creation time matching the patch set.
-    CheckerQuery checkerQuery = checkerQueryProvider.get();
+    // Any relevant candidates are reported as NOT_STARTED, with creation time matching the patch
+    // set.
     ImmutableList.Builder<Check> result = ImmutableList.builderWithExpectedSize(candidates.size());
     PatchSet ps = cd.patchSet(psId);
     for (Checker checker : candidates) {
-      if (checkerQuery.isCheckerRelevant(checker, cd)) {
+      if (relevantCheckers.contains(checker.getUuid())) {
         // Add synthetic check at the creation time of the patch set.
         result.add(Check.newBackfilledCheck(cd.project(), ps, checker));
       }
@@ -84,7 +86,7 @@ class CheckBackfiller {
     }
     if (!checker.isPresent()
         || checker.get().getStatus() != CheckerStatus.ENABLED
-        || !checkerQueryProvider.get().isCheckerRelevant(checker.get(), cd)) {
+        || !checkerRelevanceCache.isRelevant(checker.get(), cd)) {
       return Optional.empty();
     }
     return Optional.of(Check.newBackfilledCheck(cd.project(), cd.patchSet(psId), checker.get()));
@@ -0,0 +1,218 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.git.LockFailureException;
+import com.google.gerrit.git.RefUpdateUtil;
+import com.google.gerrit.plugins.checks.CheckerRef;
+import com.google.gerrit.plugins.checks.db.CheckNoteSerializer.NoteFormat;
+import com.google.gerrit.server.GerritPersonIdent;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.notedb.ChangeNoteUtil;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.notes.Note;
+import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Rewrites check notes that are stored in the JSON format in the binary format.
+ *
+ * <p>If {@code plugin.checks.noteFormat} is set to {@code proto} and {@code
+ * plugin.checks.convertNotesOnStartup} is set to {@code true} in {@code gerrit.config}, the checks
+ * refs of all projects are converted in the background when the plugin is started. Checks refs
+ * that are updated concurrently are skipped and converted on the next start. Checks refs that
+ * cannot be converted, e.g. because they contain a corrupt note, are logged and skipped, so that
+ * they don't prevent the conversion of the other checks refs.
+ */
+@Singleton
+class CheckNoteConverter implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final int MAX_NOTE_SIZE = 256 << 20;
+  private static final String COMMIT_MESSAGE = "Convert check notes to binary format";
+
+  private final boolean convertOnStartup;
+  private final WorkQueue workQueue;
+  private final ProjectCache projectCache;
+  private final GitRepositoryManager repoManager;
+  private final GitReferenceUpdated gitRefUpdated;
+  private final ChangeNoteUtil noteUtil;
+  private final CheckNoteSerializer checkNoteSerializer;
+  private final Provider<PersonIdent> serverIdent;
+
+  @Inject
+  CheckNoteConverter(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginConfigFactory,
+      WorkQueue workQueue,
+      ProjectCache projectCache,
+      GitRepositoryManager repoManager,
+      GitReferenceUpdated gitRefUpdated,
+      ChangeNoteUtil noteUtil,
+      CheckNoteSerializer checkNoteSerializer,
+      @GerritPersonIdent Provider<PersonIdent> serverIdent) {
+    this.convertOnStartup =
+        pluginConfigFactory
+            .getFromGerritConfig(pluginName)
+            .getBoolean("convertNotesOnStartup", false);
+    this.workQueue = workQueue;
+    this.projectCache = projectCache;
+    this.repoManager = repoManager;
+    this.gitRefUpdated = gitRefUpdated;
+    this.noteUtil = noteUtil;
+    this.checkNoteSerializer = checkNoteSerializer;
+    this.serverIdent = serverIdent;
+  }
+
+  @Override
+  public void start() {
+    if (!convertOnStartup) {
+      return;
+    }
+    if (checkNoteSerializer.getNoteFormat() != NoteFormat.PROTO) {
+      logger.atWarning().log(
+          "Not converting check notes since the configured note format is %s",
+          checkNoteSerializer.getNoteFormat());
+      return;
+    }
+    @SuppressWarnings("unused")
+    Object possiblyIgnoredError = workQueue.getDefaultQueue().submit(this::convertAllProjects);
+  }
+
+  @Override
+  public void stop() {}
+
+  private void convertAllProjects() {
+    int converted = 0;
+    for (Project.NameKey project : projectCache.all()) {
+      try {
+        converted += convert(project);
+      } catch (IOException | RuntimeException e) {
+        logger.atWarning().withCause(e).log("Failed to convert check notes of project %s", project);
+      }
+    }
+    logger.atInfo().log("Converted check notes of %d changes to binary format", converted);
+  }
+
+  /**
+   * Converts the check notes on all checks refs of a project to the binary format.
+   *
+   * <p>Checks refs that fail to convert are logged and skipped.
+   *
+   * @param project the project for which the check notes should be converted
+   * @return the number of checks refs that were updated
+   */
+  int convert(Project.NameKey project) throws IOException {
+    int converted = 0;
+    try (Repository repo = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(repo);
+        ObjectInserter ins = repo.newObjectInserter()) {
+      for (Ref ref : repo.getRefDatabase().getRefsByPrefix(RefNames.REFS_CHANGES)) {
+        if (!ref.getName().endsWith(CheckerRef.CHECKS_SUFFIX)) {
+          continue;
+        }
+        try {
+          if (convertRef(project, repo, rw, ins, ref)) {
+            converted++;
+          }
+        } catch (IOException | ConfigInvalidException | RuntimeException e) {
+          // A corrupt note or an unknown check state must not prevent the conversion of the other
+          // checks refs.
+          logger.atWarning().withCause(e).log(
+              "Failed to convert check notes on %s in project %s", ref.getName(), project);
+        }
+      }
+    }
+    return converted;
+  }
+
+  private boolean convertRef(
+      Project.NameKey project, Repository repo, RevWalk rw, ObjectInserter ins, Ref ref)
+      throws IOException, ConfigInvalidException {
+    ObjectReader reader = rw.getObjectReader();
+    RevCommit tip = rw.parseCommit(ref.getObjectId());
+    NoteMap noteMap = NoteMap.read(reader, tip);
+
+    boolean dirty = false;
+    for (Note note : ImmutableList.copyOf(noteMap)) {
+      byte[] raw = reader.open(note.getData(), OBJ_BLOB).getCachedBytes(MAX_NOTE_SIZE);
+      if (CheckNoteSerializer.getNoteFormat(raw, 0) != NoteFormat.JSON) {
+        continue;
+      }
+      NoteDbCheckMap checks = CheckNoteSerializer.deserialize(noteUtil.getChangeNoteJson(), raw, 0);
+      byte[] data = checkNoteSerializer.serialize(checks, NoteFormat.PROTO);
+      if (data.length == 0) {
+        noteMap.remove(note);
+      } else {
+        noteMap.set(note, ins.insert(OBJ_BLOB, data));
+      }
+      dirty = true;
+    }
+    if (!dirty) {
+      return false;
+    }
+
+    PersonIdent ident = serverIdent.get();
+    CommitBuilder cb = new CommitBuilder();
+    cb.setParentId(tip);
+    cb.setTreeId(noteMap.writeTree(ins));
+    cb.setAuthor(ident);
+    cb.setCommitter(ident);
+    cb.setMessage(COMMIT_MESSAGE);
+    ObjectId newCommitId = ins.insert(cb);
+    ins.flush();
+
+    RefUpdate refUpdate = repo.updateRef(ref.getName());
+    refUpdate.setExpectedOldObjectId(tip);
+    refUpdate.setNewObjectId(newCommitId);
+    refUpdate.setRefLogIdent(ident);
+    refUpdate.setRefLogMessage(COMMIT_MESSAGE, false);
+    refUpdate.update();
+    try {
+      RefUpdateUtil.checkResult(refUpdate);
+    } catch (LockFailureException e) {
+      logger.atFine().log("Skipping concurrently updated %s in project %s", ref.getName(), project);
+      return false;
+    }
+
+    gitRefUpdated.fire(project, refUpdate, null);
+    return true;
+  }
+}
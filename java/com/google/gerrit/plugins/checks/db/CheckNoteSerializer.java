@@ -0,0 +1,147 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.plugins.checks.notes.proto.CheckNote.CheckNoteProto;
+import com.google.gerrit.plugins.checks.notes.proto.CheckNote.CheckProto;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.notedb.ChangeNoteJson;
+import com.google.gerrit.server.notedb.ChangeNoteUtil;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.util.Map;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+
+/**
+ * Serializes the checks of a revision into the data of a note on the checks ref.
+ *
+ * <p>Notes are written in the format that is configured by {@code plugin.checks.noteFormat} in
+ * {@code gerrit.config}. Notes in both formats can always be read, so that the format can be
+ * switched without converting existing notes first.
+ */
+@Singleton
+class CheckNoteSerializer {
+  /** Format of the data of check notes. */
+  enum NoteFormat {
+    /** GSON serialized {@link NoteDbCheckMap}. */
+    JSON,
+
+    /** Serialized {@link CheckNoteProto}. */
+    PROTO
+  }
+
+  private final ChangeNoteJson changeNoteJson;
+  private final NoteFormat noteFormat;
+
+  @Inject
+  CheckNoteSerializer(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginConfigFactory,
+      ChangeNoteUtil noteUtil) {
+    this(
+        noteUtil.getChangeNoteJson(),
+        pluginConfigFactory.getFromGerritConfig(pluginName).getEnum("noteFormat", NoteFormat.JSON));
+  }
+
+  @VisibleForTesting
+  CheckNoteSerializer(ChangeNoteJson changeNoteJson, NoteFormat noteFormat) {
+    this.changeNoteJson = changeNoteJson;
+    this.noteFormat = noteFormat;
+  }
+
+  /** Returns the format in which notes are written. */
+  NoteFormat getNoteFormat() {
+    return noteFormat;
+  }
+
+  /**
+   * Serializes the checks of a revision in the configured format.
+   *
+   * @return the note data, an empty array if there are no checks
+   */
+  byte[] serialize(NoteDbCheckMap checks) throws IOException {
+    return serialize(checks, noteFormat);
+  }
+
+  /**
+   * Serializes the checks of a revision in the given format.
+   *
+   * @return the note data, an empty array if there are no checks
+   */
+  byte[] serialize(NoteDbCheckMap checks, NoteFormat format) throws IOException {
+    if (checks.checks.isEmpty()) {
+      return new byte[0];
+    }
+
+    if (format == NoteFormat.PROTO) {
+      CheckNoteProto.Builder proto = CheckNoteProto.newBuilder();
+      for (Map.Entry<String, NoteDbCheck> e : checks.checks.entrySet()) {
+        proto.addChecks(e.getValue().toProto(e.getKey()));
+      }
+      return proto.build().toByteArray();
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (OutputStreamWriter osw = new OutputStreamWriter(out, UTF_8)) {
+      changeNoteJson.getGson().toJson(checks, osw);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns the format of the given note data.
+   *
+   * <p>JSON notes always start with {@code '{'}, serialized {@link CheckNoteProto}s never do.
+   */
+  static NoteFormat getNoteFormat(byte[] raw, int offset) {
+    return offset < raw.length && raw[offset] == '{' ? NoteFormat.JSON : NoteFormat.PROTO;
+  }
+
+  /** Parses note data in either format. */
+  static NoteDbCheckMap deserialize(ChangeNoteJson changeNoteJson, byte[] raw, int offset)
+      throws IOException, ConfigInvalidException {
+    if (getNoteFormat(raw, offset) == NoteFormat.JSON) {
+      try (InputStream is = new ByteArrayInputStream(raw, offset, raw.length - offset);
+          Reader r = new InputStreamReader(is, UTF_8)) {
+        return changeNoteJson.getGson().fromJson(r, NoteDbCheckMap.class);
+      }
+    }
+
+    CheckNoteProto proto;
+    try {
+      proto = CheckNoteProto.parseFrom(ByteString.copyFrom(raw, offset, raw.length - offset));
+    } catch (InvalidProtocolBufferException e) {
+      throw new ConfigInvalidException("invalid check note", e);
+    }
+    NoteDbCheckMap checks = NoteDbCheckMap.empty();
+    for (CheckProto check : proto.getChecksList()) {
+      checks.checks.put(check.getCheckerUuid(), NoteDbCheck.fromProto(check));
+    }
+    return checks;
+  }
+}
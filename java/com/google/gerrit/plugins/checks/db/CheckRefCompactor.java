@@ -0,0 +1,248 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.git.LockFailureException;
+import com.google.gerrit.git.RefUpdateUtil;
+import com.google.gerrit.plugins.checks.CheckerRef;
+import com.google.gerrit.server.GerritPersonIdent;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.config.ScheduleConfig;
+import com.google.gerrit.server.config.ScheduleConfig.Schedule;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.project.NoSuchChangeException;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Squashes the history of checks refs into a single commit.
+ *
+ * <p>Every update of a check appends a commit to the checks ref of the change. The history of
+ * checks refs is never read, but it slows down garbage collection, replication and everything else
+ * that walks the history of refs. Compacting a checks ref replaces it with a parentless commit
+ * that has the same tree as the current tip, so no checks are lost.
+ *
+ * <p>A checks ref is compacted if its change is closed, or if its history is longer than {@code
+ * plugin.checks.compactionDepth}. Compaction is triggered by administrators through the REST API
+ * and runs periodically if {@code plugin.checks.compactionInterval} is configured. Checks refs are
+ * updated with a compare-and-swap, so a checks ref that is updated concurrently is skipped rather
+ * than losing the concurrent update.
+ */
+@Singleton
+public class CheckRefCompactor implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String COMMIT_MESSAGE = "Compact checks history";
+
+  private final int compactionDepth;
+  private final Optional<Schedule> schedule;
+  private final WorkQueue workQueue;
+  private final ProjectCache projectCache;
+  private final GitRepositoryManager repoManager;
+  private final GitReferenceUpdated gitRefUpdated;
+  private final ChangeNotes.Factory changeNotesFactory;
+  private final Provider<PersonIdent> serverIdent;
+
+  private ScheduledFuture<?> scheduledTask;
+
+  @Inject
+  CheckRefCompactor(
+      @PluginName String pluginName,
+      PluginConfigFactory pluginConfigFactory,
+      @GerritServerConfig Config gerritConfig,
+      WorkQueue workQueue,
+      ProjectCache projectCache,
+      GitRepositoryManager repoManager,
+      GitReferenceUpdated gitRefUpdated,
+      ChangeNotes.Factory changeNotesFactory,
+      @GerritPersonIdent Provider<PersonIdent> serverIdent) {
+    this.compactionDepth =
+        pluginConfigFactory.getFromGerritConfig(pluginName).getInt("compactionDepth", 0);
+    this.schedule =
+        ScheduleConfig.builder(gerritConfig, "plugin")
+            .setSubsection(pluginName)
+            .setKeyInterval("compactionInterval")
+            .setKeyStartTime("compactionStartTime")
+            .buildSchedule();
+    this.workQueue = workQueue;
+    this.projectCache = projectCache;
+    this.repoManager = repoManager;
+    this.gitRefUpdated = gitRefUpdated;
+    this.changeNotesFactory = changeNotesFactory;
+    this.serverIdent = serverIdent;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (!schedule.isPresent()) {
+      return;
+    }
+    scheduledTask =
+        workQueue
+            .getDefaultQueue()
+            .scheduleAtFixedRate(
+                this::compactAllProjects,
+                schedule.get().initialDelay(),
+                schedule.get().interval(),
+                MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (scheduledTask != null) {
+      scheduledTask.cancel(true);
+      scheduledTask = null;
+    }
+  }
+
+  private void compactAllProjects() {
+    int compacted = 0;
+    for (Project.NameKey project : projectCache.all()) {
+      try {
+        compacted += compact(project);
+      } catch (IOException | RuntimeException e) {
+        // An exception that escapes would cancel all further scheduled runs.
+        logger.atWarning().withCause(e).log("Failed to compact checks refs of project %s", project);
+      }
+    }
+    logger.atInfo().log("Compacted %d checks refs", compacted);
+  }
+
+  /**
+   * Compacts all checks refs of a project that are eligible for compaction.
+   *
+   * <p>Checks refs that fail to be compacted are logged and skipped.
+   *
+   * @param project the project for which the checks refs should be compacted
+   * @return the number of checks refs that were compacted
+   */
+  public int compact(Project.NameKey project) throws IOException {
+    int compacted = 0;
+    try (Repository repo = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(repo);
+        ObjectInserter ins = repo.newObjectInserter()) {
+      for (Ref ref : repo.getRefDatabase().getRefsByPrefix(RefNames.REFS_CHANGES)) {
+        Optional<Change.Id> changeId = CheckerRef.parseChangeIdFromChecksRef(ref.getName());
+        if (!changeId.isPresent()) {
+          continue;
+        }
+        try {
+          if (compactRef(project, changeId.get(), repo, rw, ins, ref)) {
+            compacted++;
+          }
+        } catch (IOException | RuntimeException e) {
+          logger.atWarning().withCause(e).log(
+              "Failed to compact %s in project %s", ref.getName(), project);
+        }
+      }
+    }
+    return compacted;
+  }
+
+  private boolean compactRef(
+      Project.NameKey project,
+      Change.Id changeId,
+      Repository repo,
+      RevWalk rw,
+      ObjectInserter ins,
+      Ref ref)
+      throws IOException {
+    RevCommit tip = rw.parseCommit(ref.getObjectId());
+    if (tip.getParentCount() == 0) {
+      // Already compacted.
+      return false;
+    }
+    if (!exceedsCompactionDepth(rw, tip) && !isClosed(project, changeId)) {
+      return false;
+    }
+
+    PersonIdent ident = serverIdent.get();
+    CommitBuilder cb = new CommitBuilder();
+    cb.setTreeId(tip.getTree());
+    cb.setAuthor(ident);
+    cb.setCommitter(ident);
+    cb.setMessage(COMMIT_MESSAGE);
+    ObjectId newCommitId = ins.insert(cb);
+    ins.flush();
+
+    RefUpdate refUpdate = repo.updateRef(ref.getName());
+    refUpdate.setExpectedOldObjectId(tip);
+    refUpdate.setNewObjectId(newCommitId);
+    refUpdate.setForceUpdate(true);
+    refUpdate.setRefLogIdent(ident);
+    refUpdate.setRefLogMessage(COMMIT_MESSAGE, false);
+    refUpdate.update(rw);
+    try {
+      RefUpdateUtil.checkResult(refUpdate);
+    } catch (LockFailureException e) {
+      logger.atFine().log("Skipping concurrently updated %s in project %s", ref.getName(), project);
+      return false;
+    }
+
+    gitRefUpdated.fire(project, refUpdate, null);
+    return true;
+  }
+
+  private boolean exceedsCompactionDepth(RevWalk rw, RevCommit tip) throws IOException {
+    if (compactionDepth <= 0) {
+      return false;
+    }
+    // Checks refs have a linear history, hence following the first parent is sufficient.
+    RevCommit commit = tip;
+    for (int depth = 1; depth <= compactionDepth; depth++) {
+      if (commit.getParentCount() == 0) {
+        return false;
+      }
+      commit = rw.parseCommit(commit.getParent(0));
+    }
+    return true;
+  }
+
+  private boolean isClosed(Project.NameKey project, Change.Id changeId) {
+    try {
+      return changeNotesFactory.createChecked(project, changeId).getChange().isClosed();
+    } catch (NoSuchChangeException e) {
+      // Checks of deleted changes are never read, hence there is no need to compact them.
+      return false;
+    }
+  }
+}
@@ -14,16 +14,10 @@
 
 package com.google.gerrit.plugins.checks.db;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.server.notedb.ChangeNoteJson;
 import com.google.gerrit.server.notedb.RevisionNote;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.util.List;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.ObjectId;
@@ -32,18 +26,22 @@ import org.eclipse.jgit.lib.ObjectReader;
 public class CheckRevisionNote extends RevisionNote<NoteDbCheckMap> {
 
   private final ChangeNoteJson noteUtil;
+  private final ObjectId noteId;
 
   CheckRevisionNote(ChangeNoteJson noteUtil, ObjectReader reader, ObjectId noteId) {
     super(reader, noteId);
     this.noteUtil = noteUtil;
+    this.noteId = noteId;
   }
 
   @Override
   protected List<NoteDbCheckMap> parse(byte[] raw, int offset)
       throws IOException, ConfigInvalidException {
-    try (InputStream is = new ByteArrayInputStream(raw, offset, raw.length - offset);
-        Reader r = new InputStreamReader(is, UTF_8)) {
-      return ImmutableList.of(noteUtil.getGson().fromJson(r, NoteDbCheckMap.class));
+    try {
+      return ImmutableList.of(CheckNoteSerializer.deserialize(noteUtil, raw, offset));
+    } catch (ConfigInvalidException e) {
+      throw new ConfigInvalidException(
+          String.format("invalid check note %s: %s", noteId.name(), e.getMessage()), e);
     }
   }
 }
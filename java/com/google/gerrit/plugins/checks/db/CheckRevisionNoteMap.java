@@ -14,40 +14,94 @@
 
 package com.google.gerrit.plugins.checks.db;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.server.notedb.ChangeNoteJson;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.notes.Note;
 import org.eclipse.jgit.notes.NoteMap;
 
+/**
+ * Checks of the revisions of a change, as stored in the notes of the checks ref.
+ *
+ * <p>Notes are parsed lazily: the checks of a revision are only parsed when they are accessed for
+ * the first time, and the parsed result is memoized. Hence the object reader from which the map
+ * was loaded must stay open as long as the map is used. Writers that update several revisions in
+ * one commit use this map, so that each note is parsed at most once. Readers get the checks of a
+ * single revision from {@link ParsedChecksCache}, which memoizes them per state of the checks ref.
+ *
+ * <p>Instances are not thread-safe.
+ */
 public class CheckRevisionNoteMap {
-  final NoteMap noteMap;
-  final ImmutableMap<ObjectId, CheckRevisionNote> revisionNotes;
+  private final ChangeNoteJson changeNoteJson;
+  private final ObjectReader reader;
+  private final NoteMap noteMap;
+  private final Map<ObjectId, NoteDbCheckMap> parsedRevisions = new LinkedHashMap<>();
 
-  static CheckRevisionNoteMap parseChecks(
-      ChangeNoteJson changeNoteJson, ObjectReader reader, NoteMap noteMap)
-      throws ConfigInvalidException, IOException {
-    Map<ObjectId, CheckRevisionNote> result = new HashMap<>();
-    for (Note note : noteMap) {
-      CheckRevisionNote rn = new CheckRevisionNote(changeNoteJson, reader, note.getData());
-      rn.parse();
-      result.put(note.copy(), rn);
-    }
-    return new CheckRevisionNoteMap(noteMap, ImmutableMap.copyOf(result));
+  /**
+   * Creates a map that parses the notes of the given note map on demand.
+   *
+   * <p>No note is read by this method.
+   */
+  static CheckRevisionNoteMap load(
+      ChangeNoteJson changeNoteJson, ObjectReader reader, NoteMap noteMap) {
+    return new CheckRevisionNoteMap(changeNoteJson, reader, noteMap);
   }
 
-  static CheckRevisionNoteMap emptyMap() {
-    return new CheckRevisionNoteMap(NoteMap.newEmptyMap(), ImmutableMap.of());
+  /**
+   * Parses only the note of a single revision.
+   *
+   * @param changeNoteJson the JSON converter for check notes
+   * @param reader reader to read the note data
+   * @param noteMap the note map that contains the notes for all revisions
+   * @param revision the commit ID of the revision for which the checks should be parsed
+   * @return the checks of the revision, an empty (mutable) map if the revision has no checks
+   */
+  static NoteDbCheckMap parseChecksForRevision(
+      ChangeNoteJson changeNoteJson, ObjectReader reader, NoteMap noteMap, ObjectId revision)
+      throws ConfigInvalidException, IOException {
+    ObjectId noteDataId = noteMap.get(revision);
+    if (noteDataId == null) {
+      return NoteDbCheckMap.empty();
+    }
+    CheckRevisionNote rn = new CheckRevisionNote(changeNoteJson, reader, noteDataId);
+    rn.parse();
+    return rn.getOnlyEntity();
   }
 
   private CheckRevisionNoteMap(
-      NoteMap noteMap, ImmutableMap<ObjectId, CheckRevisionNote> revisionNotes) {
+      ChangeNoteJson changeNoteJson, ObjectReader reader, NoteMap noteMap) {
+    this.changeNoteJson = changeNoteJson;
+    this.reader = reader;
     this.noteMap = noteMap;
-    this.revisionNotes = revisionNotes;
+  }
+
+  /**
+   * Returns the checks of the given revision.
+   *
+   * <p>The note of the revision is parsed on the first call, subsequent calls return the memoized
+   * result. The result is mutable, modifications are seen by subsequent calls.
+   *
+   * @param revision the commit ID of the revision
+   * @return the checks of the revision, an empty (mutable) map if the revision has no checks
+   */
+  NoteDbCheckMap get(ObjectId revision) throws ConfigInvalidException, IOException {
+    NoteDbCheckMap checks = parsedRevisions.get(revision);
+    if (checks == null) {
+      checks = parseChecksForRevision(changeNoteJson, reader, noteMap, revision);
+      parsedRevisions.put(revision.copy(), checks);
+    }
+    return checks;
+  }
+
+  /**
+   * Returns the checks of all revisions that were accessed through {@link #get(ObjectId)}, in the
+   * order in which they were accessed first.
+   */
+  Map<ObjectId, NoteDbCheckMap> getParsedRevisions() {
+    return Collections.unmodifiableMap(parsedRevisions);
   }
 }
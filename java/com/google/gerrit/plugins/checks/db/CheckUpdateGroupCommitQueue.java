@@ -0,0 +1,265 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.exceptions.DuplicateKeyException;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.plugins.checks.Check;
+import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckUpdate;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue that coalesces concurrent check updates on the same change into a single NoteDb commit.
+ *
+ * <p>An update for a change on which no group is being written is written right away, by the
+ * thread that submitted it. Updates that are submitted while a group of the same change is being
+ * written are queued. Once the write finishes, one of their submitters writes all queued updates of
+ * the change as the next group in a single commit. All other submitters of the group block until
+ * it has been written and then get the result of their own update. Uncontended updates hence don't
+ * wait at all, and contended updates wait for at most one write of another group.
+ *
+ * <p>A group can contain updates of different users. The commit message records the accounts of
+ * all users that updated checks in the commit. The ref update event is only attributed to a user
+ * if all updates of the group were done by the same user.
+ *
+ * <p>Group commit is disabled unless {@code plugin.checks.groupCommit} is set to {@code true} in
+ * {@code gerrit.config}.
+ */
+@Singleton
+class CheckUpdateGroupCommitQueue {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** A check update that is waiting to be written as part of a group. */
+  static class PendingCheckUpdate {
+    final CheckKey key;
+    final CheckUpdate update;
+    final NoteDbChecksUpdate.Operation operation;
+    final Optional<IdentifiedUser> user;
+
+    private final CompletableFuture<Check> future = new CompletableFuture<>();
+    private Check result;
+    private Exception failure;
+
+    private PendingCheckUpdate(
+        CheckKey key,
+        CheckUpdate update,
+        NoteDbChecksUpdate.Operation operation,
+        Optional<IdentifiedUser> user) {
+      this.key = key;
+      this.update = update;
+      this.operation = operation;
+      this.user = user;
+    }
+
+    /**
+     * Records the outcome of this update for the current write attempt.
+     *
+     * <p>The outcome is only reported to the submitter once the group was written successfully.
+     */
+    void setResult(Check result) {
+      this.result = result;
+      this.failure = null;
+    }
+
+    /** Records that this update is rejected in the current write attempt. */
+    void setFailure(Exception failure) {
+      this.result = null;
+      this.failure = failure;
+    }
+
+    private void complete() {
+      if (failure != null) {
+        future.completeExceptionally(failure);
+      } else {
+        future.complete(result);
+      }
+    }
+
+    private void fail(Throwable t) {
+      future.completeExceptionally(t);
+    }
+  }
+
+  /** The updates of one change that are queued while a group of the change is being written. */
+  private static class ChangeQueue {
+    final List<PendingCheckUpdate> queued = new ArrayList<>();
+    final Condition written;
+    boolean writing;
+
+    ChangeQueue(Condition written) {
+      this.written = written;
+    }
+  }
+
+  private final boolean enabled;
+  private final Lock lock = new ReentrantLock();
+
+  // Guarded by lock.
+  private final Map<Change.Id, ChangeQueue> queues = new HashMap<>();
+
+  @Inject
+  CheckUpdateGroupCommitQueue(
+      @PluginName String pluginName, PluginConfigFactory pluginConfigFactory) {
+    this(pluginConfigFactory.getFromGerritConfig(pluginName).getBoolean("groupCommit", false));
+  }
+
+  @VisibleForTesting
+  CheckUpdateGroupCommitQueue(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Submits a check update and blocks until the group to which it was added has been written.
+   *
+   * @param key the key of the check that should be updated
+   * @param update the update that should be applied to the check
+   * @param operation whether the check should be created or updated
+   * @param user the user that updates the check, empty if the check is updated by the server
+   * @param writer writes a group of updates in a single commit, must call {@link
+   *     PendingCheckUpdate#setResult(Check)} or {@link PendingCheckUpdate#setFailure(Exception)}
+   *     for every update of the group
+   * @return the check as it resulted from applying this update
+   */
+  Check submit(
+      CheckKey key,
+      CheckUpdate update,
+      NoteDbChecksUpdate.Operation operation,
+      Optional<IdentifiedUser> user,
+      GroupWriter writer)
+      throws DuplicateKeyException, IOException {
+    PendingCheckUpdate pending = new PendingCheckUpdate(key, update, operation, user);
+    Change.Id changeId = key.patchSet().changeId();
+    ChangeQueue queue;
+    ImmutableList<PendingCheckUpdate> group = null;
+    lock.lock();
+    try {
+      queue = queues.computeIfAbsent(changeId, id -> new ChangeQueue(lock.newCondition()));
+      queue.queued.add(pending);
+      // Wait until the update was written as part of a group of another submitter, or until no
+      // group of the change is being written anymore.
+      while (queue.writing && !pending.future.isDone()) {
+        try {
+          queue.written.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          // The update is not written if it is still queued. Otherwise a group that contains it is
+          // being written.
+          queue.queued.remove(pending);
+          if (!queue.writing && queue.queued.isEmpty()) {
+            queues.remove(changeId);
+          }
+          throw new IOException("interrupted while waiting for group commit of " + key, e);
+        }
+      }
+      if (!pending.future.isDone()) {
+        queue.writing = true;
+        group = ImmutableList.copyOf(queue.queued);
+        queue.queued.clear();
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (group != null) {
+      writeGroup(changeId, queue, group, writer);
+    }
+
+    try {
+      return pending.future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting for group commit of " + key, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.throwIfUnchecked(cause);
+      Throwables.throwIfInstanceOf(cause, DuplicateKeyException.class);
+      Throwables.throwIfInstanceOf(cause, IOException.class);
+      throw new IOException(cause);
+    }
+  }
+
+  /** Returns the number of updates that are queued behind a group that is being written. */
+  @VisibleForTesting
+  int getQueuedUpdateCount(Change.Id changeId) {
+    lock.lock();
+    try {
+      ChangeQueue queue = queues.get(changeId);
+      return queue != null ? queue.queued.size() : 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void writeGroup(
+      Change.Id changeId,
+      ChangeQueue queue,
+      ImmutableList<PendingCheckUpdate> group,
+      GroupWriter writer) {
+    logger.atFine().log("writing %d check updates for change %s", group.size(), changeId);
+    try {
+      writer.write(group);
+      group.forEach(PendingCheckUpdate::complete);
+    } catch (Exception e) {
+      group.forEach(p -> p.fail(e));
+    } catch (Error e) {
+      // Don't leave the other submitters of the group waiting forever.
+      group.forEach(p -> p.fail(e));
+      throw e;
+    } finally {
+      lock.lock();
+      try {
+        queue.writing = false;
+        if (queue.queued.isEmpty()) {
+          queues.remove(changeId);
+        }
+        // Wakes up the submitters of the group and the submitters of queued updates, one of which
+        // writes the next group.
+        queue.written.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Writes a group of check updates for one change in a single commit. */
+  @FunctionalInterface
+  interface GroupWriter {
+    void write(ImmutableList<PendingCheckUpdate> group) throws Exception;
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.notes.Note;
+import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * In-memory index of the repository to checkers map that is stored in {@link
+ * CheckersByRepositoryNotes}.
+ *
+ * <p>The repository to checkers map is read on every check update and every evaluation of the
+ * submit rule. This class keeps the parsed checker UUIDs of all repositories together with the tip
+ * of the {@code refs/meta/checkers} branch from which they were read. Every lookup reads the tip
+ * of the branch and serves the checker UUIDs from memory if the tip didn't change. If the tip
+ * changed, the index is rebuilt from the new tip, but only the notes whose blob changed are read
+ * and parsed again.
+ */
+@Singleton
+class CheckersByRepositoryCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Checker UUIDs of all repositories, as read from a certain tip of the notes branch. */
+  private static class Index {
+    private static final Index EMPTY = new Index(ObjectId.zeroId(), ImmutableMap.of());
+
+    private final ObjectId tip;
+    private final ImmutableMap<ObjectId, ParsedNote> notes;
+
+    Index(ObjectId tip, ImmutableMap<ObjectId, ParsedNote> notes) {
+      this.tip = tip;
+      this.notes = notes;
+    }
+  }
+
+  private static class ParsedNote {
+    private final ObjectId blobId;
+    private final ImmutableSortedSet<CheckerUuid> checkerUuids;
+
+    ParsedNote(ObjectId blobId, ImmutableSortedSet<CheckerUuid> checkerUuids) {
+      this.blobId = blobId;
+      this.checkerUuids = checkerUuids;
+    }
+  }
+
+  private volatile Index index = Index.EMPTY;
+
+  /**
+   * Returns the UUIDs of the checkers that apply to a repository.
+   *
+   * @param allProjectsRepo the {@code All-Projects} repository.
+   * @param repositoryName the name of the repository for which the checker UUIDs are returned.
+   * @return the checker UUIDs of the repository, empty set if no checkers apply to the repository.
+   * @throws IOException if reading the notes fails.
+   */
+  ImmutableSortedSet<CheckerUuid> get(Repository allProjectsRepo, Project.NameKey repositoryName)
+      throws IOException {
+    ParsedNote note =
+        getIndex(allProjectsRepo)
+            .notes
+            .get(CheckersByRepositoryNotes.computeRepositorySha1(repositoryName));
+    return note != null ? note.checkerUuids : ImmutableSortedSet.of();
+  }
+
+  private Index getIndex(Repository allProjectsRepo) throws IOException {
+    Ref ref = allProjectsRepo.exactRef(CheckersByRepositoryNotes.getRefName(allProjectsRepo));
+    ObjectId tip = ref != null ? ref.getObjectId() : ObjectId.zeroId();
+    Index current = index;
+    if (current.tip.equals(tip)) {
+      return current;
+    }
+
+    Index reloaded = ObjectId.zeroId().equals(tip) ? Index.EMPTY : load(allProjectsRepo, tip);
+    // Lookups may race with each other, but every lookup validates the tip, so it doesn't matter
+    // if an older index wins.
+    index = reloaded;
+    return reloaded;
+  }
+
+  private Index load(Repository allProjectsRepo, ObjectId tip) throws IOException {
+    ImmutableMap<ObjectId, ParsedNote> oldNotes = index.notes;
+    ImmutableMap.Builder<ObjectId, ParsedNote> notes = ImmutableMap.builder();
+    int parsed = 0;
+    try (RevWalk rw = new RevWalk(allProjectsRepo)) {
+      ObjectReader reader = rw.getObjectReader();
+      NoteMap noteMap = NoteMap.read(reader, rw.parseCommit(tip));
+      for (Note note : noteMap) {
+        ObjectId noteId = note.copy();
+        ObjectId blobId = note.getData().copy();
+        ParsedNote oldNote = oldNotes.get(noteId);
+        if (oldNote != null && oldNote.blobId.equals(blobId)) {
+          notes.put(noteId, oldNote);
+          continue;
+        }
+        byte[] raw = CheckersByRepositoryNotes.readNoteData(rw, blobId);
+        notes.put(
+            noteId,
+            new ParsedNote(
+                blobId,
+                CheckersByRepositoryNotes.parseCheckerUuidsFromNote(noteId, raw, blobId)));
+        parsed++;
+      }
+    }
+    logger.atFine().log(
+        "Reloaded checkers by repository from %s, parsed %d notes", tip.name(), parsed);
+    return new Index(tip.copy(), notes.build());
+  }
+}
@@ -112,18 +112,22 @@ public class CheckersByRepositoryNotes extends VersionedMetaData {
 
   @Override
   protected String getRefName() {
+    try {
+      return getRefName(repo);
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  static String getRefName(Repository allProjectsRepo) throws IOException {
     // To allow for an online migration of the old checker ref (refs/meta/checkers/) to the new ref
     // (refs/meta/checkers) we need to check which state we are in here. If we omit the legacy ref
     // exists, we operate on that instead. The migration will move to the new ref eventually and
     // delete the old ref. At that point, we'll start using the new ref here.
     // TODO(paiking): Remove when migration on googlesource.com is done.
-    try {
-      return repo.exactRef("refs/meta/checkers/") != null
-          ? "refs/meta/checkers/"
-          : CheckerRef.REFS_META_CHECKERS;
-    } catch (IOException e) {
-      throw new StorageException(e);
-    }
+    return allProjectsRepo.exactRef("refs/meta/checkers/") != null
+        ? "refs/meta/checkers/"
+        : CheckerRef.REFS_META_CHECKERS;
   }
 
   /**
@@ -302,7 +306,7 @@ public class CheckersByRepositoryNotes extends VersionedMetaData {
     }
   }
 
-  private static byte[] readNoteData(RevWalk rw, ObjectId noteDataId) throws IOException {
+  static byte[] readNoteData(RevWalk rw, ObjectId noteDataId) throws IOException {
     return rw.getObjectReader().open(noteDataId, OBJ_BLOB).getCachedBytes(MAX_NOTE_SZ);
   }
 
@@ -318,7 +322,7 @@ public class CheckersByRepositoryNotes extends VersionedMetaData {
    *
    * <p>Invalid checker UUIDs are silently ignored.
    */
-  private static ImmutableSortedSet<CheckerUuid> parseCheckerUuidsFromNote(
+  static ImmutableSortedSet<CheckerUuid> parseCheckerUuidsFromNote(
       ObjectId noteId, byte[] raw, ObjectId blobId) {
     ImmutableSortedSet<String> lines = parseNote(raw);
     ImmutableSortedSet.Builder<CheckerUuid> checkerUuids = ImmutableSortedSet.naturalOrder();
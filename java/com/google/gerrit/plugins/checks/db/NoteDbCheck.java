@@ -9,8 +9,11 @@ import com.google.gerrit.plugins.checks.CheckKey;
 import com.google.gerrit.plugins.checks.CheckUpdate;
 import com.google.gerrit.plugins.checks.CheckerUuid;
 import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.notes.proto.CheckNote.CheckProto;
 import com.google.gerrit.server.util.time.TimeUtil;
 import java.sql.Timestamp;
+import java.time.Instant;
+import org.eclipse.jgit.errors.ConfigInvalidException;
 
 /** Representation of {@link Check} that can be serialized with GSON. */
 class NoteDbCheck {
@@ -49,6 +52,62 @@ class NoteDbCheck {
     return toCheck(key);
   }
 
+  /** Converts this check to its binary note representation. */
+  CheckProto toProto(String checkerUuid) {
+    CheckProto.Builder proto =
+        CheckProto.newBuilder()
+            .setCheckerUuid(checkerUuid)
+            .setState(state.name())
+            .setMessage(Strings.nullToEmpty(message))
+            .setUrl(Strings.nullToEmpty(url))
+            .setCreated(toProto(created))
+            .setUpdated(toProto(updated));
+    if (started != null) {
+      proto.setStarted(toProto(started));
+    }
+    if (finished != null) {
+      proto.setFinished(toProto(finished));
+    }
+    return proto.build();
+  }
+
+  /** Creates a check from its binary note representation. */
+  static NoteDbCheck fromProto(CheckProto proto) throws ConfigInvalidException {
+    NoteDbCheck noteDbCheck = new NoteDbCheck();
+    try {
+      noteDbCheck.state = CheckState.valueOf(proto.getState());
+    } catch (IllegalArgumentException e) {
+      throw new ConfigInvalidException(
+          String.format(
+              "invalid state '%s' of check of checker %s",
+              proto.getState(), proto.getCheckerUuid()),
+          e);
+    }
+    noteDbCheck.message = Strings.emptyToNull(proto.getMessage());
+    noteDbCheck.url = Strings.emptyToNull(proto.getUrl());
+    if (proto.hasStarted()) {
+      noteDbCheck.started = fromProto(proto.getStarted());
+    }
+    if (proto.hasFinished()) {
+      noteDbCheck.finished = fromProto(proto.getFinished());
+    }
+    noteDbCheck.created = fromProto(proto.getCreated());
+    noteDbCheck.updated = fromProto(proto.getUpdated());
+    return noteDbCheck;
+  }
+
+  private static com.google.protobuf.Timestamp toProto(Timestamp timestamp) {
+    Instant instant = timestamp.toInstant();
+    return com.google.protobuf.Timestamp.newBuilder()
+        .setSeconds(instant.getEpochSecond())
+        .setNanos(instant.getNano())
+        .build();
+  }
+
+  private static Timestamp fromProto(com.google.protobuf.Timestamp timestamp) {
+    return Timestamp.from(Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos()));
+  }
+
   static NoteDbCheck createInitialNoteDbCheck(CheckUpdate checkUpdate) {
     NoteDbCheck noteDbCheck = new NoteDbCheck();
     noteDbCheck.applyUpdate(checkUpdate);
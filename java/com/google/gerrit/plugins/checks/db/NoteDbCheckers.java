@@ -14,13 +14,16 @@
 
 package com.google.gerrit.plugins.checks.db;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toSet;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Streams;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.plugins.checks.Checker;
 import com.google.gerrit.plugins.checks.CheckerRef;
@@ -31,33 +34,121 @@ import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 
-/** Class to read checkers from NoteDb. */
+/**
+ * Class to read checkers from NoteDb.
+ *
+ * <p>Checkers are read on the hot path of many requests, e.g. when posting checks, formatting
+ * checks and evaluating the submit rule. To avoid parsing checker configs over and over again, all
+ * loaded checkers are kept in an immutable snapshot that maps checker refs to the checkers that
+ * were loaded from them. On every lookup the checker refs are read and compared against the
+ * snapshot, and only checkers whose ref SHA-1 changed are loaded again. Reading refs is cheap
+ * compared to parsing checker configs, and it makes sure that lookups never return stale checkers,
+ * even if checker refs are updated by another server or bypassing this class. Checkers that are
+ * loaded while listing checkers are added to the snapshot at once, so that a listing copies the
+ * snapshot only once.
+ */
 @Singleton
 class NoteDbCheckers implements Checkers {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  /** Result of loading a checker from the checker ref with a given SHA-1. */
+  private static class LoadedChecker {
+    private final ObjectId refState;
+    private final Optional<Checker> checker;
+    @Nullable private final ConfigInvalidException error;
+
+    LoadedChecker(ObjectId refState, Optional<Checker> checker) {
+      this.refState = refState;
+      this.checker = checker;
+      this.error = null;
+    }
+
+    LoadedChecker(ObjectId refState, ConfigInvalidException error) {
+      this.refState = refState;
+      this.checker = Optional.empty();
+      this.error = error;
+    }
+
+    Optional<Checker> get() throws ConfigInvalidException {
+      if (error != null) {
+        throw error;
+      }
+      return checker;
+    }
+  }
+
   private final GitRepositoryManager repoManager;
   private final AllProjectsName allProjectsName;
+  private final CheckersByRepositoryCache checkersByRepositoryCache;
+
+  /** Checkers by the name of the ref from which they were loaded. */
+  private volatile ImmutableMap<String, LoadedChecker> snapshot = ImmutableMap.of();
+
+  private final AtomicLong snapshotUpdateCount = new AtomicLong();
 
   @Inject
-  NoteDbCheckers(GitRepositoryManager repoManager, AllProjectsName allProjectsName) {
+  NoteDbCheckers(
+      GitRepositoryManager repoManager,
+      AllProjectsName allProjectsName,
+      CheckersByRepositoryCache checkersByRepositoryCache) {
     this.repoManager = repoManager;
     this.allProjectsName = allProjectsName;
+    this.checkersByRepositoryCache = checkersByRepositoryCache;
   }
 
   @Override
   public Optional<Checker> getChecker(CheckerUuid checkerUuid)
       throws IOException, ConfigInvalidException {
     try (Repository allProjectsRepo = repoManager.openRepository(allProjectsName)) {
-      CheckerConfig checkerConfig =
-          CheckerConfig.loadForChecker(allProjectsName, allProjectsRepo, checkerUuid);
-      return checkerConfig.getLoadedChecker();
+      Map<String, LoadedChecker> loaded = new HashMap<>();
+      Set<String> deleted = new HashSet<>();
+      try {
+        return getChecker(allProjectsRepo, checkerUuid, loaded, deleted);
+      } finally {
+        if (!loaded.isEmpty() || !deleted.isEmpty()) {
+          updateSnapshot(loaded, deleted::contains);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a checker from the snapshot, loading it if the snapshot doesn't contain the checker at
+   * the current SHA-1 of its ref.
+   *
+   * @param loaded collects the checkers that were loaded and should be added to the snapshot
+   * @param deleted collects the names of refs of deleted checkers that should be removed from the
+   *     snapshot
+   */
+  private Optional<Checker> getChecker(
+      Repository allProjectsRepo,
+      CheckerUuid checkerUuid,
+      Map<String, LoadedChecker> loaded,
+      Set<String> deleted)
+      throws IOException, ConfigInvalidException {
+    String refName = checkerUuid.toRefName();
+    Ref ref = allProjectsRepo.exactRef(refName);
+    if (ref == null) {
+      if (snapshot.containsKey(refName)) {
+        deleted.add(refName);
+      }
+      return Optional.empty();
     }
+    return getLoadedChecker(allProjectsRepo, ref, loaded).get();
   }
 
   @Override
@@ -70,47 +161,121 @@ class NoteDbCheckers implements Checkers {
     if (scheme != null && !scheme.isEmpty() && !scheme.endsWith("/")) {
       scheme = scheme + "/";
     }
+    String prefix = CheckerRef.REFS_CHECKERS + scheme;
     try (Repository allProjectsRepo = repoManager.openRepository(allProjectsName)) {
-      return allProjectsRepo.getRefDatabase().getRefsByPrefix(CheckerRef.REFS_CHECKERS + scheme)
-          .stream()
-          .flatMap(ref -> Streams.stream(tryLoadChecker(allProjectsRepo, ref)))
-          .sorted(comparing(Checker::getUuid))
-          .collect(toImmutableList());
-    }
-  }
+      List<Ref> refs = allProjectsRepo.getRefDatabase().getRefsByPrefix(prefix);
+      Set<String> existingRefNames = refs.stream().map(Ref::getName).collect(toSet());
 
-  private Optional<Checker> tryLoadChecker(Repository allProjectsRepo, Ref ref) {
-    if (CheckerRef.isRefsCheckers(ref.getName())) {
+      Map<String, LoadedChecker> loaded = new HashMap<>();
+      List<Checker> checkers = new ArrayList<>();
       try {
-        return CheckerConfig.loadForChecker(allProjectsName, allProjectsRepo, ref)
-            .getLoadedChecker();
-      } catch (ConfigInvalidException | IOException e) {
-        logger.atWarning().withCause(e).log(
-            "Ignore invalid checker in %s while listing checkers", ref.getName());
+        for (Ref ref : refs) {
+          if (!CheckerRef.isRefsCheckers(ref.getName())) {
+            continue;
+          }
+          try {
+            getLoadedChecker(allProjectsRepo, ref, loaded).get().ifPresent(checkers::add);
+          } catch (ConfigInvalidException e) {
+            logger.atWarning().withCause(e).log(
+                "Ignore invalid checker in %s while listing checkers", ref.getName());
+          }
+        }
+      } finally {
+        // Checkers whose refs were not listed were deleted.
+        updateSnapshot(
+            loaded, refName -> refName.startsWith(prefix) && !existingRefNames.contains(refName));
       }
+      checkers.sort(comparing(Checker::getUuid));
+      return ImmutableList.copyOf(checkers);
     }
-    return Optional.empty();
   }
 
   @Override
   public ImmutableSortedSet<Checker> checkersOf(Project.NameKey repositoryName) throws IOException {
     try (Repository allProjectsRepo = repoManager.openRepository(allProjectsName)) {
       ImmutableSortedSet<CheckerUuid> checkerUuidStrings =
-          CheckersByRepositoryNotes.load(allProjectsName, allProjectsRepo).get(repositoryName);
+          checkersByRepositoryCache.get(allProjectsRepo, repositoryName);
       ImmutableSortedSet.Builder<Checker> checkers =
           ImmutableSortedSet.orderedBy(comparing(Checker::getUuid));
-      for (CheckerUuid checkerUuid : checkerUuidStrings) {
-        try {
-          CheckerConfig checkerConfig =
-              CheckerConfig.loadForChecker(allProjectsName, allProjectsRepo, checkerUuid);
-          checkerConfig.getLoadedChecker().ifPresent(checkers::add);
-        } catch (ConfigInvalidException e) {
-          logger.atWarning().withCause(e).log(
-              "Ignore invalid checker %s on listing checkers for repository %s",
-              checkerUuid, repositoryName);
+      Map<String, LoadedChecker> loaded = new HashMap<>();
+      Set<String> deleted = new HashSet<>();
+      try {
+        for (CheckerUuid checkerUuid : checkerUuidStrings) {
+          try {
+            getChecker(allProjectsRepo, checkerUuid, loaded, deleted).ifPresent(checkers::add);
+          } catch (ConfigInvalidException e) {
+            logger.atWarning().withCause(e).log(
+                "Ignore invalid checker %s on listing checkers for repository %s",
+                checkerUuid, repositoryName);
+          }
+        }
+      } finally {
+        if (!loaded.isEmpty() || !deleted.isEmpty()) {
+          updateSnapshot(loaded, deleted::contains);
         }
       }
       return checkers.build();
     }
   }
+
+  /**
+   * Returns the checker of the given ref from the snapshot, loading it if the snapshot doesn't
+   * contain the checker at the current SHA-1 of the ref.
+   *
+   * @param loaded collects the checkers that were loaded and should be added to the snapshot
+   */
+  private LoadedChecker getLoadedChecker(
+      Repository allProjectsRepo, Ref ref, Map<String, LoadedChecker> loaded) throws IOException {
+    LoadedChecker loadedChecker = snapshot.get(ref.getName());
+    if (loadedChecker != null && loadedChecker.refState.equals(ref.getObjectId())) {
+      return loadedChecker;
+    }
+
+    try {
+      Optional<Checker> checker =
+          CheckerConfig.loadForChecker(allProjectsName, allProjectsRepo, ref).getLoadedChecker();
+      // The ref may have been updated since it was read, use the SHA-1 that was actually loaded.
+      loadedChecker =
+          new LoadedChecker(checker.map(Checker::getRefState).orElse(ref.getObjectId()), checker);
+    } catch (ConfigInvalidException e) {
+      loadedChecker = new LoadedChecker(ref.getObjectId(), e);
+    }
+    loaded.put(ref.getName(), loadedChecker);
+    return loadedChecker;
+  }
+
+  /**
+   * Adds loaded checkers to the snapshot and removes deleted checkers from it.
+   *
+   * <p>Deleted checkers are determined while holding the lock, so that they are matched against the
+   * current snapshot rather than against a snapshot that was concurrently replaced.
+   *
+   * @param loaded the loaded checkers by the name of the ref from which they were loaded
+   * @param isDeleted whether the checker of a ref in the snapshot was deleted, checkers in {@code
+   *     loaded} are never removed
+   */
+  private synchronized void updateSnapshot(
+      Map<String, LoadedChecker> loaded, Predicate<String> isDeleted) {
+    ImmutableMap<String, LoadedChecker> current = snapshot;
+    if (loaded.isEmpty() && current.keySet().stream().noneMatch(isDeleted)) {
+      return;
+    }
+    Map<String, LoadedChecker> newSnapshot = new HashMap<>(current);
+    newSnapshot.keySet().removeIf(isDeleted);
+    newSnapshot.putAll(loaded);
+    snapshot = ImmutableMap.copyOf(newSnapshot);
+    snapshotUpdateCount.incrementAndGet();
+  }
+
+  /** Returns the names of the refs of the checkers in the snapshot. */
+  @VisibleForTesting
+  ImmutableSet<String> getSnapshotRefNames() {
+    return snapshot.keySet();
+  }
+
+  /** Returns the number of times the snapshot was replaced. */
+  @VisibleForTesting
+  long getSnapshotUpdateCount() {
+    return snapshotUpdateCount.get();
+  }
 }
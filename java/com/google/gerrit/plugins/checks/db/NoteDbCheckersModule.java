@@ -15,6 +15,7 @@
 package com.google.gerrit.plugins.checks.db;
 
 import com.google.gerrit.extensions.config.FactoryModule;
+import com.google.gerrit.extensions.events.LifecycleListener;
 import com.google.gerrit.plugins.checks.Checkers;
 import com.google.gerrit.plugins.checks.CheckersUpdate;
 import com.google.gerrit.plugins.checks.Checks;
@@ -23,6 +24,7 @@ import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.ServerInitiated;
 import com.google.gerrit.server.UserInitiated;
 import com.google.inject.Provides;
+import com.google.inject.internal.UniqueAnnotations;
 
 /** Bind NoteDb implementation for storage layer. */
 public class NoteDbCheckersModule extends FactoryModule {
@@ -30,9 +32,17 @@ public class NoteDbCheckersModule extends FactoryModule {
   protected void configure() {
     bind(Checkers.class).to(NoteDbCheckers.class);
     bind(Checks.class).to(NoteDbChecks.class);
-    factory(CheckNotes.Factory.class);
     factory(NoteDbCheckersUpdate.Factory.class);
     factory(NoteDbChecksUpdate.Factory.class);
+    install(ParsedChecksCache.module());
+    install(SubmitRuleResultCache.module());
+
+    bind(LifecycleListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(CheckNoteConverter.class);
+    bind(LifecycleListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(CheckRefCompactor.class);
   }
 
   @Provides
@@ -16,19 +16,25 @@ package com.google.gerrit.plugins.checks.db;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Multimaps;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.plugins.checks.Check;
 import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckStateCountSnapshot;
+import com.google.gerrit.plugins.checks.CheckStateTransition;
 import com.google.gerrit.plugins.checks.Checker;
-import com.google.gerrit.plugins.checks.CheckerQuery;
+import com.google.gerrit.plugins.checks.CheckerEvaluator;
+import com.google.gerrit.plugins.checks.CheckerRelevanceCache;
 import com.google.gerrit.plugins.checks.CheckerRef;
 import com.google.gerrit.plugins.checks.CheckerUuid;
 import com.google.gerrit.plugins.checks.Checkers;
@@ -40,41 +46,49 @@ import com.google.gerrit.plugins.checks.api.CombinedCheckState.CheckStateCount;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.Inject;
-import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import java.io.IOException;
-import java.util.List;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.stream.Stream;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.sha1.SHA1;
 
 /** Class to read checks from NoteDb. */
 @Singleton
 class NoteDbChecks implements Checks {
   private final ChangeData.Factory changeDataFactory;
-  private final CheckNotes.Factory checkNotesFactory;
+  private final ParsedChecksCache parsedChecksCache;
   private final Checkers checkers;
   private final CheckBackfiller checkBackfiller;
-  private final Provider<CheckerQuery> checkerQueryProvider;
+  private final CheckerRelevanceCache checkerRelevanceCache;
+  private final CheckerEvaluator checkerEvaluator;
+  private final SubmitRuleResultCache submitRuleResultCache;
   private final GitRepositoryManager repoManager;
 
   @Inject
   NoteDbChecks(
       ChangeData.Factory changeDataFactory,
-      CheckNotes.Factory checkNotesFactory,
+      ParsedChecksCache parsedChecksCache,
       Checkers checkers,
       CheckBackfiller checkBackfiller,
-      Provider<CheckerQuery> checkerQueryProvider,
+      CheckerRelevanceCache checkerRelevanceCache,
+      CheckerEvaluator checkerEvaluator,
+      SubmitRuleResultCache submitRuleResultCache,
       GitRepositoryManager repoManager) {
     this.changeDataFactory = changeDataFactory;
-    this.checkNotesFactory = checkNotesFactory;
+    this.parsedChecksCache = parsedChecksCache;
     this.checkers = checkers;
     this.checkBackfiller = checkBackfiller;
-    this.checkerQueryProvider = checkerQueryProvider;
+    this.checkerRelevanceCache = checkerRelevanceCache;
+    this.checkerEvaluator = checkerEvaluator;
+    this.submitRuleResultCache = submitRuleResultCache;
     this.repoManager = repoManager;
   }
 
@@ -82,22 +96,20 @@ class NoteDbChecks implements Checks {
   public ImmutableList<Check> getChecks(
       Project.NameKey projectName, PatchSet.Id psId, GetCheckOptions options)
       throws IOException, StorageException {
-    return getChecksFromNoteDb(projectName, psId, options);
+    return getChecks(changeDataFactory.create(projectName, psId.changeId()), psId, options);
   }
 
   @Override
   public Optional<Check> getCheck(CheckKey checkKey, GetCheckOptions options)
       throws StorageException, IOException {
-    // TODO(gerrit-team): Instead of reading the complete notes map, read just one note.
+    ChangeData changeData =
+        changeDataFactory.create(checkKey.repository(), checkKey.patchSet().changeId());
     Optional<Check> result =
-        getChecksFromNoteDb(checkKey.repository(), checkKey.patchSet(), GetCheckOptions.defaults())
-            .stream()
+        getChecks(changeData, checkKey.patchSet(), GetCheckOptions.defaults()).stream()
             .filter(c -> c.key().checkerUuid().equals(checkKey.checkerUuid()))
             .findAny();
 
     if (!result.isPresent() && options.backfillChecks()) {
-      ChangeData changeData =
-          changeDataFactory.create(checkKey.repository(), checkKey.patchSet().changeId());
       return checkBackfiller.getBackfilledCheckForRelevantChecker(
           checkKey.checkerUuid(), changeData, checkKey.patchSet());
     }
@@ -105,34 +117,58 @@ class NoteDbChecks implements Checks {
     return result;
   }
 
-  private ImmutableList<Check> getChecksFromNoteDb(
-      Project.NameKey repositoryName, PatchSet.Id psId, GetCheckOptions options)
+  @Override
+  public ImmutableList<Check> getChecks(
+      ChangeData changeData, PatchSet.Id psId, GetCheckOptions options)
       throws StorageException, IOException {
-    // TODO(gerrit-team): Instead of reading the complete notes map, read just one note.
-    ChangeData changeData = changeDataFactory.create(repositoryName, psId.changeId());
-    PatchSet patchSet = changeData.patchSet(psId);
-    if (patchSet == null) {
-      throw new StorageException("patch set not found: " + psId);
+    ImmutableList<Check> existingChecks = getExistingChecks(changeData, psId);
+    if (!options.backfillChecks()) {
+      return existingChecks;
     }
 
-    CheckNotes checkNotes = checkNotesFactory.create(changeData.change());
-    checkNotes.load();
+    ImmutableSortedSet<Checker> checkersOfProject = checkers.checkersOf(changeData.project());
+    return withBackfilledChecks(
+        existingChecks,
+        checkersOfProject,
+        checkerEvaluator.evaluate(checkersOfProject, changeData),
+        changeData,
+        psId);
+  }
 
-    ImmutableList<Check> existingChecks =
-        checkNotes.getChecks().getOrDefault(patchSet.commitId(), NoteDbCheckMap.empty()).checks
-            .entrySet().stream()
-            .map(e -> e.getValue().toCheck(repositoryName, psId, CheckerUuid.parse(e.getKey())))
-            .collect(toImmutableList());
+  private ImmutableList<Check> getExistingChecks(ChangeData changeData, PatchSet.Id psId) {
+    return parsedChecksCache.get(
+        changeData.project(), psId, getPatchSet(changeData, psId).commitId());
+  }
 
-    if (!options.backfillChecks()) {
-      return existingChecks;
+  private ImmutableList<Check> getExistingChecks(
+      ChangeData changeData, PatchSet.Id psId, ObjectId checksRefState) throws IOException {
+    return parsedChecksCache.get(
+        changeData.project(), psId, getPatchSet(changeData, psId).commitId(), checksRefState);
+  }
+
+  private static PatchSet getPatchSet(ChangeData changeData, PatchSet.Id psId) {
+    PatchSet patchSet = changeData.patchSet(psId);
+    if (patchSet == null) {
+      throw new StorageException("patch set not found: " + psId);
     }
+    return patchSet;
+  }
 
+  private ImmutableList<Check> withBackfilledChecks(
+      ImmutableList<Check> existingChecks,
+      Collection<Checker> checkersOfProject,
+      CheckerEvaluator.Result evaluation,
+      ChangeData changeData,
+      PatchSet.Id psId) {
+    ImmutableSet<CheckerUuid> checkersWithExistingChecks =
+        existingChecks.stream().map(c -> c.key().checkerUuid()).collect(toImmutableSet());
     ImmutableList<Checker> checkersForBackfiller =
-        getCheckersForBackfiller(repositoryName, existingChecks);
+        checkersOfProject.stream()
+            .filter(c -> !checkersWithExistingChecks.contains(c.getUuid()))
+            .collect(toImmutableList());
     ImmutableList<Check> backfilledChecks =
         checkBackfiller.getBackfilledChecksForRelevantCheckers(
-            checkersForBackfiller, changeData, psId);
+            checkersForBackfiller, evaluation.relevantCheckers(), changeData, psId);
 
     return Stream.concat(existingChecks.stream(), backfilledChecks.stream())
         .collect(toImmutableList());
@@ -141,78 +177,272 @@ class NoteDbChecks implements Checks {
   @Override
   public CombinedCheckState getCombinedCheckState(
       Project.NameKey projectName, PatchSet.Id patchSetId) throws IOException, StorageException {
+    return getCombinedCheckState(
+        changeDataFactory.create(projectName, patchSetId.changeId()), patchSetId);
+  }
+
+  @Override
+  public CombinedCheckState getCombinedCheckState(ChangeData changeData, PatchSet.Id patchSetId)
+      throws IOException, StorageException {
     ImmutableListMultimap<CheckState, Boolean> statesAndRequired =
-        getStatesAndRequiredMap(projectName, patchSetId);
+        getStatesAndRequiredMap(changeData, patchSetId);
     return CombinedCheckState.combine(statesAndRequired);
   }
 
+  @Override
+  public CheckStateCountSnapshot getCheckStateCount(ChangeData changeData, PatchSet.Id patchSetId)
+      throws IOException, StorageException {
+    // Read the checks at exactly the state of the checks ref that is recorded in the snapshot, so
+    // that later writes based on this state can be applied to the counts incrementally.
+    ObjectId checksRefState = readChecksRefState(changeData.project(), changeData.getId());
+    return computeCheckStateCount(
+        changeData,
+        patchSetId,
+        checksRefState,
+        getExistingChecks(changeData, patchSetId, checksRefState),
+        checkers.checkersOf(changeData.project()));
+  }
+
+  @Override
+  public boolean isCheckStateCountUpToDate(
+      ChangeData changeData, CheckStateCountSnapshot snapshot) throws IOException {
+    return snapshot
+            .checksRefState()
+            .equals(readChecksRefState(changeData.project(), changeData.getId()))
+        && inputsUnchanged(snapshot, changeData, checkers.checkersOf(changeData.project()));
+  }
+
+  @Override
+  public ImmutableMap<PatchSet.Id, CheckStateCountSnapshot> getCheckStateCounts(
+      Collection<ChangeData> changes) throws IOException, StorageException {
+    Map<PatchSet.Id, CheckStateCountSnapshot> result = new LinkedHashMap<>();
+    for (Map.Entry<Project.NameKey, Collection<ChangeData>> e :
+        Multimaps.index(changes, ChangeData::project).asMap().entrySet()) {
+      Map<PatchSet.Id, ObjectId> revisions = new LinkedHashMap<>();
+      for (ChangeData changeData : e.getValue()) {
+        PatchSet.Id psId = changeData.change().currentPatchSetId();
+        revisions.put(psId, getPatchSet(changeData, psId).commitId());
+      }
+      ImmutableMap<PatchSet.Id, ParsedChecksCache.ChecksAtState> checksByPatchSet =
+          parsedChecksCache.getAll(e.getKey(), revisions);
+      ImmutableSortedSet<Checker> checkersOfProject = checkers.checkersOf(e.getKey());
+      for (ChangeData changeData : e.getValue()) {
+        PatchSet.Id psId = changeData.change().currentPatchSetId();
+        ParsedChecksCache.ChecksAtState checks = checksByPatchSet.get(psId);
+        result.put(
+            psId,
+            computeCheckStateCount(
+                changeData, psId, checks.checksRefState(), checks.checks(), checkersOfProject));
+      }
+    }
+    return ImmutableMap.copyOf(result);
+  }
+
+  private CheckStateCountSnapshot computeCheckStateCount(
+      ChangeData changeData,
+      PatchSet.Id patchSetId,
+      ObjectId checksRefState,
+      ImmutableList<Check> existingChecks,
+      ImmutableSortedSet<Checker> checkersOfProject) {
+    CheckerEvaluator.Result evaluation = checkerEvaluator.evaluate(checkersOfProject, changeData);
+    ImmutableList<Check> checks =
+        withBackfilledChecks(existingChecks, checkersOfProject, evaluation, changeData, patchSetId);
+    return CheckStateCountSnapshot.create(
+        CheckStateCount.create(getStatesAndRequiredMap(checks, evaluation)),
+        checksRefState,
+        computeInputsId(changeData, checkersOfProject));
+  }
+
+  @Override
+  public Optional<CheckStateCountSnapshot> updateCheckStateCount(
+      ChangeData changeData,
+      PatchSet.Id patchSetId,
+      CheckStateCountSnapshot snapshot,
+      ObjectId oldChecksRefState,
+      ObjectId newChecksRefState,
+      Collection<CheckStateTransition> transitions)
+      throws IOException, StorageException {
+    if (!snapshot.checksRefState().equals(oldChecksRefState)) {
+      // The counts were computed from a different state of the checks, e.g. because of a
+      // concurrent write.
+      return Optional.empty();
+    }
+    ImmutableSortedSet<Checker> checkersOfProject = checkers.checkersOf(changeData.project());
+    if (!inputsUnchanged(snapshot, changeData, checkersOfProject)) {
+      // The change or the checkers were updated, which may change which checks are backfilled or
+      // required.
+      return Optional.empty();
+    }
+
+    ImmutableSet<CheckerUuid> checkerUuids =
+        checkersOfProject.stream().map(Checker::getUuid).collect(toImmutableSet());
+    CheckerEvaluator.Result evaluation = checkerEvaluator.evaluate(checkersOfProject, changeData);
+    boolean backfilled = patchSetId.equals(changeData.change().currentPatchSetId());
+    CheckStateCount checkStateCount = snapshot.checkStateCount();
+    for (CheckStateTransition transition : transitions) {
+      CheckerUuid checkerUuid = transition.checkerUuid();
+      boolean required = evaluation.requiredCheckers().contains(checkerUuid);
+      if (transition.oldState().isPresent()) {
+        checkStateCount = checkStateCount.remove(transition.oldState().get(), required);
+      } else if (backfilled
+          && checkerUuids.contains(checkerUuid)
+          && evaluation.relevantCheckers().contains(checkerUuid)) {
+        // The new check replaces a backfilled check.
+        checkStateCount = checkStateCount.remove(CheckState.NOT_STARTED, required);
+      }
+      checkStateCount = checkStateCount.add(transition.newState(), required);
+    }
+
+    if (checkStateCount.failedRequiredCount() < 0
+        || checkStateCount.failedOptionalCount() < 0
+        || checkStateCount.inProgressRequiredCount() < 0
+        || checkStateCount.inProgressOptionalCount() < 0
+        || checkStateCount.successfulCount() < 0) {
+      // The transitions don't match the counts, the counts must be recomputed.
+      return Optional.empty();
+    }
+    return Optional.of(
+        CheckStateCountSnapshot.create(checkStateCount, newChecksRefState, snapshot.inputsId()));
+  }
+
+  private boolean inputsUnchanged(
+      CheckStateCountSnapshot snapshot,
+      ChangeData changeData,
+      Collection<Checker> checkersOfProject) {
+    return !snapshot.dependsOnExternalState()
+        && snapshot.inputsId().equals(computeInputsId(changeData, checkersOfProject));
+  }
+
+  /**
+   * Computes a SHA-1 over the inputs, besides the checks themselves, from which the counts of the
+   * check states are computed: the change, which determines the relevance of checkers, and the
+   * checkers of the repository, which determine which checks are backfilled and required.
+   *
+   * <p>Returns {@link ObjectId#zeroId()} if the relevance of a checker also depends on external
+   * state (see {@link CheckerEvaluator#dependsOnExternalState(Collection)}), so that the counts are
+   * never considered up to date.
+   */
+  private ObjectId computeInputsId(ChangeData changeData, Collection<Checker> checkersOfProject) {
+    if (checkerEvaluator.dependsOnExternalState(checkersOfProject)) {
+      return ObjectId.zeroId();
+    }
+    SHA1 sha1 = SHA1.newInstance();
+    byte[] buf = new byte[Constants.OBJECT_ID_LENGTH];
+    changeData.notes().getMetaId().copyRawTo(buf, 0);
+    sha1.update(buf);
+    computeCheckersId(checkersOfProject).copyRawTo(buf, 0);
+    sha1.update(buf);
+    return sha1.toObjectId();
+  }
+
+  /** Computes a SHA-1 over the UUIDs and ref states of the checkers of a repository. */
+  private static ObjectId computeCheckersId(Collection<Checker> checkersOfProject) {
+    SHA1 sha1 = SHA1.newInstance();
+    byte[] buf = new byte[Constants.OBJECT_ID_LENGTH];
+    for (Checker checker : checkersOfProject) {
+      sha1.update(checker.getUuid().get().getBytes(UTF_8));
+      checker.getRefState().copyRawTo(buf, 0);
+      sha1.update(buf);
+    }
+    return sha1.toObjectId();
+  }
+
   @Override
   public boolean areAllRequiredCheckersPassing(Project.NameKey projectName, PatchSet.Id patchSetId)
       throws IOException, StorageException {
-    ImmutableListMultimap<CheckState, Boolean> statesAndRequired =
-        getStatesAndRequiredMap(projectName, patchSetId);
-    CheckStateCount checkStateCount = CheckStateCount.create(statesAndRequired);
-    return checkStateCount.failedRequiredCount() == 0
-        && checkStateCount.inProgressRequiredCount() == 0;
+    return areAllRequiredCheckersPassing(
+        changeDataFactory.create(projectName, patchSetId.changeId()), patchSetId);
+  }
+
+  @Override
+  public boolean areAllRequiredCheckersPassing(ChangeData changeData, PatchSet.Id patchSetId)
+      throws IOException, StorageException {
+    // Only refs are read to look up the cached result. The checks are read at exactly the state of
+    // the checks ref that is part of the cache key.
+    ObjectId checksRefState = readChecksRefState(changeData.project(), changeData.getId());
+    ImmutableSortedSet<Checker> checkersOfProject = checkers.checkersOf(changeData.project());
+    Callable<Boolean> loader =
+        () -> {
+          CheckStateCount checkStateCount =
+              computeCheckStateCount(
+                      changeData,
+                      patchSetId,
+                      checksRefState,
+                      getExistingChecks(changeData, patchSetId, checksRefState),
+                      checkersOfProject)
+                  .checkStateCount();
+          return checkStateCount.failedRequiredCount() == 0
+              && checkStateCount.inProgressRequiredCount() == 0;
+        };
+    if (checkerEvaluator.dependsOnExternalState(checkersOfProject)) {
+      // The result may change without an update of the checks, the change or the checkers.
+      return submitRuleResultCache.getUncached(loader);
+    }
+
+    SubmitRuleResultCache.Key key =
+        SubmitRuleResultCache.Key.create(
+            changeData.project(),
+            patchSetId,
+            checksRefState,
+            changeData.notes().getMetaId(),
+            computeCheckersId(checkersOfProject));
+    return submitRuleResultCache.get(key, loader);
   }
 
   @Override
   public String getETag(Project.NameKey projectName, Change.Id changeId) throws IOException {
-    try (Repository repo = repoManager.openRepository(projectName);
-        RevWalk rw = new RevWalk(repo)) {
+    return readChecksRefState(projectName, changeId).getName();
+  }
+
+  private ObjectId readChecksRefState(Project.NameKey projectName, Change.Id changeId)
+      throws IOException {
+    try (Repository repo = repoManager.openRepository(projectName)) {
       Ref checkRef = repo.getRefDatabase().exactRef(CheckerRef.checksRef(changeId));
-      return checkRef != null ? checkRef.getObjectId().getName() : ObjectId.zeroId().getName();
+      return checkRef != null ? checkRef.getObjectId() : ObjectId.zeroId();
     }
   }
 
   private ImmutableListMultimap<CheckState, Boolean> getStatesAndRequiredMap(
-      Project.NameKey projectName, PatchSet.Id patchSetId) throws IOException, StorageException {
-    ImmutableMap<String, Checker> allCheckersOfProject =
-        checkers.checkersOf(projectName).stream()
-            .collect(ImmutableMap.toImmutableMap(c -> c.getUuid().get(), c -> c));
+      ChangeData changeData, PatchSet.Id patchSetId) throws IOException, StorageException {
+    // The relevant and the required checkers are computed in a single evaluation of the queries of
+    // all checkers of the project.
+    ImmutableSortedSet<Checker> checkersOfProject = checkers.checkersOf(changeData.project());
+    CheckerEvaluator.Result evaluation = checkerEvaluator.evaluate(checkersOfProject, changeData);
 
     // Always backfilling checks to have a meaningful "CombinedCheckState" even when there are some
     // or all checks missing.
-    ImmutableMap<String, Check> checks =
-        getChecks(projectName, patchSetId, GetCheckOptions.withBackfilling()).stream()
-            .collect(ImmutableMap.toImmutableMap(c -> c.key().checkerUuid().get(), c -> c));
+    ImmutableList<Check> checks =
+        withBackfilledChecks(
+            getExistingChecks(changeData, patchSetId),
+            checkersOfProject,
+            evaluation,
+            changeData,
+            patchSetId);
+    return getStatesAndRequiredMap(checks, evaluation);
+  }
 
+  private static ImmutableListMultimap<CheckState, Boolean> getStatesAndRequiredMap(
+      ImmutableList<Check> checks, CheckerEvaluator.Result evaluation) {
     ImmutableListMultimap.Builder<CheckState, Boolean> statesAndRequired =
         ImmutableListMultimap.builder();
-
-    for (Map.Entry<String, Check> entry : checks.entrySet()) {
-      String checkerUuid = entry.getKey();
-      Check check = entry.getValue();
-
-      Checker checker = allCheckersOfProject.get(checkerUuid);
-      if (checker == null) {
-        // A not-relevant check.
-        statesAndRequired.put(check.state(), false);
-        continue;
-      }
-
-      boolean isRequired = isRequiredForSubmit(checker, patchSetId.changeId());
-      statesAndRequired.put(check.state(), isRequired);
+    for (Check check : checks) {
+      // Checks of checkers that don't apply to the project are never required.
+      statesAndRequired.put(
+          check.state(), evaluation.requiredCheckers().contains(check.key().checkerUuid()));
     }
-
     return statesAndRequired.build();
   }
 
   @Override
   public boolean isRequiredForSubmit(Checker checker, Change.Id changeId) {
-    ChangeData changeData = changeDataFactory.create(checker.getRepository(), changeId);
+    return isRequiredForSubmit(
+        checker, changeDataFactory.create(checker.getRepository(), changeId));
+  }
 
+  @Override
+  public boolean isRequiredForSubmit(Checker checker, ChangeData changeData) {
     return checker.getStatus() == CheckerStatus.ENABLED
         && checker.isRequired()
-        && checkerQueryProvider.get().isCheckerRelevant(checker, changeData);
-  }
-
-  private ImmutableList<Checker> getCheckersForBackfiller(
-      Project.NameKey projectName, List<Check> existingChecks) throws IOException {
-    ImmutableSet<CheckerUuid> checkersWithExistingChecks =
-        existingChecks.stream().map(c -> c.key().checkerUuid()).collect(toImmutableSet());
-    return checkers.checkersOf(projectName).stream()
-        .filter(c -> !checkersWithExistingChecks.contains(c.getUuid()))
-        .collect(toImmutableList());
+        && checkerRelevanceCache.isRelevant(checker, changeData);
   }
 }
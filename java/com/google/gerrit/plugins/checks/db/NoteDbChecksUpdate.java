@@ -14,40 +14,54 @@
 
 package com.google.gerrit.plugins.checks.db;
 
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.gerrit.plugins.checks.CheckerRef.checksRef;
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
 import com.google.common.base.Throwables;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Streams;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
 import com.google.gerrit.exceptions.DuplicateKeyException;
 import com.google.gerrit.git.RefUpdateUtil;
 import com.google.gerrit.plugins.checks.Check;
 import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckStateTransition;
 import com.google.gerrit.plugins.checks.CheckUpdate;
 import com.google.gerrit.plugins.checks.CheckerRef;
 import com.google.gerrit.plugins.checks.CheckerUuid;
 import com.google.gerrit.plugins.checks.Checkers;
 import com.google.gerrit.plugins.checks.ChecksStorageUpdate;
 import com.google.gerrit.plugins.checks.CombinedCheckStateCache;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.db.CheckUpdateGroupCommitQueue.PendingCheckUpdate;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.account.AccountState;
 import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
 import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.notedb.ChangeNoteUtil;
 import com.google.gerrit.server.update.RetryHelper;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
@@ -62,7 +76,7 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
     NoteDbChecksUpdate createWithServerIdent();
   }
 
-  private enum Operation {
+  enum Operation {
     CREATE,
     UPDATE
   }
@@ -75,6 +89,8 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
   private final Optional<IdentifiedUser> currentUser;
   private final Checkers checkers;
   private final CombinedCheckStateCache combinedCheckStateCache;
+  private final CheckUpdateGroupCommitQueue groupCommitQueue;
+  private final CheckNoteSerializer checkNoteSerializer;
 
   @AssistedInject
   NoteDbChecksUpdate(
@@ -84,6 +100,8 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
       ChangeNoteUtil noteUtil,
       Checkers checkers,
       CombinedCheckStateCache combinedCheckStateCache,
+      CheckUpdateGroupCommitQueue groupCommitQueue,
+      CheckNoteSerializer checkNoteSerializer,
       @GerritPersonIdent PersonIdent personIdent) {
     this(
         repoManager,
@@ -92,6 +110,8 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
         noteUtil,
         checkers,
         combinedCheckStateCache,
+        groupCommitQueue,
+        checkNoteSerializer,
         personIdent,
         Optional.empty());
   }
@@ -104,6 +124,8 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
       ChangeNoteUtil noteUtil,
       Checkers checkers,
       CombinedCheckStateCache combinedCheckStateCache,
+      CheckUpdateGroupCommitQueue groupCommitQueue,
+      CheckNoteSerializer checkNoteSerializer,
       @GerritPersonIdent PersonIdent personIdent,
       @Assisted IdentifiedUser currentUser) {
     this(
@@ -113,6 +135,8 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
         noteUtil,
         checkers,
         combinedCheckStateCache,
+        groupCommitQueue,
+        checkNoteSerializer,
         personIdent,
         Optional.of(currentUser));
   }
@@ -124,6 +148,8 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
       ChangeNoteUtil noteUtil,
       Checkers checkers,
       CombinedCheckStateCache combinedCheckStateCache,
+      CheckUpdateGroupCommitQueue groupCommitQueue,
+      CheckNoteSerializer checkNoteSerializer,
       @GerritPersonIdent PersonIdent personIdent,
       Optional<IdentifiedUser> currentUser) {
     this.repoManager = repoManager;
@@ -134,11 +160,18 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
     this.currentUser = currentUser;
     this.personIdent = personIdent;
     this.combinedCheckStateCache = combinedCheckStateCache;
+    this.groupCommitQueue = groupCommitQueue;
+    this.checkNoteSerializer = checkNoteSerializer;
   }
 
   @Override
   public Check createCheck(CheckKey checkKey, CheckUpdate checkUpdate)
       throws DuplicateKeyException, IOException {
+    if (groupCommitQueue.isEnabled()) {
+      return groupCommitQueue.submit(
+          checkKey, checkUpdate, Operation.CREATE, currentUser, this::writeGroup);
+    }
+
     try {
       return retryHelper
           .pluginUpdate(
@@ -154,6 +187,16 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
 
   @Override
   public Check updateCheck(CheckKey checkKey, CheckUpdate checkUpdate) throws IOException {
+    if (groupCommitQueue.isEnabled()) {
+      try {
+        return groupCommitQueue.submit(
+            checkKey, checkUpdate, Operation.UPDATE, currentUser, this::writeGroup);
+      } catch (DuplicateKeyException e) {
+        // Updates never create checks.
+        throw new IllegalStateException(e);
+      }
+    }
+
     try {
       return retryHelper
           .pluginUpdate(
@@ -166,6 +209,28 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
     }
   }
 
+  @Override
+  public ImmutableList<Check> upsertChecks(
+      Project.NameKey repository,
+      PatchSet.Id patchSetId,
+      Map<CheckerUuid, CheckUpdate> checkUpdates)
+      throws IOException {
+    if (checkUpdates.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    try {
+      return retryHelper
+          .pluginUpdate(
+              "upsertChecks", () -> upsertChecksInNoteDb(repository, patchSetId, checkUpdates))
+          .call();
+    } catch (Exception e) {
+      Throwables.throwIfUnchecked(e);
+      Throwables.throwIfInstanceOf(e, IOException.class);
+      throw new IOException(e);
+    }
+  }
+
   private Check upsertCheckInNoteDb(CheckKey checkKey, CheckUpdate checkUpdate, Operation operation)
       throws IOException, ConfigInvalidException, DuplicateKeyException {
     if (operation == Operation.CREATE) {
@@ -187,13 +252,26 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
         cb = commitBuilder(message, parent);
       }
 
-      boolean dirty =
-          updateNotesMap(checkKey, checkUpdate, repo, rw, objectInserter, parent, cb, operation);
+      ObjectId commitId = getPatchSetCommitId(repo, checkKey.patchSet());
+
+      // Read a fresh copy of the notes map, but only parse the note of the updated revision. Notes
+      // of other revisions are kept as they are and their blobs are reused when writing the new
+      // tree.
+      NoteMap noteMap = readNoteMap(rw, parent);
+      NoteDbCheckMap checksForRevision =
+          readChecksForRevision(rw.getObjectReader(), noteMap, commitId);
+      Optional<CheckState> oldState = getState(checksForRevision, checkKey.checkerUuid());
+      boolean dirty = applyUpdate(checkKey, checkUpdate, checksForRevision, operation);
+
+      // The check is returned from memory, there is no need to read it back from the new tree.
+      Check check = checksForRevision.checks.get(checkKey.checkerUuid().get()).toCheck(checkKey);
       if (!dirty) {
         // This update is a NoOp, so omit writing a commit with the same tree.
-        return readSingleCheck(checkKey, repo, rw, checkRef.getObjectId());
+        return check;
       }
 
+      writeChecksForRevision(noteMap, objectInserter, commitId, checksForRevision);
+      cb.setTreeId(noteMap.writeTree(objectInserter));
       ObjectId newCommitId = objectInserter.insert(cb);
       objectInserter.flush();
 
@@ -206,13 +284,220 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
       refUpdate.update();
       RefUpdateUtil.checkResult(refUpdate);
 
-      combinedCheckStateCache.updateIfNecessary(checkKey.repository(), checkKey.patchSet());
+      combinedCheckStateCache.applyTransitions(
+          checkKey.repository(),
+          checkKey.patchSet(),
+          parent,
+          newCommitId,
+          ImmutableList.of(
+              CheckStateTransition.create(checkKey.checkerUuid(), oldState, check.state())));
       gitRefUpdated.fire(
           checkKey.repository(), refUpdate, currentUser.map(user -> user.state()).orElse(null));
-      return readSingleCheck(checkKey, repo, rw, newCommitId);
+      return check;
     }
   }
 
+  private ImmutableList<Check> upsertChecksInNoteDb(
+      Project.NameKey repository,
+      PatchSet.Id patchSetId,
+      Map<CheckerUuid, CheckUpdate> checkUpdates)
+      throws IOException, ConfigInvalidException {
+    try (Repository repo = repoManager.openRepository(repository);
+        ObjectInserter objectInserter = repo.newObjectInserter();
+        RevWalk rw = new RevWalk(repo)) {
+      Ref checkRef = repo.getRefDatabase().exactRef(checksRef(patchSetId.changeId()));
+      ObjectId parent = checkRef == null ? ObjectId.zeroId() : checkRef.getObjectId();
+      ObjectId commitId = getPatchSetCommitId(repo, patchSetId);
+
+      // Read a fresh copy of the notes map, but only parse the note of the updated revision.
+      NoteMap noteMap = readNoteMap(rw, parent);
+      NoteDbCheckMap checksForRevision =
+          readChecksForRevision(rw.getObjectReader(), noteMap, commitId);
+
+      Timestamp now = Timestamp.from(personIdent.getWhen().toInstant());
+      List<CheckStateTransition> transitions = new ArrayList<>();
+      for (Map.Entry<CheckerUuid, CheckUpdate> e : checkUpdates.entrySet()) {
+        NoteDbCheck check = checksForRevision.checks.get(e.getKey().get());
+        if (check == null) {
+          assertCheckerIsPresent(e.getKey());
+          NoteDbCheck newCheck = NoteDbCheck.createInitialNoteDbCheck(e.getValue());
+          newCheck.created = now;
+          newCheck.updated = now;
+          checksForRevision.checks.put(e.getKey().get(), newCheck);
+          transitions.add(
+              CheckStateTransition.create(e.getKey(), Optional.empty(), newCheck.state));
+        } else {
+          CheckState oldState = check.state;
+          if (check.applyUpdate(e.getValue())) {
+            check.updated = now;
+            transitions.add(
+                CheckStateTransition.create(e.getKey(), Optional.of(oldState), check.state));
+          }
+        }
+      }
+
+      // The checks are returned from memory, there is no need to read them back from the new
+      // tree.
+      ImmutableList.Builder<Check> checks = ImmutableList.builder();
+      for (CheckerUuid checkerUuid : checkUpdates.keySet()) {
+        NoteDbCheck check = checksForRevision.checks.get(checkerUuid.get());
+        checks.add(check.toCheck(repository, patchSetId, checkerUuid));
+      }
+      if (transitions.isEmpty()) {
+        // This update is a NoOp, so omit writing a commit with the same tree.
+        return checks.build();
+      }
+
+      StringBuilder message = new StringBuilder("Upsert checks\n\n");
+      checkUpdates.keySet().forEach(uuid -> message.append("Checker: ").append(uuid).append('\n'));
+      CommitBuilder cb = commitBuilder(message.toString(), parent);
+      writeChecksForRevision(noteMap, objectInserter, commitId, checksForRevision);
+      cb.setTreeId(noteMap.writeTree(objectInserter));
+      ObjectId newCommitId = objectInserter.insert(cb);
+      objectInserter.flush();
+
+      RefUpdate refUpdate = repo.updateRef(checksRef(patchSetId.changeId()));
+      refUpdate.setExpectedOldObjectId(parent);
+      refUpdate.setNewObjectId(newCommitId);
+      refUpdate.setRefLogIdent(personIdent);
+      refUpdate.setRefLogMessage("Upsert checks", false);
+      refUpdate.update();
+      RefUpdateUtil.checkResult(refUpdate);
+
+      combinedCheckStateCache.applyTransitions(
+          repository, patchSetId, parent, newCommitId, transitions);
+      gitRefUpdated.fire(repository, refUpdate, currentUser.map(user -> user.state()).orElse(null));
+      return checks.build();
+    }
+  }
+
+  private void writeGroup(ImmutableList<PendingCheckUpdate> group) throws Exception {
+    retryHelper.pluginUpdate("writeCheckUpdateGroup", () -> writeGroupInNoteDb(group)).call();
+  }
+
+  private Void writeGroupInNoteDb(ImmutableList<PendingCheckUpdate> group)
+      throws IOException, ConfigInvalidException {
+    // All updates of a group belong to the same change.
+    Project.NameKey repository = group.get(0).key.repository();
+    Change.Id changeId = group.get(0).key.patchSet().changeId();
+    try (Repository repo = repoManager.openRepository(repository);
+        ObjectInserter objectInserter = repo.newObjectInserter();
+        RevWalk rw = new RevWalk(repo)) {
+      Ref checkRef = repo.getRefDatabase().exactRef(checksRef(changeId));
+      ObjectId parent = checkRef == null ? ObjectId.zeroId() : checkRef.getObjectId();
+
+      // Read a fresh copy of the notes map, but only parse the notes of the updated revisions.
+      NoteMap noteMap = readNoteMap(rw, parent);
+      CheckRevisionNoteMap revisionNotes =
+          CheckRevisionNoteMap.load(noteUtil.getChangeNoteJson(), rw.getObjectReader(), noteMap);
+      Timestamp now = Timestamp.from(personIdent.getWhen().toInstant());
+      // State transitions per updated patch set, from the state before the first update of a check
+      // in the group to the state after the last one.
+      Map<PatchSet.Id, Map<CheckerUuid, CheckStateTransition>> transitions =
+          new LinkedHashMap<>();
+      for (PendingCheckUpdate pending : group) {
+        CheckKey checkKey = pending.key;
+        String checkerUuid = checkKey.checkerUuid().get();
+        try {
+          ObjectId commitId = getPatchSetCommitId(repo, checkKey.patchSet());
+          NoteDbCheckMap checksForRevision = revisionNotes.get(commitId);
+          NoteDbCheck check = checksForRevision.checks.get(checkerUuid);
+          if (check == null) {
+            if (pending.operation == Operation.UPDATE) {
+              throw new IOException(String.format("checker %s not found", checkerUuid));
+            }
+            assertCheckerIsPresent(checkKey.checkerUuid());
+            check = NoteDbCheck.createInitialNoteDbCheck(pending.update);
+            check.created = now;
+            check.updated = now;
+            checksForRevision.checks.put(checkerUuid, check);
+            addTransition(transitions, checkKey, Optional.empty(), check.state);
+          } else if (pending.operation == Operation.CREATE) {
+            throw new DuplicateKeyException(
+                String.format("checker %s already exists", checkKey.checkerUuid()));
+          } else {
+            CheckState oldState = check.state;
+            if (check.applyUpdate(pending.update)) {
+              check.updated = now;
+              addTransition(transitions, checkKey, Optional.of(oldState), check.state);
+            }
+          }
+          // Snapshot the check now, later updates of the group may modify it further.
+          pending.setResult(check.toCheck(checkKey));
+        } catch (DuplicateKeyException | IOException | ConfigInvalidException e) {
+          pending.setFailure(e);
+        }
+      }
+
+      if (transitions.isEmpty()) {
+        // All updates of the group are NoOps, so omit writing a commit with the same tree.
+        return null;
+      }
+
+      // The group may contain updates of different users, all of them are recorded.
+      ImmutableSet<Account.Id> accountIds =
+          group.stream()
+              .flatMap(p -> Streams.stream(p.user))
+              .map(IdentifiedUser::getAccountId)
+              .collect(toImmutableSet());
+      String message =
+          Stream.concat(
+                  group.stream().map(p -> "Checker: " + p.key.checkerUuid()),
+                  accountIds.stream().map(accountId -> "Updated-by: " + accountId.get()))
+              .distinct()
+              .collect(joining("\n", "Update checks\n\n", ""));
+      CommitBuilder cb = commitBuilder(message, parent);
+      for (Map.Entry<ObjectId, NoteDbCheckMap> e : revisionNotes.getParsedRevisions().entrySet()) {
+        writeChecksForRevision(noteMap, objectInserter, e.getKey(), e.getValue());
+      }
+      cb.setTreeId(noteMap.writeTree(objectInserter));
+      ObjectId newCommitId = objectInserter.insert(cb);
+      objectInserter.flush();
+
+      RefUpdate refUpdate = repo.updateRef(checksRef(changeId));
+      refUpdate.setExpectedOldObjectId(parent);
+      refUpdate.setNewObjectId(newCommitId);
+      refUpdate.setRefLogIdent(personIdent);
+      refUpdate.setRefLogMessage("Update checks", false);
+      refUpdate.update();
+      RefUpdateUtil.checkResult(refUpdate);
+
+      transitions.forEach(
+          (psId, transitionsOfPatchSet) ->
+              combinedCheckStateCache.applyTransitions(
+                  repository, psId, parent, newCommitId, transitionsOfPatchSet.values()));
+      // The ref update is only attributed to a user if the user did all updates of the group.
+      AccountState updater =
+          accountIds.size() == 1 && group.stream().allMatch(p -> p.user.isPresent())
+              ? group.get(0).user.get().state()
+              : null;
+      gitRefUpdated.fire(repository, refUpdate, updater);
+      return null;
+    }
+  }
+
+  private static void addTransition(
+      Map<PatchSet.Id, Map<CheckerUuid, CheckStateTransition>> transitions,
+      CheckKey checkKey,
+      Optional<CheckState> oldState,
+      CheckState newState) {
+    Map<CheckerUuid, CheckStateTransition> transitionsOfPatchSet =
+        transitions.computeIfAbsent(checkKey.patchSet(), psId -> new LinkedHashMap<>());
+    CheckStateTransition previous = transitionsOfPatchSet.get(checkKey.checkerUuid());
+    transitionsOfPatchSet.put(
+        checkKey.checkerUuid(),
+        CheckStateTransition.create(
+            checkKey.checkerUuid(),
+            previous != null ? previous.oldState() : oldState,
+            newState));
+  }
+
+  private static Optional<CheckState> getState(
+      NoteDbCheckMap checksForRevision, CheckerUuid checkerUuid) {
+    NoteDbCheck check = checksForRevision.checks.get(checkerUuid.get());
+    return check != null ? Optional.of(check.state) : Optional.empty();
+  }
+
   private void assertCheckerIsPresent(CheckerUuid checkerUuid)
       throws ConfigInvalidException, IOException {
     checkers
@@ -220,33 +505,17 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
         .orElseThrow(() -> new IOException(String.format("checker %s not found", checkerUuid)));
   }
 
-  private boolean updateNotesMap(
+  /**
+   * Applies an update to the checks of a revision.
+   *
+   * @return whether the checks of the revision were modified
+   */
+  private boolean applyUpdate(
       CheckKey checkKey,
       CheckUpdate checkUpdate,
-      Repository repo,
-      RevWalk rw,
-      ObjectInserter ins,
-      ObjectId curr,
-      CommitBuilder cb,
+      NoteDbCheckMap checksForRevision,
       Operation operation)
-      throws ConfigInvalidException, IOException, DuplicateKeyException {
-    Ref patchSetRef = repo.exactRef(checkKey.patchSet().toRefName());
-    if (patchSetRef == null) {
-      throw new IOException(String.format("patchset %s not found", checkKey.patchSet()));
-    }
-    ObjectId commitId = patchSetRef.getObjectId();
-
-    // Read a fresh copy of the notes map
-    Map<ObjectId, NoteDbCheckMap> newNotes = getRevisionNoteByCommitId(rw, curr);
-    if (!newNotes.containsKey(commitId)) {
-      if (operation == Operation.UPDATE) {
-        throw new IOException(String.format("checker %s not found", checkKey.checkerUuid()));
-      }
-
-      newNotes.put(commitId, NoteDbCheckMap.empty());
-    }
-
-    NoteDbCheckMap checksForRevision = newNotes.get(commitId);
+      throws IOException, DuplicateKeyException {
     if (!checksForRevision.checks.containsKey(checkKey.checkerUuid().get())) {
       if (operation == Operation.UPDATE) {
         throw new IOException(String.format("checker %s not found", checkKey.checkerUuid()));
@@ -257,7 +526,6 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
       newCheck.created = Timestamp.from(personIdent.getWhen().toInstant());
       newCheck.updated = newCheck.created;
       checksForRevision.checks.put(checkKey.checkerUuid().get(), newCheck);
-      writeNotesMap(newNotes, cb, ins);
       return true;
     } else if (operation == Operation.CREATE) {
       throw new DuplicateKeyException(
@@ -271,64 +539,43 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
       return false;
     }
     modifiedCheck.updated = Timestamp.from(personIdent.getWhen().toInstant());
-
-    writeNotesMap(newNotes, cb, ins);
     return true;
   }
 
-  private void writeNotesMap(
-      Map<ObjectId, NoteDbCheckMap> notesMap, CommitBuilder cb, ObjectInserter ins)
-      throws IOException {
-    CheckRevisionNoteMap output = CheckRevisionNoteMap.emptyMap();
-    for (Map.Entry<ObjectId, NoteDbCheckMap> e : notesMap.entrySet()) {
-      ObjectId id = e.getKey();
-      byte[] data = toData(e.getValue());
-      if (data.length != 0) {
-        ObjectId dataBlob = ins.insert(OBJ_BLOB, data);
-        output.noteMap.set(id, dataBlob);
-      }
+  private static NoteMap readNoteMap(RevWalk rw, ObjectId curr) throws IOException {
+    if (curr.equals(ObjectId.zeroId())) {
+      return NoteMap.newEmptyMap();
     }
-    cb.setTreeId(output.noteMap.writeTree(ins));
+    return NoteMap.read(rw.getObjectReader(), rw.parseCommit(curr));
   }
 
-  private Map<ObjectId, NoteDbCheckMap> getRevisionNoteByCommitId(RevWalk rw, ObjectId curr)
+  /**
+   * Parses the checks of a single revision from the given note map.
+   *
+   * @return the checks of the revision, an empty (mutable) map if the revision has no checks yet
+   */
+  private NoteDbCheckMap readChecksForRevision(
+      ObjectReader reader, NoteMap noteMap, ObjectId commitId)
       throws ConfigInvalidException, IOException {
-    CheckRevisionNoteMap existingNotes = getRevisionNoteMap(rw, curr);
-
-    // Generate a list with all current checks keyed by patch set
-    Map<ObjectId, NoteDbCheckMap> newNotes =
-        Maps.newHashMapWithExpectedSize(existingNotes.revisionNotes.size());
-    for (Map.Entry<ObjectId, CheckRevisionNote> e : existingNotes.revisionNotes.entrySet()) {
-      newNotes.put(e.getKey(), e.getValue().getOnlyEntity());
-    }
-    return newNotes;
+    return CheckRevisionNoteMap.parseChecksForRevision(
+        noteUtil.getChangeNoteJson(), reader, noteMap, commitId);
   }
 
-  private CheckRevisionNoteMap getRevisionNoteMap(RevWalk rw, ObjectId curr)
-      throws ConfigInvalidException, IOException {
-    if (curr.equals(ObjectId.zeroId())) {
-      return CheckRevisionNoteMap.emptyMap();
-    }
-    NoteMap noteMap;
-    if (!curr.equals(ObjectId.zeroId())) {
-      noteMap = NoteMap.read(rw.getObjectReader(), rw.parseCommit(curr));
+  /**
+   * Writes the checks of a single revision into the given note map.
+   *
+   * <p>The notes of all other revisions are left untouched, so that writing the tree of the note
+   * map reuses their blobs.
+   */
+  private void writeChecksForRevision(
+      NoteMap noteMap, ObjectInserter ins, ObjectId commitId, NoteDbCheckMap checksForRevision)
+      throws IOException {
+    byte[] data = checkNoteSerializer.serialize(checksForRevision);
+    if (data.length == 0) {
+      noteMap.remove(commitId);
     } else {
-      noteMap = NoteMap.newEmptyMap();
-    }
-    return CheckRevisionNoteMap.parseChecks(
-        noteUtil.getChangeNoteJson(), rw.getObjectReader(), noteMap);
-  }
-
-  private byte[] toData(NoteDbCheckMap map) throws IOException {
-    if (map.checks.isEmpty()) {
-      return new byte[0];
+      noteMap.set(commitId, ins.insert(OBJ_BLOB, data));
     }
-
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    try (OutputStreamWriter osw = new OutputStreamWriter(out, UTF_8)) {
-      noteUtil.getChangeNoteJson().getGson().toJson(map, osw);
-    }
-    return out.toByteArray();
   }
 
   private CommitBuilder commitBuilder(String message, ObjectId parent) {
@@ -342,22 +589,12 @@ public class NoteDbChecksUpdate implements ChecksStorageUpdate {
     return cb;
   }
 
-  private Check readSingleCheck(CheckKey checkKey, Repository repo, RevWalk rw, ObjectId tip)
-      throws IOException, ConfigInvalidException {
-    Ref patchSetRef = repo.exactRef(checkKey.patchSet().toRefName());
+  private static ObjectId getPatchSetCommitId(Repository repo, PatchSet.Id patchSetId)
+      throws IOException {
+    Ref patchSetRef = repo.exactRef(patchSetId.toRefName());
     if (patchSetRef == null) {
-      throw new IllegalStateException("patchset " + checkKey.patchSet() + " not found");
-    }
-    ObjectId commitId = patchSetRef.getObjectId();
-    Map<ObjectId, NoteDbCheckMap> newNotes = getRevisionNoteByCommitId(rw, tip);
-    if (!newNotes.containsKey(commitId)) {
-      throw new IllegalStateException("revision " + commitId.name() + " not found");
-    }
-    Map<String, NoteDbCheck> checks = newNotes.get(commitId).checks;
-    String checkerUuidString = checkKey.checkerUuid().get();
-    if (!checks.containsKey(checkerUuidString)) {
-      throw new IllegalStateException("checker " + checkerUuidString + " not found");
+      throw new IOException(String.format("patchset %s not found", patchSetId));
     }
-    return checks.get(checkerUuidString).toCheck(checkKey);
+    return patchSetRef.getObjectId();
   }
 }
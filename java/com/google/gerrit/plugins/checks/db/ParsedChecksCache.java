@@ -0,0 +1,286 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.plugins.checks.Check;
+import com.google.gerrit.plugins.checks.CheckerRef;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.gerrit.server.logging.TraceContext;
+import com.google.gerrit.server.logging.TraceContext.TraceTimer;
+import com.google.gerrit.server.notedb.ChangeNoteJson;
+import com.google.gerrit.server.notedb.ChangeNoteUtil;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * In-memory cache of the checks that are stored for a patch set.
+ *
+ * <p>The cache key contains the SHA-1 of the checks ref of the change. Hence cached entries never
+ * become stale: once the checks ref is updated, lookups use a new key and the outdated entry is
+ * eventually evicted. Validating a cached entry only requires a lookup of the checks ref.
+ *
+ * <p>Like for all other caches, Gerrit core exports hit ratio and eviction metrics for this cache
+ * through its {@code MetricMaker}.
+ */
+@Singleton
+class ParsedChecksCache {
+  private static final String NAME = "parsed_checks";
+
+  static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(NAME, Key.class, new TypeLiteral<ImmutableList<Check>>() {})
+            .maximumWeight(100000)
+            .weigher(ChecksWeigher.class);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    abstract Project.NameKey project();
+
+    abstract PatchSet.Id patchSet();
+
+    /** SHA-1 of the checks ref of the change from which the checks were parsed. */
+    abstract ObjectId checksRefState();
+
+    static Key create(Project.NameKey project, PatchSet.Id patchSet, ObjectId checksRefState) {
+      return new AutoValue_ParsedChecksCache_Key(project, patchSet, checksRefState.copy());
+    }
+  }
+
+  /** Checks of a patch set together with the state of the checks ref they were read from. */
+  @AutoValue
+  abstract static class ChecksAtState {
+    /** SHA-1 of the checks ref, {@link ObjectId#zeroId()} if the checks ref doesn't exist. */
+    abstract ObjectId checksRefState();
+
+    abstract ImmutableList<Check> checks();
+
+    static ChecksAtState create(ObjectId checksRefState, ImmutableList<Check> checks) {
+      return new AutoValue_ParsedChecksCache_ChecksAtState(checksRefState.copy(), checks);
+    }
+  }
+
+  /** Weighs entries by the number of checks, so that patch sets with many checks count more. */
+  static class ChecksWeigher implements Weigher<Key, ImmutableList<Check>> {
+    @Override
+    public int weigh(Key key, ImmutableList<Check> checks) {
+      return 1 + checks.size();
+    }
+  }
+
+  private final String pluginName;
+  private final GitRepositoryManager repoManager;
+  private final ChangeNoteJson changeNoteJson;
+  private final Cache<Key, ImmutableList<Check>> cache;
+  private final AtomicLong loadCount = new AtomicLong();
+
+  @Inject
+  ParsedChecksCache(
+      @PluginName String pluginName,
+      GitRepositoryManager repoManager,
+      ChangeNoteUtil noteUtil,
+      @Named(NAME) Cache<Key, ImmutableList<Check>> cache) {
+    this(pluginName, repoManager, noteUtil.getChangeNoteJson(), cache);
+  }
+
+  @VisibleForTesting
+  ParsedChecksCache(
+      String pluginName,
+      GitRepositoryManager repoManager,
+      ChangeNoteJson changeNoteJson,
+      Cache<Key, ImmutableList<Check>> cache) {
+    this.pluginName = pluginName;
+    this.repoManager = repoManager;
+    this.changeNoteJson = changeNoteJson;
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the checks that are stored for a patch set.
+   *
+   * <p>Only looks up the checks ref of the change if the checks for the current state of the
+   * checks ref are already cached. Otherwise only the note of the given revision is parsed.
+   *
+   * @param project the project containing the change
+   * @param psId the ID of the patch set
+   * @param revision the commit ID of the patch set
+   * @return the checks stored for the patch set, does not include backfilled checks
+   */
+  ImmutableList<Check> get(Project.NameKey project, PatchSet.Id psId, ObjectId revision)
+      throws IOException {
+    try (Repository repo = repoManager.openRepository(project)) {
+      Ref checksRef = repo.exactRef(CheckerRef.checksRef(psId.changeId()));
+      if (checksRef == null) {
+        return ImmutableList.of();
+      }
+
+      return get(repo, Key.create(project, psId, checksRef.getObjectId()), revision);
+    }
+  }
+
+  /**
+   * Returns the checks that were stored for a patch set at a given state of the checks ref.
+   *
+   * @param project the project containing the change
+   * @param psId the ID of the patch set
+   * @param revision the commit ID of the patch set
+   * @param checksRefState the SHA-1 of the checks ref, {@link ObjectId#zeroId()} if the checks ref
+   *     doesn't exist
+   * @return the checks stored for the patch set, does not include backfilled checks
+   */
+  ImmutableList<Check> get(
+      Project.NameKey project, PatchSet.Id psId, ObjectId revision, ObjectId checksRefState)
+      throws IOException {
+    if (ObjectId.zeroId().equals(checksRefState)) {
+      return ImmutableList.of();
+    }
+    Key key = Key.create(project, psId, checksRefState);
+    ImmutableList<Check> checks = cache.getIfPresent(key);
+    if (checks != null) {
+      return checks;
+    }
+    try (Repository repo = repoManager.openRepository(project)) {
+      return get(repo, key, revision);
+    }
+  }
+
+  /**
+   * Returns the checks that are stored for patch sets of several changes of a project.
+   *
+   * <p>The repository is opened only once, the checks refs of all changes are read in one lookup
+   * and the notes of checks that are not cached yet are parsed through one object reader.
+   *
+   * @param project the project containing the changes
+   * @param revisions the commit IDs of the patch sets
+   * @return the checks stored for each of the patch sets, does not include backfilled checks
+   */
+  ImmutableMap<PatchSet.Id, ChecksAtState> getAll(
+      Project.NameKey project, Map<PatchSet.Id, ObjectId> revisions) throws IOException {
+    if (revisions.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    try (Repository repo = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(repo)) {
+      Map<String, Ref> checksRefs =
+          repo.getRefDatabase()
+              .exactRef(
+                  revisions.keySet().stream()
+                      .map(psId -> CheckerRef.checksRef(psId.changeId()))
+                      .distinct()
+                      .toArray(String[]::new));
+      ImmutableMap.Builder<PatchSet.Id, ChecksAtState> result = ImmutableMap.builder();
+      for (Map.Entry<PatchSet.Id, ObjectId> e : revisions.entrySet()) {
+        Ref checksRef = checksRefs.get(CheckerRef.checksRef(e.getKey().changeId()));
+        if (checksRef == null) {
+          result.put(e.getKey(), ChecksAtState.create(ObjectId.zeroId(), ImmutableList.of()));
+          continue;
+        }
+        Key key = Key.create(project, e.getKey(), checksRef.getObjectId());
+        ImmutableList<Check> checks = cache.getIfPresent(key);
+        if (checks == null) {
+          checks = load(rw, key, e.getValue());
+          cache.put(key, checks);
+        }
+        result.put(e.getKey(), ChecksAtState.create(key.checksRefState(), checks));
+      }
+      return result.build();
+    } catch (ConfigInvalidException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private ImmutableList<Check> get(Repository repo, Key key, ObjectId revision)
+      throws IOException {
+    try {
+      return cache.get(key, () -> load(repo, key, revision));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new StorageException(e.getCause());
+    }
+  }
+
+  private ImmutableList<Check> load(Repository repo, Key key, ObjectId revision)
+      throws IOException, ConfigInvalidException {
+    try (RevWalk rw = new RevWalk(repo)) {
+      return load(rw, key, revision);
+    }
+  }
+
+  private ImmutableList<Check> load(RevWalk rw, Key key, ObjectId revision)
+      throws IOException, ConfigInvalidException {
+    loadCount.incrementAndGet();
+    try (TraceTimer ignored =
+            TraceContext.newTimer(
+                "Load check notes",
+                Metadata.builder()
+                    .pluginName(pluginName)
+                    .projectName(key.project().get())
+                    .changeId(key.patchSet().changeId().get())
+                    .patchSetId(key.patchSet().get())
+                    .build())) {
+      NoteMap noteMap = NoteMap.read(rw.getObjectReader(), rw.parseCommit(key.checksRefState()));
+      NoteDbCheckMap checksForRevision =
+          CheckRevisionNoteMap.parseChecksForRevision(
+              changeNoteJson, rw.getObjectReader(), noteMap, revision);
+      return checksForRevision.checks.entrySet().stream()
+          .map(
+              e ->
+                  e.getValue()
+                      .toCheck(key.project(), key.patchSet(), CheckerUuid.parse(e.getKey())))
+          .collect(toImmutableList());
+    }
+  }
+
+  /** Returns the number of times the checks of a patch set were parsed from the notes. */
+  @VisibleForTesting
+  long getLoadCount() {
+    return loadCount.get();
+  }
+}
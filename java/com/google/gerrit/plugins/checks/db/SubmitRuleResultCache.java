@@ -0,0 +1,179 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * In-memory cache of whether all required checkers are passing for a patch set, which is what the
+ * checks submit rule evaluates.
+ *
+ * <p>Gerrit evaluates submit rules whenever a change is loaded, queried for submittability, checked
+ * for mergeability or submitted. The cache key contains the SHA-1 of the checks ref, the SHA-1 of
+ * the change meta ref and a SHA-1 over the refs of all checkers of the repository, hence any update
+ * of the checks, the change or the checkers results in a new key. Validating a cached entry only
+ * requires reading these refs.
+ *
+ * <p>The key doesn't capture external state that the relevance of checkers may depend on (see
+ * {@link com.google.gerrit.plugins.checks.CheckerEvaluator#dependsOnExternalState}). The result
+ * for repositories with such checkers must not be cached, see {@link #getUncached(Callable)}.
+ *
+ * <p>Gerrit core exports hit ratio metrics for this cache, the latency of computing missing
+ * entries is recorded separately.
+ */
+@Singleton
+class SubmitRuleResultCache {
+  private static final String NAME = "submit_rule_result";
+
+  static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(NAME, Key.class, Boolean.class).maximumWeight(100000);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    abstract Project.NameKey project();
+
+    abstract PatchSet.Id patchSet();
+
+    /** SHA-1 of the checks ref of the change, {@link ObjectId#zeroId()} if it doesn't exist. */
+    abstract ObjectId checksRefState();
+
+    /** SHA-1 of the change meta ref, since relevance of checkers depends on the change. */
+    abstract ObjectId changeMetaId();
+
+    /** SHA-1 over the UUIDs and ref states of all checkers of the repository. */
+    abstract ObjectId checkersId();
+
+    static Key create(
+        Project.NameKey project,
+        PatchSet.Id patchSet,
+        ObjectId checksRefState,
+        ObjectId changeMetaId,
+        ObjectId checkersId) {
+      return new AutoValue_SubmitRuleResultCache_Key(
+          project, patchSet, checksRefState.copy(), changeMetaId.copy(), checkersId.copy());
+    }
+  }
+
+  private final Cache<Key, Boolean> cache;
+  private final Timer0 loadLatency;
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong uncachedCount = new AtomicLong();
+
+  @Inject
+  SubmitRuleResultCache(@Named(NAME) Cache<Key, Boolean> cache, MetricMaker metricMaker) {
+    this.cache = cache;
+    this.loadLatency =
+        metricMaker.newTimer(
+            "checks/submit_rule_result/load_latency",
+            new Description(
+                    "Latency for computing whether all required checkers are passing, if the result"
+                        + " is not cached")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+  }
+
+  /**
+   * Returns whether all required checkers are passing for a patch set.
+   *
+   * @param key the key.
+   * @param loader computes the result if it is not cached.
+   * @return whether all required checkers are passing.
+   */
+  boolean get(Key key, Callable<Boolean> loader) throws IOException {
+    try {
+      return cache.get(
+          key,
+          () -> {
+            loadCount.incrementAndGet();
+            return load(loader);
+          });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new StorageException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns whether all required checkers are passing for a patch set, without caching the result.
+   *
+   * <p>Must be used if the relevance of a checker of the repository depends on state that isn't
+   * part of the {@link Key}.
+   *
+   * @param loader computes the result.
+   * @return whether all required checkers are passing.
+   */
+  boolean getUncached(Callable<Boolean> loader) throws IOException {
+    uncachedCount.incrementAndGet();
+    try {
+      return load(loader);
+    } catch (Exception e) {
+      Throwables.throwIfInstanceOf(e, IOException.class);
+      Throwables.throwIfUnchecked(e);
+      throw new StorageException(e);
+    }
+  }
+
+  private boolean load(Callable<Boolean> loader) throws Exception {
+    Stopwatch sw = Stopwatch.createStarted();
+    try {
+      return loader.call();
+    } finally {
+      loadLatency.record(sw.elapsed(NANOSECONDS), NANOSECONDS);
+    }
+  }
+
+  /** Returns the number of results that were computed because they were not cached. */
+  @VisibleForTesting
+  long getLoadCount() {
+    return loadCount.get();
+  }
+
+  /** Returns the number of results that were computed without using the cache. */
+  @VisibleForTesting
+  long getUncachedCount() {
+    return uncachedCount.get();
+  }
+}
@@ -0,0 +1,51 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.index;
+
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.plugins.checks.CombinedCheckStateCache;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.query.change.ChangeQueryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Change query operator that filters changes by their combined check state.
+ *
+ * <p>Plugin operators are exported as {@code <name>_<plugin>}, so the operator is used as e.g.
+ * {@code combinedstate_checks:failed}.
+ */
+@Singleton
+public class CombinedCheckStateOperator implements ChangeQueryBuilder.ChangeOperatorFactory {
+  public static final String NAME = "combinedstate";
+
+  private final String operator;
+  private final CombinedCheckStateCache combinedCheckStateCache;
+
+  @Inject
+  CombinedCheckStateOperator(
+      @PluginName String pluginName, CombinedCheckStateCache combinedCheckStateCache) {
+    this.operator = NAME + "_" + pluginName;
+    this.combinedCheckStateCache = combinedCheckStateCache;
+  }
+
+  @Override
+  public Predicate<ChangeData> create(ChangeQueryBuilder builder, String value)
+      throws QueryParseException {
+    return CombinedCheckStatePredicate.parse(operator, value, combinedCheckStateCache);
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.index;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Enums;
+import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.index.query.Matchable;
+import com.google.gerrit.index.query.OperatorPredicate;
+import com.google.gerrit.index.query.QueryParseException;
+import com.google.gerrit.plugins.checks.CombinedCheckStateCache;
+import com.google.gerrit.plugins.checks.api.CombinedCheckState;
+import com.google.gerrit.server.query.change.ChangeData;
+import java.util.Optional;
+
+/**
+ * Predicate that matches changes by the {@link CombinedCheckState} of their current patch set.
+ *
+ * <p>The combined check state is not part of the change index, hence this predicate can only be
+ * used to filter the results of index predicates. The state is read from the {@link
+ * CombinedCheckStateCache}, which is the same source that serves the {@code --combined} option on
+ * query results.
+ */
+public class CombinedCheckStatePredicate extends OperatorPredicate<ChangeData>
+    implements Matchable<ChangeData> {
+  public static CombinedCheckStatePredicate parse(
+      String operator, String value, CombinedCheckStateCache combinedCheckStateCache)
+      throws QueryParseException {
+    CombinedCheckState combinedCheckState =
+        tryParse(value)
+            .orElseThrow(
+                () ->
+                    new QueryParseException(
+                        String.format("invalid combined check state: %s", value)));
+    return new CombinedCheckStatePredicate(operator, combinedCheckState, combinedCheckStateCache);
+  }
+
+  private static Optional<CombinedCheckState> tryParse(String value) {
+    Optional<CombinedCheckState> state =
+        Enums.getIfPresent(CombinedCheckState.class, value).toJavaUtil();
+    if (state.isPresent()) {
+      return state;
+    }
+
+    for (CombinedCheckState combinedCheckState : CombinedCheckState.values()) {
+      if (combinedCheckState.name().replace("_", "").equalsIgnoreCase(value.replace("_", ""))) {
+        return Optional.of(combinedCheckState);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private final CombinedCheckState combinedCheckState;
+  private final CombinedCheckStateCache combinedCheckStateCache;
+
+  private CombinedCheckStatePredicate(
+      String operator,
+      CombinedCheckState combinedCheckState,
+      CombinedCheckStateCache combinedCheckStateCache) {
+    super(operator, combinedCheckState.name());
+    this.combinedCheckState = requireNonNull(combinedCheckState, "combinedCheckState");
+    this.combinedCheckStateCache = combinedCheckStateCache;
+  }
+
+  @Override
+  public boolean match(ChangeData cd) throws StorageException {
+    return combinedCheckState.equals(
+        combinedCheckStateCache.get(cd.project(), cd.change().currentPatchSetId()));
+  }
+
+  @Override
+  public int getCost() {
+    // Cheap if the state is cached, but computing it requires reading the checks of the change.
+    return 2;
+  }
+}
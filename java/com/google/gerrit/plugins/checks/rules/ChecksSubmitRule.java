@@ -19,7 +19,6 @@ import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.LegacySubmitRequirement;
 import com.google.gerrit.entities.PatchSet;
-import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.SubmitRecord;
 import com.google.gerrit.entities.SubmitRecord.Status;
 import com.google.gerrit.extensions.annotations.Exports;
@@ -60,7 +59,6 @@ public class ChecksSubmitRule implements SubmitRule {
 
   @Override
   public Optional<SubmitRecord> evaluate(ChangeData changeData) {
-    Project.NameKey project = changeData.project();
     Change.Id changeId = changeData.getId();
 
     PatchSet.Id currentPatchSetId;
@@ -76,7 +74,7 @@ public class ChecksSubmitRule implements SubmitRule {
     boolean areAllRequiredCheckersPassing;
     try {
       areAllRequiredCheckersPassing =
-          checks.areAllRequiredCheckersPassing(project, currentPatchSetId);
+          checks.areAllRequiredCheckersPassing(changeData, currentPatchSetId);
     } catch (IOException e) {
       String errorMessage =
           String.format("failed to evaluate check states for change %s", changeId);
@@ -0,0 +1,176 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.index.change.ChangeIndexer;
+import com.google.gerrit.testing.TestTimeUtil;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeReindexSchedulerTest {
+  private final Project.NameKey project = Project.nameKey("test-project");
+  private final Change.Id changeId = Change.id(1);
+
+  private final ChangeIndexer changeIndexer = mock(ChangeIndexer.class);
+  private final List<Runnable> scheduledTasks = new ArrayList<>();
+  private final List<Long> scheduledDelays = new ArrayList<>();
+
+  private ChangeReindexScheduler reindexScheduler;
+
+  @Before
+  public void setUp() {
+    TestTimeUtil.resetWithClockStep(0, SECONDS);
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    when(executor.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class)))
+        .thenAnswer(
+            invocation -> {
+              scheduledTasks.add(invocation.getArgument(0));
+              scheduledDelays.add(
+                  invocation.<TimeUnit>getArgument(2).toMillis(invocation.getArgument(1)));
+              return mock(ScheduledFuture.class);
+            });
+    reindexScheduler =
+        new ChangeReindexScheduler(
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(20),
+            executor,
+            changeIndexer,
+            new DisabledMetricMaker());
+  }
+
+  @After
+  public void tearDown() {
+    TestTimeUtil.useSystemTime();
+  }
+
+  @Test
+  public void immediateReindexIsNotDeferred() {
+    reindexScheduler.reindex(project, changeId, true);
+
+    verify(changeIndexer).index(project, changeId);
+    assertThat(scheduledTasks).isEmpty();
+    assertThat(reindexScheduler.getExecutedCount()).isEqualTo(1);
+    assertThat(reindexScheduler.getCoalescedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void furtherRequestsRestartTheDelay() {
+    reindexScheduler.reindex(project, changeId, false);
+    TestTimeUtil.incrementClock(3, SECONDS);
+    reindexScheduler.reindex(project, changeId, false);
+    TestTimeUtil.incrementClock(3, SECONDS);
+    reindexScheduler.reindex(project, changeId, false);
+
+    assertThat(scheduledDelays).containsExactly(5000L, 5000L, 5000L);
+    assertThat(reindexScheduler.getCoalescedCount()).isEqualTo(2);
+    verify(changeIndexer, never()).index(project, changeId);
+
+    // Replaced tasks don't index the change, even if they couldn't be cancelled anymore.
+    scheduledTasks.forEach(Runnable::run);
+    verify(changeIndexer, times(1)).index(project, changeId);
+    assertThat(reindexScheduler.getExecutedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void reindexIsNotDeferredBeyondMaxDelay() {
+    reindexScheduler.reindex(project, changeId, false);
+    TestTimeUtil.incrementClock(18, SECONDS);
+    reindexScheduler.reindex(project, changeId, false);
+    TestTimeUtil.incrementClock(3, SECONDS);
+    reindexScheduler.reindex(project, changeId, false);
+
+    assertThat(scheduledDelays).containsExactly(5000L, 2000L, 0L).inOrder();
+    assertThat(reindexScheduler.getCoalescedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void requestAfterReindexSchedulesNewReindex() {
+    reindexScheduler.reindex(project, changeId, false);
+    scheduledTasks.get(0).run();
+    assertThat(reindexScheduler.getExecutedCount()).isEqualTo(1);
+
+    TestTimeUtil.incrementClock(30, SECONDS);
+    reindexScheduler.reindex(project, changeId, false);
+    assertThat(scheduledDelays).containsExactly(5000L, 5000L);
+    scheduledTasks.get(1).run();
+
+    verify(changeIndexer, times(2)).index(project, changeId);
+    assertThat(reindexScheduler.getExecutedCount()).isEqualTo(2);
+    assertThat(reindexScheduler.getCoalescedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void requestsForDifferentChangesAreNotCoalesced() {
+    Change.Id otherChangeId = Change.id(2);
+    reindexScheduler.reindex(project, changeId, false);
+    reindexScheduler.reindex(project, otherChangeId, false);
+    scheduledTasks.forEach(Runnable::run);
+
+    verify(changeIndexer).index(project, changeId);
+    verify(changeIndexer).index(project, otherChangeId);
+    assertThat(reindexScheduler.getExecutedCount()).isEqualTo(2);
+    assertThat(reindexScheduler.getCoalescedCount()).isEqualTo(0);
+    assertThat(scheduledDelays).containsExactly(5000L, 5000L);
+  }
+
+  @Test
+  public void pendingReindexesAreExecutedOnStop() {
+    Change.Id otherChangeId = Change.id(2);
+    reindexScheduler.reindex(project, changeId, false);
+    reindexScheduler.reindex(project, otherChangeId, false);
+
+    reindexScheduler.stop();
+
+    verify(changeIndexer).index(project, changeId);
+    verify(changeIndexer).index(project, otherChangeId);
+    assertThat(reindexScheduler.getExecutedCount()).isEqualTo(2);
+
+    // The cancelled tasks don't index the changes again.
+    scheduledTasks.forEach(Runnable::run);
+    verify(changeIndexer, times(1)).index(project, changeId);
+    verify(changeIndexer, times(1)).index(project, otherChangeId);
+  }
+
+  @Test
+  public void requestAfterStopIsNotDeferred() {
+    reindexScheduler.stop();
+
+    reindexScheduler.reindex(project, changeId, false);
+
+    verify(changeIndexer).index(project, changeId);
+    assertThat(scheduledTasks).isEmpty();
+    assertThat(reindexScheduler.getExecutedCount()).isEqualTo(1);
+  }
+}
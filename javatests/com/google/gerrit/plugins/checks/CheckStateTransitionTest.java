@@ -0,0 +1,60 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.plugins.checks.api.CheckState;
+import java.util.Optional;
+import org.junit.Test;
+
+public class CheckStateTransitionTest {
+  private final CheckerUuid checkerUuid = CheckerUuid.parse("test:checker");
+
+  @Test
+  public void transitionsWithinInProgressDontChangeCounts() {
+    assertThat(changesCounts(CheckState.NOT_STARTED, CheckState.SCHEDULED)).isFalse();
+    assertThat(changesCounts(CheckState.SCHEDULED, CheckState.RUNNING)).isFalse();
+    assertThat(changesCounts(CheckState.RUNNING, CheckState.SCHEDULED)).isFalse();
+  }
+
+  @Test
+  public void transitionsToSameStateDontChangeCounts() {
+    for (CheckState state : CheckState.values()) {
+      assertThat(changesCounts(state, state)).isFalse();
+    }
+  }
+
+  @Test
+  public void transitionsBetweenBucketsChangeCounts() {
+    assertThat(changesCounts(CheckState.RUNNING, CheckState.FAILED)).isTrue();
+    assertThat(changesCounts(CheckState.FAILED, CheckState.SUCCESSFUL)).isTrue();
+    assertThat(changesCounts(CheckState.SUCCESSFUL, CheckState.NOT_RELEVANT)).isTrue();
+    assertThat(changesCounts(CheckState.NOT_RELEVANT, CheckState.SCHEDULED)).isTrue();
+  }
+
+  @Test
+  public void createdChecksChangeCounts() {
+    assertThat(
+            CheckStateTransition.create(checkerUuid, Optional.empty(), CheckState.NOT_STARTED)
+                .changesCheckStateCount())
+        .isTrue();
+  }
+
+  private boolean changesCounts(CheckState oldState, CheckState newState) {
+    return CheckStateTransition.create(checkerUuid, Optional.of(oldState), newState)
+        .changesCheckStateCount();
+  }
+}
@@ -0,0 +1,130 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import com.google.gerrit.index.query.Matchable;
+import com.google.gerrit.index.query.OperatorPredicate;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.server.query.change.ChangeData;
+import org.junit.Test;
+
+public class CheckerEvaluationPlanTest {
+  private final CheckerUuid checkerUuid1 = CheckerUuid.parse("test:checker1");
+  private final CheckerUuid checkerUuid2 = CheckerUuid.parse("test:checker2");
+  private final CheckerUuid checkerUuid3 = CheckerUuid.parse("test:checker3");
+
+  private final ChangeData cd = mock(ChangeData.class);
+
+  @Test
+  public void sharedSubPredicatesAreMatchedOnce() throws Exception {
+    CheckerEvaluationPlan plan =
+        CheckerEvaluationPlan.builder()
+            .addChecker(checkerUuid1, Predicate.and(matching("branch"), matching("file")))
+            .addChecker(checkerUuid2, Predicate.and(matching("branch"), notMatching("topic")))
+            .addChecker(checkerUuid3, Predicate.and(matching("branch"), matching("file")))
+            .build();
+
+    // branch, file, checker1/checker3 conjunction, topic, checker2 conjunction.
+    assertThat(plan.getNodeCount()).isEqualTo(5);
+
+    CheckerEvaluationPlan.Evaluation evaluation = plan.evaluate(cd);
+    assertThat(evaluation.isRelevant(checkerUuid1)).isTrue();
+    assertThat(evaluation.isRelevant(checkerUuid2)).isFalse();
+    assertThat(evaluation.isRelevant(checkerUuid3)).isTrue();
+    assertThat(evaluation.getMatchedLeafCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void booleanOperators() throws Exception {
+    CheckerEvaluationPlan plan =
+        CheckerEvaluationPlan.builder()
+            .addChecker(checkerUuid1, Predicate.or(notMatching("branch"), matching("file")))
+            .addChecker(checkerUuid2, Predicate.not(matching("file")))
+            .addChecker(checkerUuid3, Predicate.and(matching("file"), notMatching("topic")))
+            .build();
+
+    CheckerEvaluationPlan.Evaluation evaluation = plan.evaluate(cd);
+    assertThat(evaluation.isRelevant(checkerUuid1)).isTrue();
+    assertThat(evaluation.isRelevant(checkerUuid2)).isFalse();
+    assertThat(evaluation.isRelevant(checkerUuid3)).isFalse();
+    assertThat(evaluation.getMatchedLeafCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void evaluationsOfDifferentChangesAreIndependent() throws Exception {
+    CheckerEvaluationPlan plan =
+        CheckerEvaluationPlan.builder().addChecker(checkerUuid1, matching("branch")).build();
+
+    CheckerEvaluationPlan.Evaluation evaluation1 = plan.evaluate(cd);
+    assertThat(evaluation1.isRelevant(checkerUuid1)).isTrue();
+    assertThat(evaluation1.isRelevant(checkerUuid1)).isTrue();
+    assertThat(evaluation1.getMatchedLeafCount()).isEqualTo(1);
+
+    CheckerEvaluationPlan.Evaluation evaluation2 = plan.evaluate(mock(ChangeData.class));
+    assertThat(evaluation2.isRelevant(checkerUuid1)).isTrue();
+    assertThat(evaluation2.getMatchedLeafCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void checkerWithInvalidQueryIsNeverRelevant() throws Exception {
+    CheckerEvaluationPlan plan =
+        CheckerEvaluationPlan.builder().addCheckerWithInvalidQuery(checkerUuid1).build();
+
+    assertThat(plan.evaluate(cd).isRelevant(checkerUuid1)).isFalse();
+  }
+
+  @Test
+  public void checkerNotInPlan() throws Exception {
+    CheckerEvaluationPlan plan =
+        CheckerEvaluationPlan.builder().addChecker(checkerUuid1, matching("branch")).build();
+
+    IllegalArgumentException thrown =
+        assertThrows(
+            IllegalArgumentException.class, () -> plan.evaluate(cd).isRelevant(checkerUuid2));
+    assertThat(thrown).hasMessageThat().contains(checkerUuid2.get());
+  }
+
+  private static Predicate<ChangeData> matching(String name) {
+    return new TestPredicate(name, true);
+  }
+
+  private static Predicate<ChangeData> notMatching(String name) {
+    return new TestPredicate(name, false);
+  }
+
+  private static class TestPredicate extends OperatorPredicate<ChangeData>
+      implements Matchable<ChangeData> {
+    private final boolean matches;
+
+    TestPredicate(String name, boolean matches) {
+      super(name, Boolean.toString(matches));
+      this.matches = matches;
+    }
+
+    @Override
+    public boolean match(ChangeData object) {
+      return matches;
+    }
+
+    @Override
+    public int getCost() {
+      return 1;
+    }
+  }
+}
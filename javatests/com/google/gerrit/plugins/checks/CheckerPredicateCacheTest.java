@@ -0,0 +1,144 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.index.query.Predicate;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.plugins.checks.api.CheckerStatus;
+import com.google.gerrit.server.query.change.AgePredicate;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.gerrit.testing.TestTimeUtil;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckerPredicateCacheTest {
+  private final Project.NameKey project = Project.nameKey("test-repo");
+
+  private CheckerPredicateCache checkerPredicateCache;
+  private ChangeData cd;
+
+  @Before
+  public void setUp() {
+    TestTimeUtil.resetWithClockStep(0, SECONDS);
+    checkerPredicateCache =
+        new CheckerPredicateCache(CacheBuilder.newBuilder().build(), new DisabledMetricMaker());
+
+    Change change =
+        new Change(
+            Change.key("I0123456789abcdef0123456789abcdef01234567"),
+            Change.id(1),
+            Account.id(1000),
+            BranchNameKey.create(project, "master"),
+            TimeUtil.nowTs());
+    cd = mock(ChangeData.class);
+    when(cd.change()).thenReturn(change);
+  }
+
+  @After
+  public void tearDown() {
+    TestTimeUtil.useSystemTime();
+  }
+
+  @Test
+  public void predicateIsParsedOnce() throws Exception {
+    Checker checker = newChecker("branch:master", "1111111111111111111111111111111111111111");
+    Predicate<ChangeData> predicate = Predicate.any();
+
+    assertThat(checkerPredicateCache.get(checker, () -> Optional.of(predicate)).get())
+        .isSameInstanceAs(predicate);
+    assertThat(checkerPredicateCache.get(checker, () -> Optional.of(Predicate.any())).get())
+        .isSameInstanceAs(predicate);
+    assertThat(checkerPredicateCache.getParseCount()).isEqualTo(1);
+    assertThat(checkerPredicateCache.dependsOnParseTimeState(checker)).isFalse();
+  }
+
+  @Test
+  public void invalidQueryIsParsedOnce() throws Exception {
+    Checker checker = newChecker("branch:master", "1111111111111111111111111111111111111111");
+
+    assertThat(checkerPredicateCache.get(checker, Optional::empty).isPresent()).isFalse();
+    assertThat(checkerPredicateCache.get(checker, Optional::empty).isPresent()).isFalse();
+    assertThat(checkerPredicateCache.getParseCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void updatedCheckerIsParsedAgain() throws Exception {
+    Checker checker = newChecker("branch:master", "1111111111111111111111111111111111111111");
+    Checker updatedChecker =
+        newChecker("branch:stable", "2222222222222222222222222222222222222222");
+
+    checkerPredicateCache.get(checker, () -> Optional.of(Predicate.any()));
+    checkerPredicateCache.get(updatedChecker, () -> Optional.of(Predicate.any()));
+    checkerPredicateCache.get(updatedChecker, () -> Optional.of(Predicate.any()));
+
+    assertThat(checkerPredicateCache.getParseCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void ageCheckerBecomesRelevantWhenClockAdvances() throws Exception {
+    Checker checker = newChecker("age:1d", "1111111111111111111111111111111111111111");
+    Callable<Optional<Predicate<ChangeData>>> loader = () -> Optional.of(new AgePredicate("1d"));
+    assertThat(checkerPredicateCache.dependsOnParseTimeState(checker)).isTrue();
+
+    assertThat(matches(checkerPredicateCache.get(checker, loader))).isFalse();
+
+    TestTimeUtil.incrementClock(2, DAYS);
+
+    // The predicate is parsed again, so that its cutoff is computed from the current time.
+    assertThat(matches(checkerPredicateCache.get(checker, loader))).isTrue();
+    assertThat(checkerPredicateCache.getParseCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void checkerWithoutQueryDoesNotDependOnParseTimeState() throws Exception {
+    assertThat(checkerPredicateCache.dependsOnParseTimeState(newChecker(null, null))).isFalse();
+  }
+
+  private boolean matches(Optional<Predicate<ChangeData>> predicate) throws Exception {
+    return predicate.get().asMatchable().match(cd);
+  }
+
+  private Checker newChecker(String query, String refState) {
+    Checker.Builder checker =
+        Checker.builder()
+            .setName("My Checker")
+            .setRepository(project)
+            .setStatus(CheckerStatus.ENABLED)
+            .setUuid(CheckerUuid.parse("test:my-checker"))
+            .setCreated(TimeUtil.nowTs())
+            .setUpdated(TimeUtil.nowTs())
+            .setRefState(refState != null ? ObjectId.fromString(refState) : ObjectId.zeroId());
+    if (query != null) {
+      checker.setQuery(query);
+    }
+    return checker.build();
+  }
+}
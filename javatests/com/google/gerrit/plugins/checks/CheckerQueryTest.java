@@ -98,6 +98,14 @@ public class CheckerQueryTest {
     assertInvalidQuery("(((f:foo f:bar) OR f:baz) -f:qux) OR z:quux", "Unsupported operator: z");
   }
 
+  @Test
+  public void operators() throws Exception {
+    assertThat(CheckerQuery.getOperators("f:foo (age:1d OR -reviewer:bar) f:baz"))
+        .containsExactly("f", "age", "reviewer");
+    assertThat(CheckerQuery.getOperators(" ")).isEmpty();
+    assertThat(CheckerQuery.getOperators("f:\"")).isEmpty();
+  }
+
   private static void assertInvalidQuery(String query, String expectedMessage) {
     ConfigInvalidException thrown =
         assertThrows(ConfigInvalidException.class, () -> CheckerQuery.clean(query));
@@ -0,0 +1,196 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.gerrit.server.util.time.TimeUtil;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CombinedCheckStateLoadExecutorTest {
+  private final Project.NameKey fastProject = Project.nameKey("fast-project");
+  private final Project.NameKey slowProject = Project.nameKey("slow-project");
+
+  private final CountDownLatch released = new CountDownLatch(1);
+  private final ThreadLocalRequestContext requestContext = new ThreadLocalRequestContext();
+
+  private ChangeData.Factory changeDataFactory;
+  private CombinedCheckStateLoadExecutor loadExecutor;
+
+  @Before
+  public void setUp() {
+    changeDataFactory = mock(ChangeData.Factory.class);
+    when(changeDataFactory.create(any(Change.class)))
+        .thenAnswer(invocation -> newChangeData(invocation.getArgument(0)));
+  }
+
+  @After
+  public void tearDown() {
+    requestContext.setContext(null);
+    released.countDown();
+    if (loadExecutor != null) {
+      loadExecutor.stop();
+    }
+  }
+
+  @Test
+  public void batchesThatMissTheDeadlineAreLeftOut() throws Exception {
+    loadExecutor = start(2, Duration.ofMillis(100));
+    ChangeData fastChange = newChangeData(newChange(fastProject, 1));
+    ChangeData slowChange1 = newChangeData(newChange(slowProject, 2));
+    ChangeData slowChange2 = newChangeData(newChange(slowProject, 3));
+
+    Map<Change.Id, String> states =
+        loadExecutor.loadAll(
+            ImmutableList.of(fastChange, slowChange1, slowChange2), this::loadBlockingSlowProject);
+
+    assertThat(states).containsExactly(fastChange.getId(), "loaded");
+    assertThat(loadExecutor.getDeadlineMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void batchesThatAreLoadedInTimeAreNotLeftOut() throws Exception {
+    loadExecutor = start(2, Duration.ofSeconds(10));
+    ChangeData change1 = newChangeData(newChange(fastProject, 1));
+    ChangeData change2 = newChangeData(newChange(slowProject, 2));
+    released.countDown();
+
+    Map<Change.Id, String> states =
+        loadExecutor.loadAll(ImmutableList.of(change1, change2), this::loadBlockingSlowProject);
+
+    assertThat(states).containsExactly(change1.getId(), "loaded", change2.getId(), "loaded");
+    assertThat(loadExecutor.getDeadlineMissCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void timeoutIsIgnoredWithoutThreads() throws Exception {
+    loadExecutor = start(0, Duration.ofMillis(1));
+    ChangeData change = newChangeData(newChange(slowProject, 1));
+    AtomicReference<Thread> thread = new AtomicReference<>();
+
+    Map<Change.Id, String> states =
+        loadExecutor.loadAll(
+            ImmutableList.of(change),
+            batch -> {
+              thread.set(Thread.currentThread());
+              sleep(50);
+              return load(batch);
+            });
+
+    assertThat(states).containsExactly(change.getId(), "loaded");
+    assertThat(thread.get()).isSameInstanceAs(Thread.currentThread());
+    assertThat(loadExecutor.getDeadlineMissCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void batchesAreLoadedInTheRequestContextOfTheCaller() throws Exception {
+    loadExecutor = start(2, Duration.ZERO);
+    ChangeData change1 = newChangeData(newChange(fastProject, 1));
+    ChangeData change2 = newChangeData(newChange(slowProject, 2));
+    CurrentUser user = mock(CurrentUser.class);
+    RequestContext callerContext = () -> user;
+    requestContext.setContext(callerContext);
+    List<Thread> threads = new CopyOnWriteArrayList<>();
+    List<CurrentUser> users = new CopyOnWriteArrayList<>();
+
+    Map<Change.Id, String> states =
+        loadExecutor.loadAll(
+            ImmutableList.of(change1, change2),
+            batch -> {
+              threads.add(Thread.currentThread());
+              users.add(requestContext.getContext().getUser());
+              return load(batch);
+            });
+
+    assertThat(states).containsExactly(change1.getId(), "loaded", change2.getId(), "loaded");
+    assertThat(threads).doesNotContain(Thread.currentThread());
+    assertThat(users).containsExactly(user, user);
+    assertThat(requestContext.getContext()).isSameInstanceAs(callerContext);
+  }
+
+  private Map<Change.Id, String> loadBlockingSlowProject(Collection<ChangeData> batch) {
+    if (batch.iterator().next().project().equals(slowProject)) {
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return load(batch);
+  }
+
+  private static Map<Change.Id, String> load(Collection<ChangeData> batch) {
+    Map<Change.Id, String> states = new HashMap<>();
+    batch.forEach(cd -> states.put(cd.getId(), "loaded"));
+    return states;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private CombinedCheckStateLoadExecutor start(int threads, Duration timeout) {
+    CombinedCheckStateLoadExecutor loadExecutor =
+        new CombinedCheckStateLoadExecutor(
+            threads, timeout, new DisabledMetricMaker(), changeDataFactory, requestContext);
+    loadExecutor.start();
+    return loadExecutor;
+  }
+
+  private static Change newChange(Project.NameKey project, int id) {
+    return new Change(
+        Change.key(String.format("I%040d", id)),
+        Change.id(id),
+        Account.id(1000),
+        BranchNameKey.create(project, "master"),
+        TimeUtil.nowTs());
+  }
+
+  private static ChangeData newChangeData(Change change) {
+    ChangeData cd = mock(ChangeData.class);
+    when(cd.change()).thenReturn(change);
+    when(cd.getId()).thenReturn(change.getId());
+    when(cd.project()).thenReturn(change.getProject());
+    return cd;
+  }
+}
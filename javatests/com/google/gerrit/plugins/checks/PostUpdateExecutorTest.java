@@ -0,0 +1,162 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+public class PostUpdateExecutorTest {
+  private final Change.Id changeId1 = Change.id(1);
+  private final Change.Id changeId2 = Change.id(2);
+  private final Change.Id changeId3 = Change.id(3);
+
+  private final CountDownLatch blocked = new CountDownLatch(1);
+  private final CountDownLatch released = new CountDownLatch(1);
+
+  private PostUpdateExecutor postUpdateExecutor;
+
+  @After
+  public void tearDown() {
+    released.countDown();
+    if (postUpdateExecutor != null) {
+      postUpdateExecutor.stop();
+    }
+  }
+
+  @Test
+  public void sideEffectsAreExecutedSynchronouslyIfNoThreadsAreConfigured() throws Exception {
+    postUpdateExecutor = start(0, 10);
+    AtomicReference<Thread> thread = new AtomicReference<>();
+
+    CompletableFuture<Void> done =
+        postUpdateExecutor.submit(changeId1, () -> thread.set(Thread.currentThread()));
+
+    assertThat(done.isDone()).isTrue();
+    assertThat(thread.get()).isSameInstanceAs(Thread.currentThread());
+  }
+
+  @Test
+  public void sideEffectsForSameChangeAreExecutedInSubmissionOrder() throws Exception {
+    postUpdateExecutor = start(4, 10);
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+    CompletableFuture<Void> first =
+        postUpdateExecutor.submit(
+            changeId1,
+            () -> {
+              block();
+              executed.add("change1-first");
+            });
+    assertThat(blocked.await(10, SECONDS)).isTrue();
+    CompletableFuture<Void> second =
+        postUpdateExecutor.submit(changeId1, () -> executed.add("change1-second"));
+
+    // Side effects for other changes are not held back by the blocked change.
+    postUpdateExecutor.submit(changeId2, () -> executed.add("change2")).get(10, SECONDS);
+    assertThat(executed).containsExactly("change2");
+    assertThat(second.isDone()).isFalse();
+
+    released.countDown();
+    first.get(10, SECONDS);
+    second.get(10, SECONDS);
+    assertThat(executed).containsExactly("change2", "change1-first", "change1-second").inOrder();
+  }
+
+  @Test
+  public void sideEffectsAreExecutedOnCallerIfQueueIsFull() throws Exception {
+    postUpdateExecutor = start(1, 1);
+    AtomicReference<Thread> thread = new AtomicReference<>();
+
+    // Occupies the only thread.
+    CompletableFuture<Void> running = postUpdateExecutor.submit(changeId1, this::block);
+    assertThat(blocked.await(10, SECONDS)).isTrue();
+    // Occupies the only slot of the queue.
+    CompletableFuture<Void> queued = postUpdateExecutor.submit(changeId2, () -> {});
+
+    CompletableFuture<Void> rejected =
+        postUpdateExecutor.submit(changeId3, () -> thread.set(Thread.currentThread()));
+
+    assertThat(rejected.isDone()).isTrue();
+    assertThat(thread.get()).isSameInstanceAs(Thread.currentThread());
+    assertThat(postUpdateExecutor.getCallerRunCount()).isEqualTo(1);
+
+    released.countDown();
+    running.get(10, SECONDS);
+    queued.get(10, SECONDS);
+    assertThat(postUpdateExecutor.getCallerRunCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void exceptionInSideEffectsCompletesFuture() throws Exception {
+    postUpdateExecutor = start(1, 10);
+
+    postUpdateExecutor
+        .submit(
+            changeId1,
+            () -> {
+              throw new IllegalStateException("side effect failed");
+            })
+        .get(10, SECONDS);
+  }
+
+  @Test
+  public void errorInSideEffectsCompletesFutureExceptionally() throws Exception {
+    postUpdateExecutor = start(1, 10);
+
+    CompletableFuture<Void> failed =
+        postUpdateExecutor.submit(
+            changeId1,
+            () -> {
+              throw new AssertionError("side effect failed");
+            });
+    ExecutionException thrown =
+        assertThrows(ExecutionException.class, () -> failed.get(10, SECONDS));
+    assertThat(thrown).hasCauseThat().isInstanceOf(AssertionError.class);
+
+    // Side effects that are submitted later for the same change are still executed.
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    postUpdateExecutor.submit(changeId1, () -> executed.add("next")).get(10, SECONDS);
+    assertThat(executed).containsExactly("next");
+  }
+
+  private void block() {
+    blocked.countDown();
+    try {
+      released.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static PostUpdateExecutor start(int threads, int queueSize) {
+    PostUpdateExecutor postUpdateExecutor =
+        new PostUpdateExecutor(threads, queueSize, new DisabledMetricMaker());
+    postUpdateExecutor.start();
+    return postUpdateExecutor;
+  }
+}
@@ -42,7 +42,9 @@ public class ChecksRestApiBindingsIT extends AbstractCheckersTest {
           RestCall.post("/plugins/checks/checkers/%s"));
 
   private static final ImmutableList<RestCall> CHECK_ENDPOINTS =
-      ImmutableList.of(RestCall.get("/changes/%s/revisions/%s/checks~checks"));
+      ImmutableList.of(
+          RestCall.get("/changes/%s/revisions/%s/checks~checks"),
+          RestCall.post("/changes/%s/revisions/%s/checks~batch"));
 
   private static final ImmutableList<RestCall> SCOPED_CHECK_ENDPOINTS =
       ImmutableList.of(
@@ -50,11 +52,19 @@ public class ChecksRestApiBindingsIT extends AbstractCheckersTest {
           RestCall.post("/changes/%s/revisions/%s/checks~checks/%s"),
           RestCall.post("/changes/%s/revisions/%s/checks~checks/%s/rerun"));
 
+  private static final ImmutableList<RestCall> PROJECT_ENDPOINTS =
+      ImmutableList.of(RestCall.post("/projects/%s/checks~compact-checks"));
+
   @Test
   public void rootEndpoints() throws Exception {
     RestApiCallHelper.execute(adminRestSession, ROOT_ENDPOINTS);
   }
 
+  @Test
+  public void projectEndpoints() throws Exception {
+    RestApiCallHelper.execute(adminRestSession, PROJECT_ENDPOINTS, project.get());
+  }
+
   @Test
   public void checkerEndpoints() throws Exception {
     CheckerUuid checkerUuid = checkerOperations.newChecker().create();
@@ -0,0 +1,200 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.acceptance.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.acceptance.testsuite.request.RequestScopeOperations;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.UnprocessableEntityException;
+import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckerRef;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.plugins.checks.acceptance.AbstractCheckersTest;
+import com.google.gerrit.plugins.checks.api.BatchCheckInput;
+import com.google.gerrit.plugins.checks.api.CheckInfo;
+import com.google.gerrit.plugins.checks.api.CheckInput;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.inject.Inject;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchUpsertChecksIT extends AbstractCheckersTest {
+  @Inject private RequestScopeOperations requestScopeOperations;
+
+  private PatchSet.Id patchSetId;
+
+  @Before
+  public void setUp() throws Exception {
+    patchSetId = createChange().getPatchSetId();
+  }
+
+  @Test
+  public void createAndUpdateChecksInSingleCommit() throws Exception {
+    CheckerUuid checkerUuid1 = checkerOperations.newChecker().repository(project).create();
+    CheckerUuid checkerUuid2 = checkerOperations.newChecker().repository(project).create();
+    CheckKey checkKey1 = CheckKey.create(project, patchSetId, checkerUuid1);
+    CheckKey checkKey2 = CheckKey.create(project, patchSetId, checkerUuid2);
+    checkOperations.newCheck(checkKey1).state(CheckState.SCHEDULED).upsert();
+    ObjectId oldTip = getChecksRefTip();
+
+    BatchCheckInput input =
+        batchInput(
+            checkInput(checkerUuid1, CheckState.RUNNING),
+            checkInput(checkerUuid2, CheckState.FAILED));
+    ImmutableList<CheckInfo> infos = checksApiFactory.revision(patchSetId).upsert(input);
+
+    assertThat(infos).hasSize(2);
+    assertThat(infos.get(0).checkerUuid).isEqualTo(checkerUuid1.get());
+    assertThat(infos.get(0).state).isEqualTo(CheckState.RUNNING);
+    assertThat(infos.get(1).checkerUuid).isEqualTo(checkerUuid2.get());
+    assertThat(infos.get(1).state).isEqualTo(CheckState.FAILED);
+    assertThat(checkOperations.check(checkKey1).get().state()).isEqualTo(CheckState.RUNNING);
+    assertThat(checkOperations.check(checkKey2).get().state()).isEqualTo(CheckState.FAILED);
+
+    try (Repository repo = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(repo)) {
+      RevCommit newTip = rw.parseCommit(getChecksRefTip());
+      assertThat(newTip.getParentCount()).isEqualTo(1);
+      assertThat(newTip.getParent(0)).isEqualTo(oldTip);
+    }
+  }
+
+  @Test
+  public void noOpUpsertDoesNotCreateCommit() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+    CheckKey checkKey = CheckKey.create(project, patchSetId, checkerUuid);
+    checkOperations.newCheck(checkKey).state(CheckState.RUNNING).upsert();
+    ObjectId oldTip = getChecksRefTip();
+
+    ImmutableList<CheckInfo> infos =
+        checksApiFactory
+            .revision(patchSetId)
+            .upsert(batchInput(checkInput(checkerUuid, CheckState.RUNNING)));
+
+    assertThat(infos).hasSize(1);
+    assertThat(infos.get(0).state).isEqualTo(CheckState.RUNNING);
+    assertThat(getChecksRefTip()).isEqualTo(oldTip);
+  }
+
+  @Test
+  public void cannotUpsertWithoutChecks() throws Exception {
+    BadRequestException thrown =
+        assertThrows(
+            BadRequestException.class,
+            () -> checksApiFactory.revision(patchSetId).upsert(new BatchCheckInput()));
+    assertThat(thrown).hasMessageThat().contains("checks are required");
+  }
+
+  @Test
+  public void cannotUpsertSameCheckerTwice() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+
+    BatchCheckInput input =
+        batchInput(
+            checkInput(checkerUuid, CheckState.RUNNING),
+            checkInput(checkerUuid, CheckState.FAILED));
+    BadRequestException thrown =
+        assertThrows(
+            BadRequestException.class, () -> checksApiFactory.revision(patchSetId).upsert(input));
+    assertThat(thrown).hasMessageThat().contains("duplicate check for checker " + checkerUuid);
+  }
+
+  @Test
+  public void cannotSetNotifyOnIndividualCheck() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+
+    CheckInput checkInput = checkInput(checkerUuid, CheckState.RUNNING);
+    checkInput.notify = NotifyHandling.NONE;
+    BadRequestException thrown =
+        assertThrows(
+            BadRequestException.class,
+            () -> checksApiFactory.revision(patchSetId).upsert(batchInput(checkInput)));
+    assertThat(thrown).hasMessageThat().contains("must be set on the batch input");
+  }
+
+  @Test
+  public void cannotSetWaitForSideEffectsOnIndividualCheck() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+
+    CheckInput checkInput = checkInput(checkerUuid, CheckState.RUNNING);
+    checkInput.waitForSideEffects = true;
+    BadRequestException thrown =
+        assertThrows(
+            BadRequestException.class,
+            () -> checksApiFactory.revision(patchSetId).upsert(batchInput(checkInput)));
+    assertThat(thrown).hasMessageThat().contains("must be set on the batch input");
+  }
+
+  @Test
+  public void nothingIsWrittenIfOneCheckerDoesNotExist() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+
+    BatchCheckInput input =
+        batchInput(
+            checkInput(checkerUuid, CheckState.RUNNING),
+            checkInput(CheckerUuid.parse("foo:non-existing"), CheckState.RUNNING));
+    UnprocessableEntityException thrown =
+        assertThrows(
+            UnprocessableEntityException.class,
+            () -> checksApiFactory.revision(patchSetId).upsert(input));
+    assertThat(thrown).hasMessageThat().contains("checker foo:non-existing not found");
+    assertThat(checkOperations.check(CheckKey.create(project, patchSetId, checkerUuid)).exists())
+        .isFalse();
+  }
+
+  @Test
+  public void cannotUpsertChecksAnonymously() throws Exception {
+    requestScopeOperations.setApiUserAnonymous();
+
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+
+    BatchCheckInput input = batchInput(checkInput(checkerUuid, CheckState.RUNNING));
+    AuthException thrown =
+        assertThrows(
+            AuthException.class, () -> checksApiFactory.revision(patchSetId).upsert(input));
+    assertThat(thrown).hasMessageThat().contains("Authentication required");
+  }
+
+  private ObjectId getChecksRefTip() throws Exception {
+    try (Repository repo = repoManager.openRepository(project)) {
+      Ref checksRef = repo.exactRef(CheckerRef.checksRef(patchSetId.changeId()));
+      return checksRef != null ? checksRef.getObjectId() : ObjectId.zeroId();
+    }
+  }
+
+  private static CheckInput checkInput(CheckerUuid checkerUuid, CheckState state) {
+    CheckInput input = new CheckInput();
+    input.checkerUuid = checkerUuid.get();
+    input.state = state;
+    return input;
+  }
+
+  private static BatchCheckInput batchInput(CheckInput... checks) {
+    BatchCheckInput input = new BatchCheckInput();
+    input.checks = ImmutableList.copyOf(checks);
+    return input;
+  }
+}
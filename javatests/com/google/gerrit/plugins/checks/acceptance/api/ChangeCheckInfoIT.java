@@ -19,10 +19,13 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
 import static com.google.gerrit.truth.CacheStatsSubject.assertThat;
 import static com.google.gerrit.truth.CacheStatsSubject.cloneStats;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.extensions.common.ChangeInfo;
@@ -35,6 +38,7 @@ import com.google.gerrit.plugins.checks.api.ChangeCheckInfo;
 import com.google.gerrit.plugins.checks.api.CheckInput;
 import com.google.gerrit.plugins.checks.api.CheckState;
 import com.google.gerrit.plugins.checks.api.CombinedCheckState;
+import com.google.gerrit.testing.TestTimeUtil;
 import java.util.List;
 import java.util.Optional;
 import org.junit.Before;
@@ -133,6 +137,61 @@ public class ChangeCheckInfoIT extends AbstractCheckersTest {
     assertThat(cache.getReloadCount(true) - startReloadsTrue).isEqualTo(0);
   }
 
+  @Test
+  public void combinedCheckStatesOfMultipleChangesViaQuery() throws Exception {
+    testCombinedCheckStatesOfMultipleChangesViaQuery();
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.checks.combinedStateLoadThreads", value = "2")
+  public void combinedCheckStatesOfMultipleChangesViaQueryLoadedInParallel() throws Exception {
+    testCombinedCheckStatesOfMultipleChangesViaQuery();
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.checks.combinedStateLoadThreads", value = "2")
+  public void checkerQueriesOfCombinedCheckStatesLoadedInParallelAreEvaluated() throws Exception {
+    CheckerUuid checkerUuid =
+        checkerOperations
+            .newChecker()
+            .repository(project)
+            .query("topic:relevant")
+            .required()
+            .create();
+    PatchSet.Id psId2 = createChange().getPatchSetId();
+    gApi.changes().id(psId2.changeId().get()).topic("relevant");
+    PatchSet.Id psId3 = createChange().getPatchSetId();
+    gApi.changes().id(psId3.changeId().get()).topic("relevant");
+    checkOperations
+        .newCheck(CheckKey.create(project, psId3, checkerUuid))
+        .state(CheckState.FAILED)
+        .upsert();
+    for (PatchSet.Id id : ImmutableList.of(psId, psId2, psId3)) {
+      cache.invalidateForTest(project, id);
+    }
+    CacheStats start = cloneStats(cache.getStats());
+
+    List<ChangeInfo> changeInfos =
+        gApi.changes()
+            .query("project:" + project)
+            .withPluginOption("checks--combined", "true")
+            .get();
+    // All states are loaded in batches on the thread pool.
+    assertThat(cache.getStats()).since(start).hasMissCount(3);
+    assertThat(changeInfos).hasSize(3);
+    for (ChangeInfo changeInfo : changeInfos) {
+      CombinedCheckState expected;
+      if (changeInfo._number == psId2.changeId().get()) {
+        expected = CombinedCheckState.IN_PROGRESS;
+      } else if (changeInfo._number == psId3.changeId().get()) {
+        expected = CombinedCheckState.FAILED;
+      } else {
+        expected = CombinedCheckState.NOT_RELEVANT;
+      }
+      assertThat(getChangeCheckInfo(changeInfo)).hasValue(new ChangeCheckInfo("checks", expected));
+    }
+  }
+
   @Test
   public void loadingCombinedCheckStateViaGetUpdatesCache() throws Exception {
     cache.putForTest(project, psId, CombinedCheckState.FAILED);
@@ -200,32 +259,195 @@ public class ChangeCheckInfoIT extends AbstractCheckersTest {
   }
 
   @Test
-  public void repeatedlyLoadingCombinedCheckStateViaGetResultsInOnlyNoOpReloads() throws Exception {
+  public void updatingCheckStateUpdatesCachedCountsIncrementally() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+    checkOperations
+        .newCheck(CheckKey.create(project, psId, checkerUuid))
+        .state(CheckState.RUNNING)
+        .upsert();
+    assertThat(getChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.IN_PROGRESS));
+
+    long startIncremental = cache.getTransitionsAppliedCount(true);
+    long startRecomputed = cache.getTransitionsAppliedCount(false);
+
+    // Set non-required checker to FAILED, updating combined check state to WARNING.
+    CheckInput checkInput = new CheckInput();
+    checkInput.state = CheckState.FAILED;
+    checksApiFactory.revision(psId).id(checkerUuid).update(checkInput);
+
+    assertThat(cache.getTransitionsAppliedCount(true) - startIncremental).isEqualTo(1);
+    assertThat(cache.getTransitionsAppliedCount(false) - startRecomputed).isEqualTo(0);
+    assertThat(queryChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.WARNING));
+  }
+
+  @Test
+  public void updatingCheckStateWithinInProgressSkipsReload() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+    checkOperations
+        .newCheck(CheckKey.create(project, psId, checkerUuid))
+        .state(CheckState.SCHEDULED)
+        .upsert();
+    assertThat(getChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.IN_PROGRESS));
+
+    long startSkipped = cache.getSkippedReloadCount();
+    long startReloadsFalse = cache.getReloadCount(false);
+    long startReloadsTrue = cache.getReloadCount(true);
+
+    CheckInput checkInput = new CheckInput();
+    checkInput.state = CheckState.RUNNING;
+    checksApiFactory.revision(psId).id(checkerUuid).update(checkInput);
+
+    assertThat(cache.getSkippedReloadCount() - startSkipped).isEqualTo(1);
+    assertThat(cache.getReloadCount(false) - startReloadsFalse).isEqualTo(0);
+    assertThat(cache.getReloadCount(true) - startReloadsTrue).isEqualTo(0);
+
+    // The skipped reload still advanced the cached counts to the new checks ref, so that the next
+    // transition can be applied incrementally.
+    long startIncremental = cache.getTransitionsAppliedCount(true);
+    checkInput.state = CheckState.SUCCESSFUL;
+    checksApiFactory.revision(psId).id(checkerUuid).update(checkInput);
+
+    assertThat(cache.getTransitionsAppliedCount(true) - startIncremental).isEqualTo(1);
+    assertThat(queryChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.SUCCESSFUL));
+  }
+
+  @Test
+  public void updatingCheckStateRecomputesCachedCountsIfCheckerWasUpdated() throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+    assertThat(getChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.IN_PROGRESS));
+    checkerOperations.checker(checkerUuid).forUpdate().required().update();
+
+    long startIncremental = cache.getTransitionsAppliedCount(true);
+    long startRecomputed = cache.getTransitionsAppliedCount(false);
+
+    CheckInput checkInput = new CheckInput();
+    checkInput.checkerUuid = checkerUuid.get();
+    checkInput.state = CheckState.FAILED;
+    checksApiFactory.revision(psId).create(checkInput);
+
+    assertThat(cache.getTransitionsAppliedCount(true) - startIncremental).isEqualTo(0);
+    assertThat(cache.getTransitionsAppliedCount(false) - startRecomputed).isEqualTo(1);
+    assertThat(queryChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.FAILED));
+  }
+
+  @Test
+  public void repeatedlyLoadingCombinedCheckStateViaGetOnlyValidatesCache() throws Exception {
     CacheStats start = cloneStats(cache.getStats());
     long startReloadsFalse = cache.getReloadCount(false);
     long startReloadsTrue = cache.getReloadCount(true);
+    long startValid = cache.getValidationCount(true);
+    long startInvalid = cache.getValidationCount(false);
 
     assertThat(getChangeCheckInfo(changeId))
         .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.NOT_RELEVANT));
-    // Incurs reloads in attribute factory paths.
+    // Incurs a reload in attribute factory paths, since nothing is cached yet.
     assertThat(cache.getStats()).since(start).hasHitCount(0);
     assertThat(cache.getStats()).since(start).hasMissCount(1);
     assertThat(cache.getReloadCount(false) - startReloadsFalse).isEqualTo(0);
     assertThat(cache.getReloadCount(true) - startReloadsTrue).isEqualTo(1);
+    assertThat(cache.getValidationCount(true) - startValid).isEqualTo(0);
 
     assertThat(getChangeCheckInfo(changeId))
         .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.NOT_RELEVANT));
     assertThat(cache.getStats()).since(start).hasHitCount(1);
     assertThat(cache.getStats()).since(start).hasMissCount(1);
-    assertThat(cache.getReloadCount(false) - startReloadsFalse).isEqualTo(1);
+    assertThat(cache.getReloadCount(false) - startReloadsFalse).isEqualTo(0);
     assertThat(cache.getReloadCount(true) - startReloadsTrue).isEqualTo(1);
+    assertThat(cache.getValidationCount(true) - startValid).isEqualTo(1);
 
     assertThat(getChangeCheckInfo(changeId))
         .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.NOT_RELEVANT));
     assertThat(cache.getStats()).since(start).hasHitCount(2);
     assertThat(cache.getStats()).since(start).hasMissCount(1);
-    assertThat(cache.getReloadCount(false) - startReloadsFalse).isEqualTo(2);
+    assertThat(cache.getReloadCount(false) - startReloadsFalse).isEqualTo(0);
     assertThat(cache.getReloadCount(true) - startReloadsTrue).isEqualTo(1);
+    assertThat(cache.getValidationCount(true) - startValid).isEqualTo(2);
+    assertThat(cache.getValidationCount(false) - startInvalid).isEqualTo(0);
+  }
+
+  @Test
+  public void loadingCombinedCheckStateViaGetRecomputesStateIfCheckerWasUpdated()
+      throws Exception {
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+    checkOperations
+        .newCheck(CheckKey.create(project, psId, checkerUuid))
+        .state(CheckState.FAILED)
+        .upsert();
+    assertThat(getChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.WARNING));
+
+    long startInvalid = cache.getValidationCount(false);
+    checkerOperations.checker(checkerUuid).forUpdate().required().update();
+
+    assertThat(getChangeCheckInfo(changeId))
+        .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.FAILED));
+    assertThat(cache.getValidationCount(false) - startInvalid).isEqualTo(1);
+  }
+
+  @Test
+  public void loadingCombinedCheckStateViaGetRecomputesStateIfCheckerMatchesOnAge()
+      throws Exception {
+    TestTimeUtil.resetWithClockStep(1, SECONDS);
+    try {
+      checkerOperations.newChecker().repository(project).query("age:1d").required().create();
+      Change.Id changeId2 = createChange().getPatchSetId().changeId();
+      assertThat(getChangeCheckInfo(changeId2))
+          .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.NOT_RELEVANT));
+
+      long startInvalid = cache.getValidationCount(false);
+      TestTimeUtil.incrementClock(2, DAYS);
+
+      // Neither the change nor the checker were updated, but the checker became relevant.
+      assertThat(getChangeCheckInfo(changeId2))
+          .hasValue(new ChangeCheckInfo("checks", CombinedCheckState.IN_PROGRESS));
+      assertThat(cache.getValidationCount(false) - startInvalid).isEqualTo(1);
+    } finally {
+      TestTimeUtil.useSystemTime();
+    }
+  }
+
+  private void testCombinedCheckStatesOfMultipleChangesViaQuery() throws Exception {
+    CheckerUuid checkerUuid =
+        checkerOperations.newChecker().repository(project).required().create();
+    PatchSet.Id psId2 = createChange().getPatchSetId();
+    checkOperations
+        .newCheck(CheckKey.create(project, psId2, checkerUuid))
+        .state(CheckState.FAILED)
+        .upsert();
+    PatchSet.Id psId3 = createChange().getPatchSetId();
+    checkOperations
+        .newCheck(CheckKey.create(project, psId3, checkerUuid))
+        .state(CheckState.SUCCESSFUL)
+        .upsert();
+    cache.putForTest(project, psId3, CombinedCheckState.SUCCESSFUL);
+
+    CacheStats start = cloneStats(cache.getStats());
+
+    List<ChangeInfo> changeInfos =
+        gApi.changes()
+            .query("project:" + project)
+            .withPluginOption("checks--combined", "true")
+            .get();
+    assertThat(changeInfos).hasSize(3);
+    for (ChangeInfo changeInfo : changeInfos) {
+      CombinedCheckState expected;
+      if (changeInfo._number == psId2.changeId().get()) {
+        expected = CombinedCheckState.FAILED;
+      } else if (changeInfo._number == psId3.changeId().get()) {
+        expected = CombinedCheckState.SUCCESSFUL;
+      } else {
+        expected = CombinedCheckState.IN_PROGRESS;
+      }
+      assertThat(getChangeCheckInfo(changeInfo)).hasValue(new ChangeCheckInfo("checks", expected));
+    }
+    // Each change is looked up once, states that are not cached are loaded in one batch.
+    assertThat(cache.getStats().minus(start).requestCount()).isEqualTo(3);
   }
 
   private Optional<ChangeCheckInfo> getChangeCheckInfo(Change.Id id) throws Exception {
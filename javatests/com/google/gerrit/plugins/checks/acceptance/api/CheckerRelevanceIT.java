@@ -0,0 +1,85 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.acceptance.api;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.plugins.checks.CheckerRelevanceCache;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.plugins.checks.acceptance.AbstractCheckersTest;
+import com.google.gerrit.plugins.checks.api.CheckInfo;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.testing.TestTimeUtil;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckerRelevanceIT extends AbstractCheckersTest {
+  private CheckerRelevanceCache checkerRelevanceCache;
+
+  @Before
+  public void setUp() throws Exception {
+    checkerRelevanceCache = plugin.getSysInjector().getInstance(CheckerRelevanceCache.class);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    TestTimeUtil.useSystemTime();
+  }
+
+  @Test
+  public void relevanceIsComputedOnFirstReadAndCached() throws Exception {
+    CheckerUuid checkerUuid =
+        checkerOperations.newChecker().repository(project).query("branch:master").create();
+    long loadCountBeforeUpload = checkerRelevanceCache.getLoadCount();
+
+    PatchSet.Id patchSetId = createChange().getPatchSetId();
+
+    List<CheckInfo> checks = checksApiFactory.revision(patchSetId).list();
+    assertThat(getOnlyElement(checks).checkerUuid).isEqualTo(checkerUuid.get());
+    assertThat(getOnlyElement(checks).state).isEqualTo(CheckState.NOT_STARTED);
+    long loadCountAfterFirstRead = checkerRelevanceCache.getLoadCount();
+    assertThat(loadCountAfterFirstRead).isGreaterThan(loadCountBeforeUpload);
+
+    // Backfilling the check again is served from the cache.
+    checks = checksApiFactory.revision(patchSetId).list();
+    assertThat(getOnlyElement(checks).checkerUuid).isEqualTo(checkerUuid.get());
+    assertThat(checkerRelevanceCache.getLoadCount()).isEqualTo(loadCountAfterFirstRead);
+  }
+
+  @Test
+  public void relevanceThatDependsOnTheTimeIsNotCached() throws Exception {
+    TestTimeUtil.resetWithClockStep(1, SECONDS);
+    CheckerUuid checkerUuid =
+        checkerOperations.newChecker().repository(project).query("age:1d").create();
+    PatchSet.Id patchSetId = createChange().getPatchSetId();
+
+    // The change was updated less than a day ago.
+    assertThat(checksApiFactory.revision(patchSetId).list()).isEmpty();
+
+    TestTimeUtil.incrementClock(2, DAYS);
+
+    // Neither the change nor the checker were updated, but the checker became relevant.
+    List<CheckInfo> checks = checksApiFactory.revision(patchSetId).list();
+    assertThat(getOnlyElement(checks).checkerUuid).isEqualTo(checkerUuid.get());
+    assertThat(getOnlyElement(checks).state).isEqualTo(CheckState.NOT_STARTED);
+    assertThat(checkerRelevanceCache.getUncachedCount()).isGreaterThan(0);
+  }
+}
@@ -27,6 +27,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.acceptance.PushOneCommit;
 import com.google.gerrit.acceptance.TestAccount;
+import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.acceptance.testsuite.group.GroupOperations;
 import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
 import com.google.gerrit.acceptance.testsuite.request.RequestScopeOperations;
@@ -1095,6 +1096,63 @@ public class ChecksEmailIT extends AbstractCheckersTest {
     assertThat(sender.getMessages()).isEmpty();
   }
 
+  @Test
+  @GerritConfig(name = "plugin.checks.notificationQuietPeriod", value = "1h")
+  public void combinedCheckStateUpdatesWithinQuietPeriodAreSentAsOneEmail() throws Exception {
+    CheckerUuid checkerUuid =
+        checkerOperations.newChecker().repository(project).required().create();
+    CheckKey checkKey = CheckKey.create(project, patchSetId, checkerUuid);
+    checkOperations.newCheck(checkKey).state(CheckState.FAILED).upsert();
+    assertThat(getCombinedCheckState()).isEqualTo(CombinedCheckState.FAILED);
+
+    sender.clear();
+
+    // The notification about the update to IN_PROGRESS is held back for the quiet period.
+    postCheck(checkerUuid, CheckState.RUNNING);
+    assertThat(getCombinedCheckState()).isEqualTo(CombinedCheckState.IN_PROGRESS);
+    assertThat(sender.getMessages()).isEmpty();
+
+    // Waiting for the side effects sends the held back notification together with this one.
+    postCheckAndWaitForSideEffects(checkerUuid, CheckState.SUCCESSFUL);
+    assertThat(getCombinedCheckState()).isEqualTo(CombinedCheckState.SUCCESSFUL);
+
+    List<Message> messages = sender.getMessages();
+    assertThat(messages).hasSize(1);
+    Message message = messages.get(0);
+    assertThat(message.body())
+        .contains(combinedCheckStateUpdatedText(CombinedCheckState.SUCCESSFUL));
+    assertThat(message.body())
+        .doesNotContain(combinedCheckStateUpdatedText(CombinedCheckState.IN_PROGRESS));
+    // The settings of the last update win, hence the email is sent to all users that are involved
+    // in the change.
+    assertThat(message.rcpt())
+        .containsExactly(
+            owner.getNameEmail(),
+            reviewer.getNameEmail(),
+            starrer.getNameEmail(),
+            watcher.getNameEmail());
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.checks.notificationQuietPeriod", value = "1h")
+  public void noEmailIfCombinedCheckStateFlipsBackWithinQuietPeriod() throws Exception {
+    CheckerUuid checkerUuid =
+        checkerOperations.newChecker().repository(project).required().create();
+    CheckKey checkKey = CheckKey.create(project, patchSetId, checkerUuid);
+    checkOperations.newCheck(checkKey).state(CheckState.FAILED).upsert();
+    assertThat(getCombinedCheckState()).isEqualTo(CombinedCheckState.FAILED);
+
+    sender.clear();
+
+    postCheck(checkerUuid, CheckState.RUNNING);
+    assertThat(getCombinedCheckState()).isEqualTo(CombinedCheckState.IN_PROGRESS);
+    postCheckAndWaitForSideEffects(checkerUuid, CheckState.FAILED);
+    assertThat(getCombinedCheckState()).isEqualTo(CombinedCheckState.FAILED);
+
+    // The combined check state ended up where it started.
+    assertThat(sender.getMessages()).isEmpty();
+  }
+
   private String combinedCheckStateUpdatedText(CombinedCheckState combinedCheckState) {
     return "The combined check state has been updated to "
         + combinedCheckState
@@ -1250,4 +1308,14 @@ public class ChecksEmailIT extends AbstractCheckersTest {
     input.url = url;
     checksApiFactory.revision(patchSetId).create(input).get();
   }
+
+  private void postCheckAndWaitForSideEffects(CheckerUuid checkerUuid, CheckState checkState)
+      throws RestApiException {
+    requestScopeOperations.setApiUser(bot.id());
+    CheckInput input = new CheckInput();
+    input.checkerUuid = checkerUuid.get();
+    input.state = checkState;
+    input.waitForSideEffects = true;
+    checksApiFactory.revision(patchSetId).create(input).get();
+  }
 }
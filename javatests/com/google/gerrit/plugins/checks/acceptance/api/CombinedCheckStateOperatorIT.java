@@ -0,0 +1,83 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.acceptance.api;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.plugins.checks.acceptance.AbstractCheckersTest;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CombinedCheckStateOperatorIT extends AbstractCheckersTest {
+  private PatchSet.Id psId1;
+  private PatchSet.Id psId2;
+
+  @Before
+  public void setUp() throws Exception {
+    psId1 = createChange().getPatchSetId();
+    psId2 = createChange().getPatchSetId();
+  }
+
+  @Test
+  public void queryByCombinedCheckState() throws Exception {
+    CheckerUuid checkerUuid =
+        checkerOperations.newChecker().repository(project).required().create();
+    checkOperations
+        .newCheck(CheckKey.create(project, psId1, checkerUuid))
+        .state(CheckState.FAILED)
+        .upsert();
+
+    assertThat(query("combinedstate_checks:failed")).containsExactly(psId1.changeId().get());
+    assertThat(query("combinedstate_checks:in_progress")).containsExactly(psId2.changeId().get());
+    assertThat(query("combinedstate_checks:successful")).isEmpty();
+  }
+
+  @Test
+  public void queryByCombinedCheckStateWithoutCheckers() throws Exception {
+    assertThat(query("combinedstate_checks:not_relevant"))
+        .containsExactly(psId1.changeId().get(), psId2.changeId().get());
+  }
+
+  @Test
+  public void stateIsParsedLeniently() throws Exception {
+    checkerOperations.newChecker().repository(project).create();
+
+    assertThat(query("combinedstate_checks:IN_PROGRESS"))
+        .containsExactly(psId1.changeId().get(), psId2.changeId().get());
+    assertThat(query("combinedstate_checks:inprogress"))
+        .containsExactly(psId1.changeId().get(), psId2.changeId().get());
+  }
+
+  @Test
+  public void invalidState() throws Exception {
+    BadRequestException thrown =
+        assertThrows(BadRequestException.class, () -> query("combinedstate_checks:foo"));
+    assertThat(thrown).hasMessageThat().contains("invalid combined check state: foo");
+  }
+
+  private ImmutableList<Integer> query(String query) throws Exception {
+    return gApi.changes().query("project:" + project + " " + query).get().stream()
+        .map(changeInfo -> changeInfo._number)
+        .collect(toImmutableList());
+  }
+}
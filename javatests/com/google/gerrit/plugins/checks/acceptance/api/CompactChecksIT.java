@@ -0,0 +1,178 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.acceptance.api;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.RestResponse;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.extensions.api.changes.ReviewInput;
+import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckerRef;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.plugins.checks.acceptance.AbstractCheckersTest;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.api.CompactChecksInfo;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactChecksIT extends AbstractCheckersTest {
+  private PushOneCommit.Result change;
+  private PatchSet.Id patchSetId;
+  private CheckKey checkKey;
+
+  @Before
+  public void setUp() throws Exception {
+    change = createChange();
+    patchSetId = change.getPatchSetId();
+    CheckerUuid checkerUuid = checkerOperations.newChecker().repository(project).create();
+    checkKey = CheckKey.create(project, patchSetId, checkerUuid);
+    checkOperations.newCheck(checkKey).state(CheckState.SCHEDULED).upsert();
+    checkOperations.check(checkKey).forUpdate().state(CheckState.RUNNING).upsert();
+    checkOperations.check(checkKey).forUpdate().state(CheckState.SUCCESSFUL).upsert();
+  }
+
+  @Test
+  public void compactChecksRefOfAbandonedChange() throws Exception {
+    gApi.changes().id(change.getChangeId()).abandon();
+    RevCommit oldTip = getChecksRefTip();
+    assertThat(oldTip.getParentCount()).isEqualTo(1);
+
+    assertThat(compactChecks().compacted).isEqualTo(1);
+
+    RevCommit newTip = getChecksRefTip();
+    assertThat(newTip.getParentCount()).isEqualTo(0);
+    assertThat(newTip.getTree()).isEqualTo(oldTip.getTree());
+    assertThat(checkOperations.check(checkKey).get().state()).isEqualTo(CheckState.SUCCESSFUL);
+  }
+
+  @Test
+  public void compactChecksRefOfMergedChange() throws Exception {
+    gApi.changes().id(change.getChangeId()).current().review(ReviewInput.approve());
+    gApi.changes().id(change.getChangeId()).current().submit();
+
+    assertThat(compactChecks().compacted).isEqualTo(1);
+    assertThat(getChecksRefTip().getParentCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void checksRefOfOpenChangeIsNotCompacted() throws Exception {
+    RevCommit oldTip = getChecksRefTip();
+
+    assertThat(compactChecks().compacted).isEqualTo(0);
+    assertThat(getChecksRefTip()).isEqualTo(oldTip);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.checks.compactionDepth", value = "2")
+  public void checksRefOfOpenChangeIsCompactedBeyondCompactionDepth() throws Exception {
+    assertThat(compactChecks().compacted).isEqualTo(1);
+    assertThat(getChecksRefTip().getParentCount()).isEqualTo(0);
+  }
+
+  @Test
+  @GerritConfig(name = "plugin.checks.compactionDepth", value = "3")
+  public void checksRefOfOpenChangeIsNotCompactedWithinCompactionDepth() throws Exception {
+    assertThat(compactChecks().compacted).isEqualTo(0);
+    assertThat(getChecksRefTip().getParentCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void compactedChecksRefIsNotCompactedAgain() throws Exception {
+    gApi.changes().id(change.getChangeId()).abandon();
+    assertThat(compactChecks().compacted).isEqualTo(1);
+    RevCommit compactedTip = getChecksRefTip();
+
+    assertThat(compactChecks().compacted).isEqualTo(0);
+    assertThat(getChecksRefTip()).isEqualTo(compactedTip);
+  }
+
+  @Test
+  public void checksCanBeUpdatedAfterCompaction() throws Exception {
+    gApi.changes().id(change.getChangeId()).abandon();
+    compactChecks();
+
+    checkOperations.check(checkKey).forUpdate().state(CheckState.FAILED).upsert();
+
+    assertThat(checkOperations.check(checkKey).get().state()).isEqualTo(CheckState.FAILED);
+    assertThat(getChecksRefTip().getParentCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void refThatFailsToBeCompactedIsSkipped() throws Exception {
+    PushOneCommit.Result brokenChange = createChange();
+    CheckKey brokenCheckKey =
+        CheckKey.create(project, brokenChange.getPatchSetId(), checkKey.checkerUuid());
+    checkOperations.newCheck(brokenCheckKey).state(CheckState.SCHEDULED).upsert();
+    gApi.changes().id(brokenChange.getChangeId()).abandon();
+    gApi.changes().id(change.getChangeId()).abandon();
+
+    // A checks ref that doesn't point to a commit can't be compacted.
+    pointChecksRefToBlob(brokenChange.getChange().getId());
+
+    assertThat(compactChecks().compacted).isEqualTo(1);
+    assertThat(getChecksRefTip().getParentCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void cannotCompactChecksWithoutAdministrateCheckersCapability() throws Exception {
+    userRestSession.post(compactChecksUrl()).assertForbidden();
+  }
+
+  @Test
+  public void cannotCompactChecksAnonymously() throws Exception {
+    anonymousRestSession.post(compactChecksUrl()).assertForbidden();
+  }
+
+  private CompactChecksInfo compactChecks() throws Exception {
+    RestResponse r = adminRestSession.post(compactChecksUrl());
+    r.assertOK();
+    return readContentFromJson(r, CompactChecksInfo.class);
+  }
+
+  private String compactChecksUrl() {
+    return "/projects/" + project.get() + "/checks~compact-checks";
+  }
+
+  private void pointChecksRefToBlob(Change.Id changeId) throws Exception {
+    try (Repository repo = repoManager.openRepository(project);
+        ObjectInserter ins = repo.newObjectInserter()) {
+      ObjectId blobId = ins.insert(Constants.OBJ_BLOB, new byte[] {1});
+      ins.flush();
+      RefUpdate refUpdate = repo.updateRef(CheckerRef.checksRef(changeId));
+      refUpdate.setNewObjectId(blobId);
+      refUpdate.setForceUpdate(true);
+      assertThat(refUpdate.update()).isEqualTo(RefUpdate.Result.FORCED);
+    }
+  }
+
+  private RevCommit getChecksRefTip() throws Exception {
+    try (Repository repo = repoManager.openRepository(project);
+        RevWalk rw = new RevWalk(repo)) {
+      return rw.parseCommit(
+          repo.exactRef(CheckerRef.checksRef(patchSetId.changeId())).getObjectId());
+    }
+  }
+}
@@ -15,6 +15,8 @@
 package com.google.gerrit.plugins.checks.acceptance.rules;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.google.gerrit.acceptance.PushOneCommit;
 import com.google.gerrit.entities.PatchSet;
@@ -25,6 +27,7 @@ import com.google.gerrit.plugins.checks.CheckerUuid;
 import com.google.gerrit.plugins.checks.acceptance.AbstractCheckersTest;
 import com.google.gerrit.plugins.checks.acceptance.testsuite.TestCheckerCreation.Builder;
 import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.testing.TestTimeUtil;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -124,6 +127,26 @@ public class ChecksSubmitRuleIT extends AbstractCheckersTest {
     assertThat(changeInfo.requirements).isEmpty();
   }
 
+  @Test
+  public void resultIsUpdatedWhenCheckIsUpdated() throws Exception {
+    CheckerUuid checkerUuid = newRequiredChecker().create();
+    postCheckResult(checkerUuid, CheckState.FAILED);
+    assertThat(gApi.changes().id(testChangeId).get().submittable).isFalse();
+
+    postCheckResult(checkerUuid, CheckState.SUCCESSFUL);
+    assertThat(gApi.changes().id(testChangeId).get().submittable).isTrue();
+  }
+
+  @Test
+  public void resultIsUpdatedWhenCheckerIsUpdated() throws Exception {
+    CheckerUuid checkerUuid = newRequiredChecker().create();
+    postCheckResult(checkerUuid, CheckState.FAILED);
+    assertThat(gApi.changes().id(testChangeId).get().submittable).isFalse();
+
+    checkerOperations.checker(checkerUuid).forUpdate().optional().update();
+    assertThat(gApi.changes().id(testChangeId).get().submittable).isTrue();
+  }
+
   @Test
   public void notStartedCheckOfNonApplicableCheckerDoesNotBlockSubmit() throws Exception {
     // Set up a checker which applies to a different repository than the considered change but still
@@ -262,6 +285,27 @@ public class ChecksSubmitRuleIT extends AbstractCheckersTest {
     assertThat(changeInfo.requirements).isEmpty();
   }
 
+  @Test
+  public void resultIsUpdatedWhenRequiredCheckerBecomesRelevantOverTime() throws Exception {
+    TestTimeUtil.resetWithClockStep(1, SECONDS);
+    try {
+      newRequiredChecker().query("age:1d").create();
+      String changeId = createChange().getChangeId();
+      approve(changeId);
+      assertThat(gApi.changes().id(changeId).get().submittable).isTrue();
+
+      TestTimeUtil.incrementClock(2, DAYS);
+
+      // Neither the checks nor the change nor the checker were updated, but the checker became
+      // relevant.
+      ChangeInfo changeInfo = gApi.changes().id(changeId).get();
+      assertThat(changeInfo.submittable).isFalse();
+      assertThat(changeInfo.requirements).containsExactly(SUBMIT_REQUIREMENT_INFO);
+    } finally {
+      TestTimeUtil.useSystemTime();
+    }
+  }
+
   private Builder newRequiredChecker() {
     return checkerOperations.newChecker().repository(project).required();
   }
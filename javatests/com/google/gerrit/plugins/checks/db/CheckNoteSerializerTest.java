@@ -0,0 +1,184 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.plugins.checks.Check;
+import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckUpdate;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.db.CheckNoteSerializer.NoteFormat;
+import com.google.gerrit.plugins.checks.notes.proto.CheckNote.CheckNoteProto;
+import com.google.gerrit.server.notedb.ChangeNoteJson;
+import java.sql.Timestamp;
+import java.time.Instant;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.junit.Test;
+
+public class CheckNoteSerializerTest {
+  private static final CheckerUuid CHECKER_UUID = CheckerUuid.parse("test:my-checker");
+  private static final CheckerUuid OTHER_CHECKER_UUID = CheckerUuid.parse("test:other-checker");
+
+  private final ChangeNoteJson changeNoteJson = new ChangeNoteJson();
+
+  @Test
+  public void jsonFormatIsWrittenByDefault() throws Exception {
+    byte[] data = serializer(NoteFormat.JSON).serialize(createChecks());
+
+    assertThat(new String(data, UTF_8)).startsWith("{");
+    assertThat(CheckNoteSerializer.getNoteFormat(data, 0)).isEqualTo(NoteFormat.JSON);
+  }
+
+  @Test
+  public void protoFormatIsWrittenIfConfigured() throws Exception {
+    byte[] data = serializer(NoteFormat.PROTO).serialize(createChecks());
+
+    assertThat(CheckNoteSerializer.getNoteFormat(data, 0)).isEqualTo(NoteFormat.PROTO);
+  }
+
+  @Test
+  public void protoFormatIsSmallerThanJsonFormat() throws Exception {
+    NoteDbCheckMap checks = createChecks();
+
+    byte[] json = serializer(NoteFormat.JSON).serialize(checks);
+    byte[] proto = serializer(NoteFormat.PROTO).serialize(checks);
+
+    assertThat(proto.length).isLessThan(json.length);
+  }
+
+  @Test
+  public void noChecksAreSerializedAsEmptyData() throws Exception {
+    assertThat(serializer(NoteFormat.JSON).serialize(NoteDbCheckMap.empty())).isEmpty();
+    assertThat(serializer(NoteFormat.PROTO).serialize(NoteDbCheckMap.empty())).isEmpty();
+  }
+
+  @Test
+  public void roundTripJson() throws Exception {
+    assertRoundTrip(NoteFormat.JSON);
+  }
+
+  @Test
+  public void roundTripProto() throws Exception {
+    assertRoundTrip(NoteFormat.PROTO);
+  }
+
+  @Test
+  public void deserializeWithOffset() throws Exception {
+    NoteDbCheckMap checks = createChecks();
+    byte[] data = serializer(NoteFormat.PROTO).serialize(checks);
+    byte[] dataWithPrefix = new byte[data.length + 3];
+    System.arraycopy(data, 0, dataWithPrefix, 3, data.length);
+
+    NoteDbCheckMap deserialized =
+        CheckNoteSerializer.deserialize(changeNoteJson, dataWithPrefix, 3);
+
+    assertThat(toChecks(deserialized)).isEqualTo(toChecks(checks));
+  }
+
+  @Test
+  public void protoFormatPreservesNanoseconds() throws Exception {
+    NoteDbCheckMap checks = createChecks();
+    checks.checks.get(CHECKER_UUID.get()).updated = timestamp(1000, 123456789);
+
+    byte[] data = serializer(NoteFormat.PROTO).serialize(checks);
+    NoteDbCheckMap deserialized = CheckNoteSerializer.deserialize(changeNoteJson, data, 0);
+
+    assertThat(deserialized.checks.get(CHECKER_UUID.get()).updated)
+        .isEqualTo(timestamp(1000, 123456789));
+  }
+
+  @Test
+  public void invalidStateInProtoFormatIsRejected() throws Exception {
+    CheckNoteProto proto =
+        CheckNoteProto.newBuilder()
+            .addChecks(
+                createChecks()
+                    .checks
+                    .get(CHECKER_UUID.get())
+                    .toProto(CHECKER_UUID.get())
+                    .toBuilder()
+                    .setState("EXPLODED"))
+            .build();
+
+    ConfigInvalidException thrown =
+        assertThrows(
+            ConfigInvalidException.class,
+            () -> CheckNoteSerializer.deserialize(changeNoteJson, proto.toByteArray(), 0));
+    assertThat(thrown).hasMessageThat().contains("EXPLODED");
+    assertThat(thrown).hasMessageThat().contains(CHECKER_UUID.get());
+  }
+
+  private void assertRoundTrip(NoteFormat format) throws Exception {
+    NoteDbCheckMap checks = createChecks();
+
+    byte[] data = serializer(format).serialize(checks);
+    NoteDbCheckMap deserialized = CheckNoteSerializer.deserialize(changeNoteJson, data, 0);
+
+    assertThat(deserialized.checks.keySet()).containsExactlyElementsIn(checks.checks.keySet());
+    assertThat(toChecks(deserialized)).isEqualTo(toChecks(checks));
+  }
+
+  private CheckNoteSerializer serializer(NoteFormat format) {
+    return new CheckNoteSerializer(changeNoteJson, format);
+  }
+
+  private static NoteDbCheckMap createChecks() {
+    NoteDbCheck check =
+        NoteDbCheck.createInitialNoteDbCheck(
+            CheckUpdate.builder()
+                .setState(CheckState.RUNNING)
+                .setMessage("running tests")
+                .setUrl("https://ci.example.com/1")
+                .setStarted(timestamp(1000, 0))
+                .build());
+    check.created = timestamp(900, 0);
+    check.updated = timestamp(1000, 0);
+
+    NoteDbCheck otherCheck =
+        NoteDbCheck.createInitialNoteDbCheck(
+            CheckUpdate.builder().setState(CheckState.NOT_STARTED).build());
+    otherCheck.created = timestamp(800, 0);
+    otherCheck.updated = timestamp(800, 0);
+
+    NoteDbCheckMap checks = NoteDbCheckMap.empty();
+    checks.checks.put(CHECKER_UUID.get(), check);
+    checks.checks.put(OTHER_CHECKER_UUID.get(), otherCheck);
+    return checks;
+  }
+
+  private static Timestamp timestamp(long epochSecond, int nanos) {
+    return Timestamp.from(Instant.ofEpochSecond(epochSecond, nanos));
+  }
+
+  private static ImmutableList<Check> toChecks(NoteDbCheckMap checks) {
+    Project.NameKey project = Project.nameKey("project");
+    PatchSet.Id psId = PatchSet.id(Change.id(1), 1);
+    return checks.checks.entrySet().stream()
+        .map(
+            e ->
+                e.getValue()
+                    .toCheck(CheckKey.create(project, psId, CheckerUuid.parse(e.getKey()))))
+        .collect(toImmutableList());
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+import com.google.gerrit.plugins.checks.CheckUpdate;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.db.CheckNoteSerializer.NoteFormat;
+import com.google.gerrit.server.notedb.ChangeNoteJson;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.notes.NoteMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckRevisionNoteMapTest {
+  private static final String CHECKER_UUID = "test:my-checker";
+
+  private final ChangeNoteJson changeNoteJson = new ChangeNoteJson();
+  private final ObjectId revision1 =
+      ObjectId.fromString("1111111111111111111111111111111111111111");
+  private final ObjectId revision2 =
+      ObjectId.fromString("2222222222222222222222222222222222222222");
+  private final ObjectId revision3 =
+      ObjectId.fromString("3333333333333333333333333333333333333333");
+
+  private InMemoryRepository repository;
+  private ObjectReader reader;
+  private NoteMap noteMap;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = new InMemoryRepository(new DfsRepositoryDescription("Test Repository"));
+    reader = repository.newObjectReader();
+    noteMap = NoteMap.newEmptyMap();
+    try (ObjectInserter ins = repository.newObjectInserter()) {
+      NoteDbCheckMap checks = NoteDbCheckMap.empty();
+      checks.checks.put(
+          CHECKER_UUID,
+          NoteDbCheck.createInitialNoteDbCheck(
+              CheckUpdate.builder().setState(CheckState.RUNNING).build()));
+      byte[] data = new CheckNoteSerializer(changeNoteJson, NoteFormat.JSON).serialize(checks);
+      noteMap.set(revision1, ins.insert(OBJ_BLOB, data));
+      noteMap.set(revision2, ins.insert(OBJ_BLOB, "not a check note".getBytes(UTF_8)));
+      ins.flush();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    reader.close();
+    repository.close();
+  }
+
+  @Test
+  public void onlyAccessedNotesAreParsed() throws Exception {
+    CheckRevisionNoteMap revisionNotes =
+        CheckRevisionNoteMap.load(changeNoteJson, reader, noteMap);
+
+    // The invalid note of revision2 is never parsed.
+    NoteDbCheckMap checks = revisionNotes.get(revision1);
+
+    assertThat(checks.checks.keySet()).containsExactly(CHECKER_UUID);
+    assertThat(checks.checks.get(CHECKER_UUID).state).isEqualTo(CheckState.RUNNING);
+    assertThat(revisionNotes.getParsedRevisions().keySet()).containsExactly(revision1);
+  }
+
+  @Test
+  public void parsedChecksAreMemoized() throws Exception {
+    CheckRevisionNoteMap revisionNotes =
+        CheckRevisionNoteMap.load(changeNoteJson, reader, noteMap);
+
+    NoteDbCheckMap checks = revisionNotes.get(revision1);
+    checks.checks.get(CHECKER_UUID).state = CheckState.SUCCESSFUL;
+
+    assertThat(revisionNotes.get(revision1)).isSameInstanceAs(checks);
+    assertThat(revisionNotes.get(revision1).checks.get(CHECKER_UUID).state)
+        .isEqualTo(CheckState.SUCCESSFUL);
+  }
+
+  @Test
+  public void revisionWithoutNoteHasNoChecks() throws Exception {
+    CheckRevisionNoteMap revisionNotes =
+        CheckRevisionNoteMap.load(changeNoteJson, reader, noteMap);
+
+    NoteDbCheckMap checks = revisionNotes.get(revision3);
+
+    assertThat(checks.checks).isEmpty();
+    assertThat(revisionNotes.get(revision3)).isSameInstanceAs(checks);
+    assertThat(revisionNotes.getParsedRevisions().keySet()).containsExactly(revision3);
+  }
+
+  @Test
+  public void invalidNoteIsRejectedWhenAccessed() throws Exception {
+    CheckRevisionNoteMap revisionNotes =
+        CheckRevisionNoteMap.load(changeNoteJson, reader, noteMap);
+
+    assertThrows(ConfigInvalidException.class, () -> revisionNotes.get(revision2));
+    assertThat(revisionNotes.getParsedRevisions()).isEmpty();
+  }
+}
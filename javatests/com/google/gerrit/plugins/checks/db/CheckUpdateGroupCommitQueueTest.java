@@ -0,0 +1,245 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.exceptions.DuplicateKeyException;
+import com.google.gerrit.plugins.checks.Check;
+import com.google.gerrit.plugins.checks.CheckKey;
+import com.google.gerrit.plugins.checks.CheckUpdate;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.db.CheckUpdateGroupCommitQueue.GroupWriter;
+import com.google.gerrit.plugins.checks.db.CheckUpdateGroupCommitQueue.PendingCheckUpdate;
+import com.google.gerrit.server.util.time.TimeUtil;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckUpdateGroupCommitQueueTest {
+  private final PatchSet.Id patchSetId = PatchSet.id(Change.id(1), 1);
+  private final CheckKey checkKey0 = checkKey("test:checker0");
+  private final CheckKey checkKey1 = checkKey("test:checker1");
+  private final CheckKey checkKey2 = checkKey("test:checker2");
+
+  private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+  private final CountDownLatch firstWriteReleased = new CountDownLatch(1);
+  private final List<ImmutableList<CheckKey>> writtenGroups =
+      Collections.synchronizedList(new ArrayList<>());
+
+  private ExecutorService executor;
+  private CheckUpdateGroupCommitQueue queue;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newCachedThreadPool();
+    queue = new CheckUpdateGroupCommitQueue(true);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    firstWriteReleased.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void uncontendedUpdateIsWrittenRightAway() throws Exception {
+    Check check =
+        queue.submit(
+            checkKey1,
+            CheckUpdate.builder().setState(CheckState.RUNNING).build(),
+            NoteDbChecksUpdate.Operation.UPDATE,
+            Optional.empty(),
+            this::recordAndSetResults);
+
+    assertThat(check.state()).isEqualTo(CheckState.RUNNING);
+    assertThat(writtenGroups).containsExactly(ImmutableList.of(checkKey1));
+    assertThat(queue.getQueuedUpdateCount(patchSetId.changeId())).isEqualTo(0);
+  }
+
+  @Test
+  public void updateOfOtherChangeIsNotQueued() throws Exception {
+    Future<Check> blocked = submit(checkKey0, CheckState.SCHEDULED, this::blockFirstWrite);
+    assertThat(firstWriteStarted.await(10, SECONDS)).isTrue();
+
+    CheckKey otherChangeCheckKey =
+        CheckKey.create(
+            checkKey1.repository(), PatchSet.id(Change.id(2), 1), checkKey1.checkerUuid());
+    submit(otherChangeCheckKey, CheckState.RUNNING, this::recordAndSetResults).get(10, SECONDS);
+    assertThat(writtenGroups).containsExactly(ImmutableList.of(otherChangeCheckKey));
+
+    firstWriteReleased.countDown();
+    blocked.get(10, SECONDS);
+  }
+
+  @Test
+  public void concurrentUpdatesAreWrittenInOneCommit() throws Exception {
+    ImmutableList<Future<Check>> checks =
+        submitInOneGroup(this::recordAndSetResults);
+
+    for (Future<Check> check : checks) {
+      check.get();
+    }
+    assertThat(writtenGroups).containsExactly(ImmutableList.of(checkKey1, checkKey2));
+  }
+
+  @Test
+  public void eachSubmitterGetsItsOwnCheck() throws Exception {
+    ImmutableList<Future<Check>> checks =
+        submitInOneGroup(group -> group.forEach(p -> p.setResult(toCheck(p))));
+
+    assertThat(checks.get(0).get().key()).isEqualTo(checkKey1);
+    assertThat(checks.get(0).get().state()).isEqualTo(CheckState.RUNNING);
+    assertThat(checks.get(1).get().key()).isEqualTo(checkKey2);
+    assertThat(checks.get(1).get().state()).isEqualTo(CheckState.FAILED);
+  }
+
+  @Test
+  public void invalidUpdateOnlyFailsItsOwnSubmitter() throws Exception {
+    ImmutableList<Future<Check>> checks =
+        submitInOneGroup(
+            group -> {
+              for (PendingCheckUpdate pending : group) {
+                if (pending.key.equals(checkKey2)) {
+                  pending.setFailure(
+                      new DuplicateKeyException("checker test:checker2 already exists"));
+                } else {
+                  pending.setResult(toCheck(pending));
+                }
+              }
+            });
+
+    assertThat(checks.get(0).get().state()).isEqualTo(CheckState.RUNNING);
+    ExecutionException thrown = assertThrows(ExecutionException.class, () -> checks.get(1).get());
+    assertThat(thrown).hasCauseThat().isInstanceOf(DuplicateKeyException.class);
+  }
+
+  @Test
+  public void retriedWriteCompletesEachSubmitterOnceWithTheResultOfTheLastAttempt()
+      throws Exception {
+    AtomicInteger writes = new AtomicInteger();
+    ImmutableList<Future<Check>> checks =
+        submitInOneGroup(
+            group -> {
+              writes.incrementAndGet();
+              // The first attempt fails with a lock failure, like a concurrent update of the checks
+              // ref would. The writer retries and succeeds with different results.
+              group.forEach(p -> p.setFailure(new IOException("LOCK_FAILURE")));
+              group.forEach(
+                  p -> p.setResult(toCheck(p).toBuilder().setState(CheckState.SUCCESSFUL).build()));
+            });
+
+    assertThat(checks.get(0).get().state()).isEqualTo(CheckState.SUCCESSFUL);
+    assertThat(checks.get(1).get().state()).isEqualTo(CheckState.SUCCESSFUL);
+    assertThat(writes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void failedWriteFailsAllSubmitters() throws Exception {
+    ImmutableList<Future<Check>> checks =
+        submitInOneGroup(
+            group -> {
+              group.forEach(p -> p.setResult(toCheck(p)));
+              throw new IOException("write failed");
+            });
+
+    for (Future<Check> check : checks) {
+      ExecutionException thrown = assertThrows(ExecutionException.class, check::get);
+      assertThat(thrown).hasCauseThat().isInstanceOf(IOException.class);
+      assertThat(thrown).hasCauseThat().hasMessageThat().isEqualTo("write failed");
+    }
+  }
+
+  /**
+   * Submits two updates while an update of the same change is being written, so that they are
+   * deterministically written together as the next group.
+   */
+  private ImmutableList<Future<Check>> submitInOneGroup(GroupWriter writer) throws Exception {
+    Future<Check> first = submit(checkKey0, CheckState.SCHEDULED, this::blockFirstWrite);
+    assertThat(firstWriteStarted.await(10, SECONDS)).isTrue();
+    Future<Check> check1 = submit(checkKey1, CheckState.RUNNING, writer);
+    awaitQueuedUpdates(1);
+    Future<Check> check2 = submit(checkKey2, CheckState.FAILED, writer);
+    awaitQueuedUpdates(2);
+    firstWriteReleased.countDown();
+    first.get(10, SECONDS);
+    return ImmutableList.of(check1, check2);
+  }
+
+  private void blockFirstWrite(ImmutableList<PendingCheckUpdate> group) throws Exception {
+    firstWriteStarted.countDown();
+    firstWriteReleased.await();
+    group.forEach(p -> p.setResult(toCheck(p)));
+  }
+
+  private void recordAndSetResults(ImmutableList<PendingCheckUpdate> group) {
+    writtenGroups.add(group.stream().map(p -> p.key).collect(toImmutableList()));
+    group.forEach(p -> p.setResult(toCheck(p)));
+  }
+
+  private Future<Check> submit(CheckKey checkKey, CheckState state, GroupWriter writer) {
+    return executor.submit(
+        () ->
+            queue.submit(
+                checkKey,
+                CheckUpdate.builder().setState(state).build(),
+                NoteDbChecksUpdate.Operation.UPDATE,
+                Optional.empty(),
+                writer));
+  }
+
+  private void awaitQueuedUpdates(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + SECONDS.toNanos(10);
+    while (queue.getQueuedUpdateCount(patchSetId.changeId()) < count) {
+      assertThat(System.nanoTime()).isLessThan(deadline);
+      MILLISECONDS.sleep(10);
+    }
+  }
+
+  private CheckKey checkKey(String checkerUuid) {
+    return CheckKey.create(
+        Project.nameKey("test-project"), patchSetId, CheckerUuid.parse(checkerUuid));
+  }
+
+  private static Check toCheck(PendingCheckUpdate pending) {
+    Timestamp now = TimeUtil.nowTs();
+    return Check.builder(pending.key)
+        .setState(pending.update.state().get())
+        .setCreated(now)
+        .setUpdated(now)
+        .build();
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.server.config.AllProjectsName;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.meta.MetaDataUpdate;
+import com.google.gerrit.server.util.time.TimeUtil;
+import java.io.IOException;
+import java.util.TimeZone;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckersByRepositoryCacheTest {
+  private final TimeZone timeZone = TimeZone.getTimeZone("America/Los_Angeles");
+
+  private final Project.NameKey project1 = Project.nameKey("some-project");
+  private final Project.NameKey project2 = Project.nameKey("other-project");
+
+  private AllProjectsName projectName;
+  private Repository repository;
+  private CheckersByRepositoryCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    projectName = new AllProjectsName("Test Repository");
+    repository = new InMemoryRepository(new DfsRepositoryDescription("Test Repository"));
+    cache = new CheckersByRepositoryCache();
+  }
+
+  @Test
+  public void getFromNonExistingRef() throws Exception {
+    assertThat(cache.get(repository, project1)).isEmpty();
+  }
+
+  @Test
+  public void getReflectsUpdates() throws Exception {
+    CheckerUuid checkerUuid1 = CheckerUuid.parse("foo:bar");
+    CheckerUuid checkerUuid2 = CheckerUuid.parse("foo:baz");
+    CheckerUuid checkerUuid3 = CheckerUuid.parse("bar:baz");
+
+    CheckersByRepositoryNotes notes = CheckersByRepositoryNotes.load(projectName, repository);
+    notes.insert(checkerUuid1, project1);
+    commit(notes);
+    assertThat(cache.get(repository, project1)).containsExactly(checkerUuid1);
+    assertThat(cache.get(repository, project2)).isEmpty();
+
+    notes = CheckersByRepositoryNotes.load(projectName, repository);
+    notes.insert(checkerUuid2, project1);
+    notes.insert(checkerUuid3, project2);
+    commit(notes);
+    assertThat(cache.get(repository, project1))
+        .containsExactly(checkerUuid1, checkerUuid2)
+        .inOrder();
+    assertThat(cache.get(repository, project2)).containsExactly(checkerUuid3);
+
+    notes = CheckersByRepositoryNotes.load(projectName, repository);
+    notes.remove(checkerUuid1, project1);
+    notes.remove(checkerUuid2, project1);
+    commit(notes);
+    assertThat(cache.get(repository, project1)).isEmpty();
+    assertThat(cache.get(repository, project2)).containsExactly(checkerUuid3);
+  }
+
+  @Test
+  public void unchangedNotesAreReused() throws Exception {
+    CheckersByRepositoryNotes notes = CheckersByRepositoryNotes.load(projectName, repository);
+    notes.insert(CheckerUuid.parse("foo:bar"), project1);
+    commit(notes);
+    Object checkerUuidsOfProject1 = cache.get(repository, project1);
+
+    notes = CheckersByRepositoryNotes.load(projectName, repository);
+    notes.insert(CheckerUuid.parse("bar:baz"), project2);
+    commit(notes);
+    assertThat(cache.get(repository, project2)).isNotEmpty();
+    assertThat(cache.get(repository, project1)).isSameInstanceAs(checkerUuidsOfProject1);
+  }
+
+  private void commit(CheckersByRepositoryNotes checkersByRepositoryNotes) throws IOException {
+    try (MetaDataUpdate metaDataUpdate = createMetaDataUpdate()) {
+      checkersByRepositoryNotes.commit(metaDataUpdate);
+    }
+  }
+
+  private MetaDataUpdate createMetaDataUpdate() {
+    PersonIdent serverIdent =
+        new PersonIdent(
+            "Gerrit Server", "noreply@gerritcodereview.com", TimeUtil.nowTs(), timeZone);
+
+    MetaDataUpdate metaDataUpdate =
+        new MetaDataUpdate(
+            GitReferenceUpdated.DISABLED, Project.nameKey("Test Repository"), repository);
+    metaDataUpdate.getCommitBuilder().setCommitter(serverIdent);
+    metaDataUpdate.getCommitBuilder().setAuthor(serverIdent);
+    return metaDataUpdate;
+  }
+}
@@ -0,0 +1,162 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.plugins.checks.Checker;
+import com.google.gerrit.plugins.checks.CheckerCreation;
+import com.google.gerrit.plugins.checks.CheckerUpdate;
+import com.google.gerrit.plugins.checks.CheckerUuid;
+import com.google.gerrit.server.config.AllProjectsName;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.meta.MetaDataUpdate;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.gerrit.testing.InMemoryRepositoryManager;
+import java.util.TimeZone;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NoteDbCheckersTest {
+  private final CheckerUuid checkerUuid1 = CheckerUuid.parse("test:checker1");
+  private final CheckerUuid checkerUuid2 = CheckerUuid.parse("test:checker2");
+  private final CheckerUuid checkerUuid3 = CheckerUuid.parse("other:checker3");
+
+  private AllProjectsName allProjectsName;
+  private Repository allProjectsRepo;
+  private NoteDbCheckers noteDbCheckers;
+
+  @Before
+  public void setUp() throws Exception {
+    InMemoryRepositoryManager repoManager = new InMemoryRepositoryManager();
+    allProjectsName = new AllProjectsName("All-Projects");
+    allProjectsRepo = repoManager.createRepository(allProjectsName);
+    noteDbCheckers =
+        new NoteDbCheckers(repoManager, allProjectsName, new CheckersByRepositoryCache());
+  }
+
+  @Test
+  public void unchangedCheckerIsServedFromSnapshot() throws Exception {
+    createChecker(checkerUuid1);
+
+    Checker checker = noteDbCheckers.getChecker(checkerUuid1).get();
+    assertThat(noteDbCheckers.getChecker(checkerUuid1).get()).isSameInstanceAs(checker);
+    assertThat(noteDbCheckers.listCheckers()).containsExactly(checker);
+    assertThat(noteDbCheckers.getSnapshotUpdateCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void updatedCheckerIsReloaded() throws Exception {
+    createChecker(checkerUuid1);
+    Checker checker = noteDbCheckers.getChecker(checkerUuid1).get();
+
+    updateChecker(checkerUuid1, "new description");
+
+    Checker updatedChecker = noteDbCheckers.getChecker(checkerUuid1).get();
+    assertThat(updatedChecker.getDescription().get()).isEqualTo("new description");
+    assertThat(updatedChecker.getRefState()).isNotEqualTo(checker.getRefState());
+    assertThat(noteDbCheckers.getChecker(checkerUuid1).get()).isSameInstanceAs(updatedChecker);
+  }
+
+  @Test
+  public void listingAddsAllLoadedCheckersToSnapshotAtOnce() throws Exception {
+    createChecker(checkerUuid1);
+    createChecker(checkerUuid2);
+    createChecker(checkerUuid3);
+
+    assertThat(noteDbCheckers.listCheckers()).hasSize(3);
+    assertThat(noteDbCheckers.getSnapshotUpdateCount()).isEqualTo(1);
+    assertThat(noteDbCheckers.getSnapshotRefNames())
+        .containsExactly(
+            checkerUuid1.toRefName(), checkerUuid2.toRefName(), checkerUuid3.toRefName());
+
+    // A listing that doesn't load any checker doesn't replace the snapshot.
+    assertThat(noteDbCheckers.listCheckers()).hasSize(3);
+    assertThat(noteDbCheckers.getSnapshotUpdateCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void deletedCheckerIsRemovedFromSnapshotByListing() throws Exception {
+    createChecker(checkerUuid1);
+    createChecker(checkerUuid2);
+    createChecker(checkerUuid3);
+    assertThat(noteDbCheckers.listCheckers()).hasSize(3);
+
+    deleteCheckerRef(checkerUuid1);
+    deleteCheckerRef(checkerUuid3);
+
+    // Only checkers with the listed scheme are removed.
+    assertThat(noteDbCheckers.listCheckers("test")).hasSize(1);
+    assertThat(noteDbCheckers.getSnapshotRefNames())
+        .containsExactly(checkerUuid2.toRefName(), checkerUuid3.toRefName());
+
+    assertThat(noteDbCheckers.listCheckers()).hasSize(1);
+    assertThat(noteDbCheckers.getSnapshotRefNames()).containsExactly(checkerUuid2.toRefName());
+  }
+
+  @Test
+  public void deletedCheckerIsRemovedFromSnapshotByLookup() throws Exception {
+    createChecker(checkerUuid1);
+    assertThat(noteDbCheckers.getChecker(checkerUuid1).isPresent()).isTrue();
+
+    deleteCheckerRef(checkerUuid1);
+
+    assertThat(noteDbCheckers.getChecker(checkerUuid1).isPresent()).isFalse();
+    assertThat(noteDbCheckers.getSnapshotRefNames()).isEmpty();
+  }
+
+  private void createChecker(CheckerUuid checkerUuid) throws Exception {
+    CheckerCreation checkerCreation =
+        CheckerCreation.builder()
+            .setCheckerUuid(checkerUuid)
+            .setName(checkerUuid.get())
+            .setRepository(Project.nameKey("my-repo"))
+            .build();
+    commit(CheckerConfig.createForNewChecker(allProjectsName, allProjectsRepo, checkerCreation));
+  }
+
+  private void updateChecker(CheckerUuid checkerUuid, String description) throws Exception {
+    CheckerConfig checkerConfig =
+        CheckerConfig.loadForChecker(allProjectsName, allProjectsRepo, checkerUuid);
+    checkerConfig.setCheckerUpdate(CheckerUpdate.builder().setDescription(description).build());
+    commit(checkerConfig);
+  }
+
+  private void deleteCheckerRef(CheckerUuid checkerUuid) throws Exception {
+    RefUpdate refUpdate = allProjectsRepo.updateRef(checkerUuid.toRefName());
+    refUpdate.setForceUpdate(true);
+    refUpdate.delete();
+    assertThat(allProjectsRepo.exactRef(checkerUuid.toRefName())).isNull();
+  }
+
+  private void commit(CheckerConfig checkerConfig) throws Exception {
+    PersonIdent serverIdent =
+        new PersonIdent(
+            "Gerrit Server",
+            "noreply@gerritcodereview.com",
+            TimeUtil.nowTs(),
+            TimeZone.getTimeZone("America/Los_Angeles"));
+    try (MetaDataUpdate metaDataUpdate =
+        new MetaDataUpdate(GitReferenceUpdated.DISABLED, allProjectsName, allProjectsRepo)) {
+      metaDataUpdate.getCommitBuilder().setCommitter(serverIdent);
+      metaDataUpdate.getCommitBuilder().setAuthor(serverIdent);
+      checkerConfig.commit(metaDataUpdate);
+    }
+  }
+}
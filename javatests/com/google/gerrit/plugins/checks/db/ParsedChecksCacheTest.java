@@ -0,0 +1,167 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.plugins.checks.Check;
+import com.google.gerrit.plugins.checks.CheckUpdate;
+import com.google.gerrit.plugins.checks.CheckerRef;
+import com.google.gerrit.plugins.checks.api.CheckState;
+import com.google.gerrit.plugins.checks.db.CheckNoteSerializer.NoteFormat;
+import com.google.gerrit.plugins.checks.db.ParsedChecksCache.ChecksAtState;
+import com.google.gerrit.server.notedb.ChangeNoteJson;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.gerrit.testing.InMemoryRepositoryManager;
+import java.sql.Timestamp;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParsedChecksCacheTest {
+  private final Project.NameKey project = Project.nameKey("test-project");
+  private final PatchSet.Id psId1 = PatchSet.id(Change.id(1), 1);
+  private final PatchSet.Id psId2 = PatchSet.id(Change.id(2), 1);
+  private final ObjectId revision1 =
+      ObjectId.fromString("1111111111111111111111111111111111111111");
+  private final ObjectId revision2 =
+      ObjectId.fromString("2222222222222222222222222222222222222222");
+
+  private ChangeNoteJson changeNoteJson;
+  private Repository repo;
+  private ParsedChecksCache parsedChecksCache;
+
+  @Before
+  public void setUp() throws Exception {
+    InMemoryRepositoryManager repoManager = new InMemoryRepositoryManager();
+    repo = repoManager.createRepository(project);
+    changeNoteJson = new ChangeNoteJson();
+    parsedChecksCache =
+        new ParsedChecksCache(
+            "checks", repoManager, changeNoteJson, CacheBuilder.newBuilder().build());
+  }
+
+  @Test
+  public void cacheHitDoesNotParseNotes() throws Exception {
+    writeCheck(psId1, revision1, "test:checker", CheckState.RUNNING);
+
+    assertThat(states(parsedChecksCache.get(project, psId1, revision1)))
+        .containsExactly(CheckState.RUNNING);
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(1);
+
+    assertThat(states(parsedChecksCache.get(project, psId1, revision1)))
+        .containsExactly(CheckState.RUNNING);
+    assertThat(
+            states(
+                parsedChecksCache.get(
+                    project, psId1, revision1, checksRefState(psId1.changeId()))))
+        .containsExactly(CheckState.RUNNING);
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void writeInvalidatesByChecksRefState() throws Exception {
+    writeCheck(psId1, revision1, "test:checker", CheckState.RUNNING);
+    ObjectId oldChecksRefState = checksRefState(psId1.changeId());
+    assertThat(states(parsedChecksCache.get(project, psId1, revision1)))
+        .containsExactly(CheckState.RUNNING);
+
+    writeCheck(psId1, revision1, "test:checker", CheckState.SUCCESSFUL);
+    ObjectId newChecksRefState = checksRefState(psId1.changeId());
+    assertThat(newChecksRefState).isNotEqualTo(oldChecksRefState);
+
+    // The updated checks ref results in a new key, hence the outdated entry is never returned.
+    assertThat(states(parsedChecksCache.get(project, psId1, revision1)))
+        .containsExactly(CheckState.SUCCESSFUL);
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(2);
+
+    // The entry for the old state of the checks ref is still served for callers that ask for it.
+    assertThat(states(parsedChecksCache.get(project, psId1, revision1, oldChecksRefState)))
+        .containsExactly(CheckState.RUNNING);
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getAllServesCachedEntriesAndParsesMissingOnes() throws Exception {
+    writeCheck(psId1, revision1, "test:checker", CheckState.RUNNING);
+    writeCheck(psId2, revision2, "test:checker", CheckState.FAILED);
+    assertThat(states(parsedChecksCache.get(project, psId1, revision1)))
+        .containsExactly(CheckState.RUNNING);
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(1);
+
+    ImmutableMap<PatchSet.Id, ChecksAtState> checks =
+        parsedChecksCache.getAll(project, ImmutableMap.of(psId1, revision1, psId2, revision2));
+
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(2);
+    assertThat(states(checks.get(psId1).checks())).containsExactly(CheckState.RUNNING);
+    assertThat(checks.get(psId1).checksRefState()).isEqualTo(checksRefState(psId1.changeId()));
+    assertThat(states(checks.get(psId2).checks())).containsExactly(CheckState.FAILED);
+    assertThat(checks.get(psId2).checksRefState()).isEqualTo(checksRefState(psId2.changeId()));
+
+    // The entries that were parsed by the batch lookup are cached for single lookups.
+    assertThat(states(parsedChecksCache.get(project, psId2, revision2)))
+        .containsExactly(CheckState.FAILED);
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void missingChecksRefDoesNotParseNotes() throws Exception {
+    assertThat(parsedChecksCache.get(project, psId1, revision1)).isEmpty();
+    assertThat(parsedChecksCache.get(project, psId1, revision1, ObjectId.zeroId())).isEmpty();
+
+    ImmutableMap<PatchSet.Id, ChecksAtState> checks =
+        parsedChecksCache.getAll(project, ImmutableMap.of(psId1, revision1));
+    assertThat(checks.get(psId1).checksRefState()).isEqualTo(ObjectId.zeroId());
+    assertThat(checks.get(psId1).checks()).isEmpty();
+
+    assertThat(parsedChecksCache.getLoadCount()).isEqualTo(0);
+  }
+
+  private void writeCheck(PatchSet.Id psId, ObjectId revision, String checkerUuid, CheckState state)
+      throws Exception {
+    NoteDbCheck check =
+        NoteDbCheck.createInitialNoteDbCheck(CheckUpdate.builder().setState(state).build());
+    Timestamp now = TimeUtil.nowTs();
+    check.created = now;
+    check.updated = now;
+    NoteDbCheckMap checks = NoteDbCheckMap.empty();
+    checks.checks.put(checkerUuid, check);
+    byte[] noteData = new CheckNoteSerializer(changeNoteJson, NoteFormat.JSON).serialize(checks);
+
+    try (TestRepository<Repository> testRepo = new TestRepository<>(repo)) {
+      testRepo
+          .branch(CheckerRef.checksRef(psId.changeId()))
+          .commit()
+          .add(revision.name(), testRepo.blob(noteData))
+          .create();
+    }
+  }
+
+  private ObjectId checksRefState(Change.Id changeId) throws Exception {
+    return repo.exactRef(CheckerRef.checksRef(changeId)).getObjectId();
+  }
+
+  private static ImmutableList<CheckState> states(ImmutableList<Check> checks) {
+    return checks.stream().map(Check::state).collect(ImmutableList.toImmutableList());
+  }
+}
@@ -0,0 +1,112 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.plugins.checks.db;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SubmitRuleResultCacheTest {
+  private final Project.NameKey project = Project.nameKey("test-project");
+  private final PatchSet.Id patchSetId = PatchSet.id(Change.id(1), 1);
+  private final ObjectId changeMetaId =
+      ObjectId.fromString("1111111111111111111111111111111111111111");
+  private final ObjectId checkersId =
+      ObjectId.fromString("2222222222222222222222222222222222222222");
+
+  private final AtomicInteger loaderCalls = new AtomicInteger();
+  private final Callable<Boolean> loader =
+      () -> {
+        loaderCalls.incrementAndGet();
+        return true;
+      };
+
+  private SubmitRuleResultCache submitRuleResultCache;
+
+  @Before
+  public void setUp() {
+    submitRuleResultCache =
+        new SubmitRuleResultCache(CacheBuilder.newBuilder().build(), new DisabledMetricMaker());
+  }
+
+  @Test
+  public void repeatedGetDoesNotCallLoader() throws Exception {
+    SubmitRuleResultCache.Key key = key("3333333333333333333333333333333333333333");
+
+    assertThat(submitRuleResultCache.get(key, loader)).isTrue();
+    assertThat(submitRuleResultCache.get(key, loader)).isTrue();
+    assertThat(submitRuleResultCache.get(key("3333333333333333333333333333333333333333"), loader))
+        .isTrue();
+
+    assertThat(loaderCalls.get()).isEqualTo(1);
+    assertThat(submitRuleResultCache.getLoadCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void updatedChecksRefCallsLoader() throws Exception {
+    assertThat(submitRuleResultCache.get(key(ObjectId.zeroId().name()), loader)).isTrue();
+    assertThat(
+            submitRuleResultCache.get(key("3333333333333333333333333333333333333333"), () -> false))
+        .isFalse();
+    assertThat(submitRuleResultCache.get(key(ObjectId.zeroId().name()), loader)).isTrue();
+
+    assertThat(loaderCalls.get()).isEqualTo(1);
+    assertThat(submitRuleResultCache.getLoadCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getUncachedAlwaysCallsLoader() throws Exception {
+    assertThat(submitRuleResultCache.getUncached(loader)).isTrue();
+    assertThat(submitRuleResultCache.getUncached(loader)).isTrue();
+
+    assertThat(loaderCalls.get()).isEqualTo(2);
+    assertThat(submitRuleResultCache.getUncachedCount()).isEqualTo(2);
+    assertThat(submitRuleResultCache.getLoadCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void failedLoadIsNotCached() throws Exception {
+    SubmitRuleResultCache.Key key = key("3333333333333333333333333333333333333333");
+
+    assertThrows(
+        IOException.class,
+        () ->
+            submitRuleResultCache.get(
+                key,
+                () -> {
+                  throw new IOException("failed to read checks");
+                }));
+    assertThat(submitRuleResultCache.get(key, loader)).isTrue();
+
+    assertThat(loaderCalls.get()).isEqualTo(1);
+    assertThat(submitRuleResultCache.getLoadCount()).isEqualTo(2);
+  }
+
+  private SubmitRuleResultCache.Key key(String checksRefState) {
+    return SubmitRuleResultCache.Key.create(
+        project, patchSetId, ObjectId.fromString(checksRefState), changeMetaId, checkersId);
+  }
+}
@@ -50,7 +50,7 @@ public class ChecksSubmitRuleTest {
   @Test
   public void getCombinedCheckStateFails() throws Exception {
     Checks checks = mock(Checks.class);
-    when(checks.areAllRequiredCheckersPassing(any(), any()))
+    when(checks.areAllRequiredCheckersPassing(any(ChangeData.class), any()))
         .thenThrow(new IOException("Fail for test"));
 
     ChecksSubmitRule checksSubmitRule = new ChecksSubmitRule(checks);